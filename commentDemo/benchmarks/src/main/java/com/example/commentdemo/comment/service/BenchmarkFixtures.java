@@ -0,0 +1,168 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.example.commentdemo.comment.domain.entity.CommentEntity;
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.example.commentdemo.comment.model.ReactionType;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Deterministic inputs shaped like production data: fixed seed, fixed clock, realistic body sizes.
+ */
+final class BenchmarkFixtures {
+
+    static final UUID SUBJECT_ID = UUID.fromString("6f1c2a0e-4b7d-4c1a-9e57-2d8f3b9a1c00");
+    static final OffsetDateTime BASE_TIME = OffsetDateTime.of(2026, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    static final int EMOJI_KINDS = 64;
+
+    private static final long SEED = 42L;
+    private static final String[] WORDS = {
+            "the", "comment", "thread", "reply", "because", "latency", "cache", "really", "agree", "source",
+            "link", "would", "think", "page", "update", "version", "issue", "works", "for", "me"
+    };
+
+    private BenchmarkFixtures() {
+    }
+
+    static List<CommentHydrator.HydratedComment> pageRows(int size) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<CommentHydrator.HydratedComment> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long id = 1_000_000L + i;
+            String body = sentence(random, 40 + random.nextInt(80));
+            CommentEntity entity = CommentEntity.builder()
+                    .id(id)
+                    .subjectId(SUBJECT_ID)
+                    .rootId(id)
+                    .path(Long.toString(id))
+                    .authorId(10_000L + random.nextInt(5_000))
+                    .authorUrn("urn:user:" + random.nextInt(5_000))
+                    .bodyMd(body)
+                    .bodyHtml("<p>" + body + "</p>")
+                    .status(CommentStatus.PUBLISHED)
+                    .toxicityScore(BigDecimal.valueOf(random.nextInt(1000), 3))
+                    .upCount(random.nextInt(10_000))
+                    .downCount(random.nextInt(2_000))
+                    .replyCount(random.nextInt(300))
+                    .createdAt(BASE_TIME.plusSeconds(random.nextInt(86_400 * 30)))
+                    .editedAt(random.nextInt(10) == 0 ? BASE_TIME.plusDays(31) : null)
+                    .depth(0)
+                    .build();
+            CommentResponse.Quality quality = CommentResponse.Quality.builder()
+                    .bestScore(BigDecimal.valueOf(random.nextDouble()))
+                    .hotScore(BigDecimal.valueOf(random.nextDouble() * 100))
+                    .build();
+            rows.add(new CommentHydrator.HydratedComment(entity, quality, random.nextDouble() * 50));
+        }
+        return rows;
+    }
+
+    /**
+     * {@code count} reaction rows spread over {@code commentIds}; most are emoji, as on heavily reacted comments.
+     */
+    static List<CommentHydrator.ReactionRow> reactionRows(List<Long> commentIds, int count) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<CommentHydrator.ReactionRow> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Long commentId = commentIds.get(random.nextInt(commentIds.size()));
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                rows.add(new CommentHydrator.ReactionRow(commentId, ReactionType.UP, null));
+            } else if (kind == 1) {
+                rows.add(new CommentHydrator.ReactionRow(commentId, ReactionType.DOWN, null));
+            } else {
+                rows.add(new CommentHydrator.ReactionRow(commentId, ReactionType.EMOJI, " " + emojiCode(random.nextInt(EMOJI_KINDS)) + " "));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * One viewer's reaction rows on {@code commentIds}: at most one up or down vote and up to {@code maxEmoji}
+     * distinct emoji per comment, which is all {@code uq_actor_vote_idx} and {@code uq_actor_reaction_idx} allow.
+     */
+    static List<CommentHydrator.ReactionRow> viewerReactionRows(List<Long> commentIds, int maxEmoji) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<CommentHydrator.ReactionRow> rows = new ArrayList<>();
+        for (Long commentId : commentIds) {
+            int vote = random.nextInt(10);
+            if (vote < 3) {
+                rows.add(new CommentHydrator.ReactionRow(commentId, ReactionType.UP, null));
+            } else if (vote == 3) {
+                rows.add(new CommentHydrator.ReactionRow(commentId, ReactionType.DOWN, null));
+            }
+            int emoji = random.nextInt(maxEmoji + 1);
+            int first = random.nextInt(EMOJI_KINDS);
+            for (int e = 0; e < emoji; e++) {
+                rows.add(new CommentHydrator.ReactionRow(commentId, ReactionType.EMOJI, emojiCode((first + e) % EMOJI_KINDS)));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Summary row for a comment carrying {@code emojiKinds} distinct emoji, as returned by the summary statement.
+     */
+    static Row summaryRow(int emojiKinds) {
+        String[] codes = new String[emojiKinds];
+        Integer[] counts = new Integer[emojiKinds];
+        for (int i = 0; i < emojiKinds; i++) {
+            // reverse order so the mapper's sort does real work
+            codes[i] = emojiCode(emojiKinds - 1 - i);
+            counts[i] = 1 + (i * 37) % 500;
+        }
+        Map<String, Object> columns = new HashMap<>();
+        columns.put("up", 5_000);
+        columns.put("down", 1_000);
+        columns.put("emoji_codes", codes);
+        columns.put("emoji_counts", counts);
+        columns.put("my_up", true);
+        columns.put("my_down", false);
+        columns.put("my_emoji", new String[]{emojiCode(7 % emojiKinds), emojiCode(3 % emojiKinds), emojiCode(12 % emojiKinds)});
+        return new MapRow(columns);
+    }
+
+    private static String emojiCode(int index) {
+        return "emoji_" + index;
+    }
+
+    private static String sentence(SplittableRandom random, int words) {
+        StringBuilder body = new StringBuilder(words * 7);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                body.append(' ');
+            }
+            body.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return body.append('.').toString();
+    }
+
+    private record MapRow(Map<String, Object> columns) implements Row {
+
+        @Override
+        public <T> T get(int index, Class<T> type) {
+            throw new UnsupportedOperationException("Columns are read by name");
+        }
+
+        @Override
+        public <T> T get(String name, Class<T> type) {
+            return type.cast(columns.get(name));
+        }
+
+        @Override
+        public RowMetadata getMetadata() {
+            throw new UnsupportedOperationException("Metadata is not needed by the mappers");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentPageResponse;
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-page CPU cost of turning hydrated rows into the response body: mapping, cursor and ETag
+ * encoding, and Jackson serialization.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class CommentPageBenchmark {
+
+    @Param({"100"})
+    int pageSize;
+
+    private final CommentMapper mapper = new CommentMapper();
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private List<CommentHydrator.HydratedComment> rows;
+    private Map<Long, CommentResponse.MyReaction> myReactions;
+    private CommentPageResponse page;
+    private String cursor;
+
+    @Setup
+    public void setUp() {
+        rows = BenchmarkFixtures.pageRows(pageSize);
+        List<Long> ids = rows.stream().map(row -> row.entity().getId()).toList();
+        myReactions = CommentHydrator.mergeReactions(BenchmarkFixtures.reactionRows(ids, pageSize));
+        page = CommentPageResponse.builder()
+                .items(mapPage())
+                .nextCursor(encodeCursor())
+                .build();
+        cursor = page.nextCursor();
+    }
+
+    @Benchmark
+    public List<CommentResponse> mapPage() {
+        List<CommentResponse> items = new ArrayList<>(rows.size());
+        for (CommentHydrator.HydratedComment row : rows) {
+            items.add(mapper.toResponse(row.entity(), true, myReactions.get(row.entity().getId()), row.quality(), null));
+        }
+        return items;
+    }
+
+    @Benchmark
+    public String encodeCursor() {
+        return DefaultCommentService.encodeCursor(DefaultCommentService.ViewMode.BEST, rows.getLast());
+    }
+
+    @Benchmark
+    public DefaultCommentService.PageCursor decodeCursor() {
+        return DefaultCommentService.decodeCursor(cursor, DefaultCommentService.ViewMode.BEST.cursorKey());
+    }
+
+    @Benchmark
+    public void computeEtags(Blackhole blackhole) {
+        for (CommentHydrator.HydratedComment row : rows) {
+            blackhole.consume(DefaultCommentService.computeEtag(row.entity()));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.example.commentdemo.comment.api.dto.ReactionSummaryResponse;
+import io.r2dbc.spi.Row;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folding one viewer's reactions for a 100-comment page, and summary mapping for a comment with many distinct emoji.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ReactionBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @State(Scope.Benchmark)
+    public static class ViewerPage {
+
+        /**
+         * Upper bound of distinct emoji the viewer left on each comment, on top of at most one vote.
+         */
+        @Param({"1", "4"})
+        int maxEmojiPerComment;
+
+        List<CommentHydrator.ReactionRow> reactionRows;
+
+        @Setup
+        public void setUp() {
+            List<Long> ids = BenchmarkFixtures.pageRows(PAGE_SIZE).stream()
+                    .map(row -> row.entity().getId())
+                    .toList();
+            reactionRows = BenchmarkFixtures.viewerReactionRows(ids, maxEmojiPerComment);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Summary {
+
+        /**
+         * Distinct emoji on the comment, which is what the summary mapping scales with.
+         */
+        @Param({"8", "64", "256"})
+        int emojiKinds;
+
+        Row summaryRow;
+
+        @Setup
+        public void setUp() {
+            summaryRow = BenchmarkFixtures.summaryRow(emojiKinds);
+        }
+    }
+
+    @Benchmark
+    public Map<Long, CommentResponse.MyReaction> mergeReactions(ViewerPage page) {
+        return CommentHydrator.mergeReactions(page.reactionRows);
+    }
+
+    @Benchmark
+    public ReactionSummaryResponse toSummaryResponse(Summary summary) {
+        return DefaultReactionService.toSummaryResponse(summary.summaryRow);
+    }
+}
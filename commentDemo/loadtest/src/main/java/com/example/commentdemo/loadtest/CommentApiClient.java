@@ -0,0 +1,88 @@
+package com.example.commentdemo.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Thin HTTP client for the comment API. Setup calls are blocking and fail on any non-2xx status; workload
+ * requests are sent asynchronously and their status is left to the caller.
+ */
+final class CommentApiClient {
+
+    static final String ADMIN_ROLE = "comment:admin";
+    private static final long SETUP_ACTOR_ID = 1L;
+
+    private final URI baseUri;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    CommentApiClient(URI baseUri, ObjectMapper objectMapper) {
+        this.baseUri = baseUri;
+        this.objectMapper = objectMapper;
+    }
+
+    UUID upsertSubject(String subjectKey) throws IOException, InterruptedException {
+        HttpRequest request = request("/subjects/" + subjectKey, SETUP_ACTOR_ID)
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString("{}"))
+                .build();
+        return UUID.fromString(sendForJson(request).path("subject_id").asText());
+    }
+
+    JsonNode importComments(UUID subjectId, String ndjson) throws IOException, InterruptedException {
+        HttpRequest request = request("/subjects/id/" + subjectId + "/comments/import", SETUP_ACTOR_ID)
+                .header("Content-Type", "application/x-ndjson")
+                .header("X-Actor-Roles", ADMIN_ROLE)
+                .timeout(Duration.ofMinutes(10))
+                .POST(HttpRequest.BodyPublishers.ofString(ndjson))
+                .build();
+        return sendForJson(request);
+    }
+
+    JsonNode listTopLevel(UUID subjectId, String view, int limit) throws IOException, InterruptedException {
+        HttpRequest request = request("/subjects/id/%s/comments?view=%s&limit=%d&with_my_reaction=false"
+                .formatted(subjectId, view, limit), SETUP_ACTOR_ID)
+                .GET()
+                .build();
+        return sendForJson(request);
+    }
+
+    /**
+     * Starts a request builder for {@code path} acting as {@code actorId}.
+     */
+    HttpRequest.Builder request(String path, long actorId) {
+        return HttpRequest.newBuilder(baseUri.resolve(baseUri.getPath() + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("X-Actor-Id", Long.toString(actorId))
+                .header("X-Actor-Urn", "urn:user:" + actorId);
+    }
+
+    CompletableFuture<HttpResponse<Void>> sendAsync(HttpRequest request) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    String toJson(Object value) throws IOException {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    private JsonNode sendForJson(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("%s %s returned %d: %s".formatted(
+                    request.method(), request.uri(), response.statusCode(), response.body()));
+        }
+        return objectMapper.readTree(response.body());
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.commentdemo.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Seeds skewed synthetic data through the bulk import endpoint.
+ * <p>
+ * A few mega-threads hold {@code megaShare} of all comments and each gets {@code deepChains} reply chains
+ * of {@code chainDepth} levels; the remaining subjects shrink with rank. Inside a subject most replies go
+ * to a handful of hot top-level comments. External ids are stable per seed, so re-running against the same
+ * local database skips rows that are already there.
+ */
+final class DataSeeder {
+
+    private static final OffsetDateTime BASE_TIME = OffsetDateTime.of(2026, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final double TOP_LEVEL_SHARE = 0.3;
+    private static final double NESTED_REPLY_SHARE = 0.3;
+    private static final int DISCOVERY_PAGE = 100;
+
+    private final CommentApiClient api;
+    private final LoadTestOptions options;
+    private final SplittableRandom random;
+
+    DataSeeder(CommentApiClient api, LoadTestOptions options) {
+        this.api = api;
+        this.options = options;
+        this.random = new SplittableRandom(options.seed());
+    }
+
+    SeedData seed() throws IOException, InterruptedException {
+        int[] sizes = subjectSizes();
+        List<SeedData.Subject> subjects = new ArrayList<>(sizes.length);
+        for (int index = 0; index < sizes.length; index++) {
+            UUID subjectId = api.upsertSubject("load:subject-" + index);
+            int chains = index < options.megaThreads() ? options.deepChains() : 0;
+            JsonNode result = api.importComments(subjectId, commentsFor(index, sizes[index], chains));
+            System.out.printf("seeded subject %d (%s): imported=%d skipped=%d rejected=%d%n", index, subjectId,
+                    result.path("imported").asLong(), result.path("skipped").asLong(), result.path("rejected").asLong());
+            subjects.add(discover(subjectId));
+        }
+        return new SeedData(subjects);
+    }
+
+    /**
+     * Mega-threads split their share evenly; the rest follow a 1/rank curve with at least one comment each.
+     */
+    private int[] subjectSizes() {
+        int[] sizes = new int[options.subjects()];
+        int megaTotal = (int) (options.comments() * options.megaShare());
+        int rest = options.comments() - megaTotal;
+        double harmonic = 0;
+        for (int rank = 1; rank <= sizes.length - options.megaThreads(); rank++) {
+            harmonic += 1.0 / rank;
+        }
+        for (int index = 0; index < sizes.length; index++) {
+            sizes[index] = index < options.megaThreads()
+                    ? megaTotal / options.megaThreads()
+                    : Math.max(1, (int) (rest / (index - options.megaThreads() + 1) / harmonic));
+        }
+        return sizes;
+    }
+
+    private String commentsFor(int subjectIndex, int size, int chains) throws IOException {
+        StringBuilder ndjson = new StringBuilder(size * 160);
+        int topLevel = Math.max(1, (int) (size * TOP_LEVEL_SHARE));
+        int sequence = 0;
+        for (int i = 0; i < topLevel; i++) {
+            appendLine(ndjson, subjectIndex, sequence++, null);
+        }
+        for (int i = topLevel; i < size; i++) {
+            int parent = random.nextDouble() < NESTED_REPLY_SHARE && sequence > topLevel
+                    ? topLevel + random.nextInt(sequence - topLevel)
+                    : Skew.index(random, topLevel);
+            appendLine(ndjson, subjectIndex, sequence++, parent);
+        }
+        for (int chain = 0; chain < chains; chain++) {
+            int parent = Skew.index(random, topLevel);
+            for (int depth = 0; depth < options.chainDepth(); depth++) {
+                int current = sequence++;
+                appendLine(ndjson, subjectIndex, current, parent);
+                parent = current;
+            }
+        }
+        return ndjson.toString();
+    }
+
+    private void appendLine(StringBuilder ndjson, int subjectIndex, int sequence, Integer parent) throws IOException {
+        ObjectNode line = JsonNodeFactory.instance.objectNode()
+                .put("external_id", externalId(subjectIndex, sequence))
+                .put("author_id", 1 + random.nextInt(10_000))
+                .put("body_md", "Synthetic comment " + sequence + " on subject " + subjectIndex)
+                .put("created_at", BASE_TIME.plusSeconds(sequence).toString());
+        if (parent != null) {
+            line.put("parent_external_id", externalId(subjectIndex, parent));
+        }
+        ndjson.append(api.toJson(line)).append('\n');
+    }
+
+    private static String externalId(int subjectIndex, int sequence) {
+        return "s" + subjectIndex + "-" + sequence;
+    }
+
+    /**
+     * Reads back the hottest and newest top-level comments; those with replies become reply-list targets.
+     */
+    private SeedData.Subject discover(UUID subjectId) throws IOException, InterruptedException {
+        Set<Long> topLevel = new LinkedHashSet<>();
+        Set<Long> withReplies = new LinkedHashSet<>();
+        for (String view : List.of("best", "new")) {
+            for (JsonNode item : api.listTopLevel(subjectId, view, DISCOVERY_PAGE).path("items")) {
+                long id = item.path("id").asLong();
+                topLevel.add(id);
+                if (item.path("counters").path("replies").asInt() > 0) {
+                    withReplies.add(id);
+                }
+            }
+        }
+        return new SeedData.Subject(subjectId, List.copyOf(topLevel), List.copyOf(withReplies));
+    }
+}
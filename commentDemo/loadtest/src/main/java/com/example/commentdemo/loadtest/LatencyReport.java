@@ -0,0 +1,76 @@
+package com.example.commentdemo.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-operation latency histograms and counters. Latency runs from the request's scheduled start, not
+ * its actual send time, so queueing behind a slow server is included (no coordinated omission).
+ */
+final class LatencyReport {
+
+    private static final long MAX_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+    LatencyReport() {
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    void record(Operation operation, long latencyNanos, boolean success) {
+        Stats target = stats.get(operation);
+        target.latency.recordValue(Math.min(latencyNanos, MAX_TRACKABLE_NANOS));
+        (success ? target.succeeded : target.failed).increment();
+    }
+
+    void dropped(Operation operation) {
+        stats.get(operation).dropped.increment();
+    }
+
+    void print(PrintStream out, Duration measured) {
+        double seconds = measured.toNanos() / 1e9;
+        out.printf("%-10s %9s %7s %7s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "ok", "errors", "dropped", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Histogram total = new Histogram(MAX_TRACKABLE_NANOS, 3);
+        long ok = 0;
+        long errors = 0;
+        long dropped = 0;
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats s = entry.getValue();
+            total.add(s.latency);
+            ok += s.succeeded.sum();
+            errors += s.failed.sum();
+            dropped += s.dropped.sum();
+            printRow(out, entry.getKey().key(), s.succeeded.sum(), s.failed.sum(), s.dropped.sum(), seconds, s.latency);
+        }
+        printRow(out, "total", ok, errors, dropped, seconds, total);
+    }
+
+    private static void printRow(PrintStream out, String name, long ok, long errors, long dropped, double seconds, Histogram latency) {
+        out.printf("%-10s %9d %7d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                name, ok, errors, dropped, ok / seconds,
+                millis(latency, 50), millis(latency, 90), millis(latency, 99), millis(latency, 99.9),
+                latency.getMaxValue() / 1e6);
+    }
+
+    private static double millis(Histogram latency, double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1e6;
+    }
+
+    private static final class Stats {
+
+        private final Histogram latency = new ConcurrentHistogram(MAX_TRACKABLE_NANOS, 3);
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.commentdemo.loadtest;
+
+import com.example.commentdemo.CommentDemoApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+
+/**
+ * Starts {@link CommentDemoApplication} against a freshly seeded Postgres, drives the configured request
+ * mix and prints throughput and latency percentiles per endpoint.
+ * <p>
+ * The application runs in this JVM on a random port with its normal configuration, apart from the
+ * datasource and a quieter log level.
+ */
+public final class LoadTestHarness {
+
+    private LoadTestHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        try (TestDatabase database = TestDatabase.start(options)) {
+            database.ensureSchema();
+            try (ConfigurableApplicationContext application = startApplication(database)) {
+                int port = application.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+                CommentApiClient api = new CommentApiClient(
+                        URI.create("http://localhost:" + port + "/api/comments/v1"),
+                        application.getBean(ObjectMapper.class));
+
+                SeedData seed = new DataSeeder(api, options).seed();
+                System.out.printf("running %d req/s for %s after %s warmup%n", options.rate(), options.duration(), options.warmup());
+                LatencyReport report = new LatencyReport();
+                new WorkloadDriver(api, seed, options, report).run();
+                report.print(System.out, options.duration());
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(TestDatabase database) {
+        return new SpringApplicationBuilder(CommentDemoApplication.class).run(
+                "--server.port=0",
+                "--spring.r2dbc.url=" + database.r2dbcUrl(),
+                "--spring.r2dbc.username=" + database.user(),
+                "--spring.r2dbc.password=" + database.password(),
+                "--logging.level.com.example.commentdemo=INFO");
+    }
+}
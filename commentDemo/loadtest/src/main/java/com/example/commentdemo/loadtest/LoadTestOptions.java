@@ -0,0 +1,84 @@
+package com.example.commentdemo.loadtest;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options, given as {@code --name=value}. Every option has a default, so a bare run
+ * seeds an embedded Postgres and drives the default mix for one minute.
+ *
+ * @param jdbcUrl        local Postgres to use instead of the embedded one; its schema is created when missing
+ * @param rate           requests started per second (open model: the rate does not drop when the server slows down)
+ * @param maxInFlight    requests allowed in flight before new arrivals are counted as dropped
+ * @param megaThreads    subjects that together hold {@code megaShare} of all comments
+ * @param deepChains     reply chains of {@code chainDepth} levels added to each mega-thread
+ */
+record LoadTestOptions(String jdbcUrl,
+                       String dbUser,
+                       String dbPassword,
+                       int subjects,
+                       int comments,
+                       int megaThreads,
+                       double megaShare,
+                       int deepChains,
+                       int chainDepth,
+                       int rate,
+                       int maxInFlight,
+                       Duration warmup,
+                       Duration duration,
+                       Map<Operation, Integer> mix,
+                       long seed) {
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            int split = arg.indexOf('=');
+            values.put(arg.substring(2, split), arg.substring(split + 1));
+        }
+        LoadTestOptions options = new LoadTestOptions(
+                values.remove("jdbc-url"),
+                take(values, "db-user", "postgres"),
+                take(values, "db-password", "postgres"),
+                Integer.parseInt(take(values, "subjects", "50")),
+                Integer.parseInt(take(values, "comments", "100000")),
+                Integer.parseInt(take(values, "mega-threads", "3")),
+                Double.parseDouble(take(values, "mega-share", "0.5")),
+                Integer.parseInt(take(values, "deep-chains", "10")),
+                Integer.parseInt(take(values, "chain-depth", "100")),
+                Integer.parseInt(take(values, "rate", "200")),
+                Integer.parseInt(take(values, "max-in-flight", "512")),
+                Duration.parse(take(values, "warmup", "PT15S")),
+                Duration.parse(take(values, "duration", "PT60S")),
+                parseMix(take(values, "mix", "list-best:40,list-new:20,replies:20,create:10,react:10")),
+                Long.parseLong(take(values, "seed", "42")));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + values.keySet());
+        }
+        if (options.megaThreads() > options.subjects() || options.rate() <= 0) {
+            throw new IllegalArgumentException("mega-threads must not exceed subjects and rate must be positive");
+        }
+        return options;
+    }
+
+    private static String take(Map<String, String> values, String name, String defaultValue) {
+        String value = values.remove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static Map<Operation, Integer> parseMix(String raw) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : raw.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Mix entries look like list-best:40, got " + entry);
+            }
+            mix.put(Operation.fromKey(parts[0]), Integer.parseInt(parts[1]));
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.commentdemo.loadtest;
+
+/**
+ * Endpoints the workload exercises; the key is what {@code --mix} refers to and what the report prints.
+ */
+enum Operation {
+    LIST_BEST("list-best"),
+    LIST_NEW("list-new"),
+    REPLIES("replies"),
+    CREATE("create"),
+    REACT("react");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    String key() {
+        return key;
+    }
+
+    static Operation fromKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + key);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.commentdemo.loadtest;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Ids the workload targets. Subjects are ordered by size, so skewed picks favour the mega-threads.
+ */
+record SeedData(List<Subject> subjects) {
+
+    record Subject(UUID subjectId, List<Long> topLevelIds, List<Long> replyParentIds) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.commentdemo.loadtest;
+
+import java.util.SplittableRandom;
+
+/**
+ * Power-law index picker: index 0 is drawn far more often than the tail, which models hot subjects and
+ * hot threads without maintaining a full Zipf table.
+ */
+final class Skew {
+
+    private static final double EXPONENT = 3.0;
+
+    private Skew() {
+    }
+
+    static int index(SplittableRandom random, int size) {
+        return Math.min(size - 1, (int) (size * Math.pow(random.nextDouble(), EXPONENT)));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.commentdemo.loadtest;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Postgres instance the application under test runs against: an embedded server by default, or a local
+ * database given by {@code --jdbc-url}. The schema comes from the application's own {@code scame.sql}.
+ */
+final class TestDatabase implements AutoCloseable {
+
+    private final EmbeddedPostgres embedded;
+    private final String jdbcUrl;
+    private final String r2dbcUrl;
+    private final String user;
+    private final String password;
+
+    private TestDatabase(EmbeddedPostgres embedded, String jdbcUrl, String r2dbcUrl, String user, String password) {
+        this.embedded = embedded;
+        this.jdbcUrl = jdbcUrl;
+        this.r2dbcUrl = r2dbcUrl;
+        this.user = user;
+        this.password = password;
+    }
+
+    static TestDatabase start(LoadTestOptions options) throws IOException {
+        if (options.jdbcUrl() != null) {
+            String r2dbcUrl = options.jdbcUrl().replaceFirst("^jdbc:postgresql:", "r2dbc:postgresql:");
+            return new TestDatabase(null, options.jdbcUrl(), r2dbcUrl, options.dbUser(), options.dbPassword());
+        }
+        EmbeddedPostgres embedded = EmbeddedPostgres.builder().start();
+        return new TestDatabase(embedded,
+                embedded.getJdbcUrl("postgres", "postgres"),
+                "r2dbc:postgresql://localhost:%d/postgres".formatted(embedded.getPort()),
+                "postgres",
+                "");
+    }
+
+    /**
+     * Applies {@code scame.sql} unless the {@code comment} table already exists. The script is sent as one
+     * simple-protocol batch; the driver keeps dollar-quoted function bodies intact.
+     */
+    void ensureSchema() throws IOException, SQLException {
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, user, password);
+             Statement statement = connection.createStatement()) {
+            try (ResultSet existing = statement.executeQuery("SELECT to_regclass('public.comment') IS NOT NULL")) {
+                existing.next();
+                if (existing.getBoolean(1)) {
+                    return;
+                }
+            }
+            statement.execute(readSchema());
+        }
+    }
+
+    String r2dbcUrl() {
+        return r2dbcUrl;
+    }
+
+    String user() {
+        return user;
+    }
+
+    String password() {
+        return password;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (embedded != null) {
+            embedded.close();
+        }
+    }
+
+    private static String readSchema() throws IOException {
+        try (InputStream in = TestDatabase.class.getResourceAsStream("/scame.sql")) {
+            if (in == null) {
+                throw new IllegalStateException("scame.sql not found on the classpath");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.commentdemo.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator: requests are started on a fixed schedule of {@code rate} per second whatever
+ * the response times, with operations drawn from the configured mix. When {@code maxInFlight} requests are
+ * outstanding, further arrivals are counted as dropped instead of being sent late.
+ */
+final class WorkloadDriver {
+
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int ACTORS = 10_000;
+    private static final int LIST_LIMIT = 20;
+
+    private final CommentApiClient api;
+    private final SeedData seed;
+    private final LoadTestOptions options;
+    private final LatencyReport report;
+    private final SplittableRandom random;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private long createSequence;
+
+    WorkloadDriver(CommentApiClient api, SeedData seed, LoadTestOptions options, LatencyReport report) {
+        this.api = api;
+        this.seed = seed;
+        this.options = options;
+        this.report = report;
+        this.random = new SplittableRandom(options.seed() + 1);
+        this.operations = options.mix().keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += options.mix().get(operations[i]);
+            cumulativeWeights[i] = sum;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("Mix weights must add up to more than zero");
+        }
+    }
+
+    void run() throws IOException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup().toNanos();
+        long end = measureFrom + options.duration().toNanos();
+        for (long intended = start; intended < end; intended += interval) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = nextOperation();
+            boolean measured = intended >= measureFrom;
+            if (inFlight.get() >= options.maxInFlight()) {
+                if (measured) {
+                    report.dropped(operation);
+                }
+                continue;
+            }
+            HttpRequest request = requestFor(operation);
+            long scheduled = intended;
+            inFlight.incrementAndGet();
+            api.sendAsync(request).whenComplete((response, error) -> {
+                inFlight.decrementAndGet();
+                if (measured) {
+                    boolean success = error == null && response.statusCode() / 100 == 2;
+                    report.record(operation, System.nanoTime() - scheduled, success);
+                }
+            });
+        }
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private Operation nextOperation() {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private HttpRequest requestFor(Operation operation) throws IOException {
+        SeedData.Subject subject = seed.subjects().get(Skew.index(random, seed.subjects().size()));
+        long actorId = 1 + random.nextInt(ACTORS);
+        return switch (operation) {
+            case LIST_BEST -> api.request(listPath(subject, "best"), actorId).GET().build();
+            case LIST_NEW -> api.request(listPath(subject, "new"), actorId).GET().build();
+            case REPLIES -> api.request("/comments/%d/replies?limit=50".formatted(replyParent(subject)), actorId)
+                    .GET()
+                    .build();
+            case CREATE -> {
+                Long parentId = random.nextBoolean() ? pick(subject.topLevelIds()) : null;
+                String body = api.toJson(parentId != null
+                        ? Map.of("body_md", "Load comment " + createSequence++, "parent_id", parentId)
+                        : Map.of("body_md", "Load comment " + createSequence++));
+                yield api.request("/subjects/id/" + subject.subjectId() + "/comments", actorId)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+            }
+            case REACT -> api.request("/comments/%d/reactions/up".formatted(pick(subject.topLevelIds())), actorId)
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(api.toJson(Map.of("active", random.nextBoolean()))))
+                    .build();
+        };
+    }
+
+    private static String listPath(SeedData.Subject subject, String view) {
+        return "/subjects/id/%s/comments?view=%s&limit=%d".formatted(subject.subjectId(), view, LIST_LIMIT);
+    }
+
+    private long replyParent(SeedData.Subject subject) {
+        List<Long> parents = subject.replyParentIds().isEmpty() ? subject.topLevelIds() : subject.replyParentIds();
+        return pick(parents);
+    }
+
+    private long pick(List<Long> ids) {
+        return ids.get(Skew.index(random, ids.size()));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.commentdemo.comment.api.dto;
+
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+
+/**
+ * One NDJSON line of a bulk comment import. Parents are referenced by their legacy id and must
+ * precede their replies in the stream or have been imported earlier.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentImportRecord {
+
+    @JsonProperty("external_id")
+    private String externalId;
+
+    @JsonProperty("parent_external_id")
+    private String parentExternalId;
+
+    @JsonProperty("author_id")
+    private Long authorId;
+
+    @JsonProperty("author_urn")
+    private String authorUrn;
+
+    @JsonProperty("body_md")
+    private String bodyMd;
+
+    @JsonProperty("body_html")
+    private String bodyHtml;
+
+    @JsonProperty("status")
+    private CommentStatus status;
+
+    @JsonProperty("created_at")
+    private OffsetDateTime createdAt;
+
+    @JsonProperty("edited_at")
+    private OffsetDateTime editedAt;
+}
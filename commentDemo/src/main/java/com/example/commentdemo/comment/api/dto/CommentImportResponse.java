@@ -0,0 +1,26 @@
+package com.example.commentdemo.comment.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk comment import.
+ */
+@Builder
+public record CommentImportResponse(
+        @JsonProperty("imported") long imported,
+        @JsonProperty("skipped") long skipped,
+        @JsonProperty("rejected") long rejected,
+        @JsonProperty("errors") List<Rejection> errors
+) {
+
+    @Builder
+    public record Rejection(
+            @JsonProperty("line") long line,
+            @JsonProperty("external_id") String externalId,
+            @JsonProperty("reason") String reason
+    ) {
+    }
+}
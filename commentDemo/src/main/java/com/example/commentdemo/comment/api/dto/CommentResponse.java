@@ -14,7 +14,7 @@ import java.util.UUID;
 /**
  * Comment response projection aligned with the OpenAPI contract.
  */
-@Builder
+@Builder(toBuilder = true)
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public record CommentResponse(
         @JsonProperty("id") long id,
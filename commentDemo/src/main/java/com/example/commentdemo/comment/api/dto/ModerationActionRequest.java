@@ -0,0 +1,32 @@
+package com.example.commentdemo.comment.api.dto;
+
+import com.example.commentdemo.comment.model.ModerationActionType;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Request payload for a moderation action. {@code comment_id} is only read in batch requests; the
+ * single-comment endpoint takes it from the path.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModerationActionRequest {
+
+    @JsonProperty("comment_id")
+    private Long commentId;
+
+    @JsonProperty("action")
+    @NotNull
+    private ModerationActionType action;
+
+    @JsonProperty("reason")
+    @Size(max = 2000)
+    private String reason;
+}
@@ -0,0 +1,23 @@
+package com.example.commentdemo.comment.api.dto;
+
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.example.commentdemo.comment.model.ModerationActionType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+import java.time.OffsetDateTime;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ModerationActionResponse(
+        @JsonProperty("id") long id,
+        @JsonProperty("comment_id") Long commentId,
+        @JsonProperty("operator_id") long operatorId,
+        @JsonProperty("action") ModerationActionType action,
+        @JsonProperty("reason") String reason,
+        @JsonProperty("prev_status") CommentStatus prevStatus,
+        @JsonProperty("new_status") CommentStatus newStatus,
+        @JsonProperty("created_at") OffsetDateTime createdAt
+) {
+}
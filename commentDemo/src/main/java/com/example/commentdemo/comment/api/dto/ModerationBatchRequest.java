@@ -0,0 +1,27 @@
+package com.example.commentdemo.comment.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Several moderation actions applied and recorded in one transaction.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModerationBatchRequest {
+
+    @JsonProperty("actions")
+    @NotEmpty
+    @Size(max = 500)
+    private List<@Valid ModerationActionRequest> actions;
+}
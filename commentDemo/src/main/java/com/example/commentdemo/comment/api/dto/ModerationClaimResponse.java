@@ -0,0 +1,17 @@
+package com.example.commentdemo.comment.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Queue items leased to the calling moderator until {@code lease_expires_at}.
+ */
+@Builder
+public record ModerationClaimResponse(
+        @JsonProperty("items") List<CommentResponse> items,
+        @JsonProperty("lease_expires_at") OffsetDateTime leaseExpiresAt
+) {
+}
@@ -0,0 +1,30 @@
+package com.example.commentdemo.comment.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Request payload for reporting a comment. {@code reason} is a short code used as the histogram key.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportCreateRequest {
+
+    @JsonProperty("reason")
+    @NotBlank
+    @Size(max = 32)
+    @Pattern(regexp = "[A-Za-z0-9_-]+")
+    private String reason;
+
+    @JsonProperty("metadata")
+    private JsonNode metadata;
+}
@@ -0,0 +1,15 @@
+package com.example.commentdemo.comment.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+/**
+ * Receipt for a report. {@code created} is false when the caller had already reported the comment.
+ */
+@Builder
+public record ReportReceiptResponse(
+        @JsonProperty("report_id") Long reportId,
+        @JsonIgnore boolean created
+) {
+}
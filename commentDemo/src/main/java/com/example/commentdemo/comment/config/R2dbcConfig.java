@@ -1,5 +1,7 @@
 package com.example.commentdemo.comment.config;
 
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.example.commentdemo.comment.model.ReactionType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.r2dbc.postgresql.codec.Json;
@@ -28,7 +30,11 @@ public class R2dbcConfig {
         R2dbcDialect dialect = DialectResolver.getDialect(connectionFactory);
         return R2dbcCustomConversions.of(dialect, List.of(
                 new JsonNodeReadConverter(objectMapper),
-                new JsonNodeWriteConverter(objectMapper)
+                new JsonNodeWriteConverter(objectMapper),
+                new CommentStatusReadConverter(),
+                new CommentStatusWriteConverter(),
+                new ReactionTypeReadConverter(),
+                new ReactionTypeWriteConverter()
         ));
     }
 
@@ -75,4 +81,43 @@ public class R2dbcConfig {
             }
         }
     }
+
+    /**
+     * Status and reaction columns hold the lower-case values their CHECK constraints allow, not enum names.
+     */
+    @ReadingConverter
+    static class CommentStatusReadConverter implements Converter<String, CommentStatus> {
+
+        @Override
+        public CommentStatus convert(String source) {
+            return CommentStatus.fromValue(source);
+        }
+    }
+
+    @WritingConverter
+    static class CommentStatusWriteConverter implements Converter<CommentStatus, String> {
+
+        @Override
+        public String convert(CommentStatus source) {
+            return source.getValue();
+        }
+    }
+
+    @ReadingConverter
+    static class ReactionTypeReadConverter implements Converter<String, ReactionType> {
+
+        @Override
+        public ReactionType convert(String source) {
+            return ReactionType.fromValue(source);
+        }
+    }
+
+    @WritingConverter
+    static class ReactionTypeWriteConverter implements Converter<ReactionType, String> {
+
+        @Override
+        public String convert(ReactionType source) {
+            return source.getValue();
+        }
+    }
 }
@@ -0,0 +1,53 @@
+package com.example.commentdemo.comment.config;
+
+import com.example.commentdemo.comment.metrics.QueryMetricsListener;
+import com.example.commentdemo.comment.metrics.TimedConnectionFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.proxy.ProxyConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.r2dbc.ConnectionFactoryDecorator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Statement and pool instrumentation.
+ * <p>
+ * The decorator sits between the pool and the driver, so it sees every statement issued through
+ * {@code DatabaseClient} and the repositories alike. Pool size gauges ({@code r2dbc.pool.acquired},
+ * {@code idle}, {@code pending}, ...) come from Spring Boot's r2dbc-pool metrics; acquire latency is
+ * added by wrapping the pool itself.
+ */
+@Configuration
+public class R2dbcMetricsConfig {
+
+    @Bean
+    public QueryMetricsListener queryMetricsListener(MeterRegistry meterRegistry,
+                                                     @Value("${comment.metrics.slow-query-threshold:PT0.2S}") Duration slowQueryThreshold) {
+        return new QueryMetricsListener(meterRegistry, slowQueryThreshold);
+    }
+
+    @Bean
+    public ConnectionFactoryDecorator queryMetricsDecorator(QueryMetricsListener listener) {
+        return connectionFactory -> ProxyConnectionFactory.builder(connectionFactory)
+                .listener(listener)
+                .build();
+    }
+
+    @Bean
+    public static BeanPostProcessor connectionPoolAcquireTimer(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ConnectionPool pool) {
+                    return new TimedConnectionFactory(pool, beanName, meterRegistry.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.commentdemo.comment.counter;
+
+import org.slf4j.Logger;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Shared scaffolding of the write-behind folding jobs in this package.
+ * <p>
+ * Each job folds a queue table in batches of one statement each. The statement opens with the {@link #gate}
+ * CTE, a transaction-scoped advisory lock taken without waiting, so only one node folds a table at a time,
+ * and claims its rows with {@code FOR UPDATE SKIP LOCKED}, so rows held by an in-flight writer are left for
+ * the next run. {@link #run} repeats the batch until one comes back short or the batch budget is spent.
+ */
+final class BatchedDrain {
+
+    private BatchedDrain() {
+    }
+
+    /**
+     * The {@code gate} CTE; later CTEs only touch rows {@code WHERE (SELECT acquired FROM gate)}.
+     */
+    static String gate(String lockName) {
+        return """
+                gate AS (
+                    SELECT pg_try_advisory_xact_lock(hashtext('%s')) AS acquired
+                )""".formatted(lockName);
+    }
+
+    /**
+     * The {@code drained} CTE: deletes up to {@code :batchSize} unlocked rows of {@code table} in key order,
+     * provided the gate was acquired, and returns {@code returning} for them.
+     */
+    static String drained(String table, String keyColumns, String returning) {
+        return """
+                drained AS (
+                    DELETE FROM %1$s
+                    WHERE (%2$s) IN (SELECT %2$s
+                                     FROM %1$s
+                                     WHERE (SELECT acquired FROM gate)
+                                     ORDER BY %2$s
+                                     LIMIT :batchSize
+                                     FOR UPDATE SKIP LOCKED)
+                    RETURNING %3$s
+                )""".formatted(table, keyColumns, returning);
+    }
+
+    /**
+     * Runs {@code batch}, which returns the number of rows it folded, up to {@code maxBatches} times and
+     * returns the total. Failures and timeouts are logged as {@code "<job> failed"} and yield {@code null};
+     * the next scheduled run picks up where this one stopped.
+     */
+    static Long run(Mono<Long> batch, int batchSize, int maxBatches, Duration timeout, Logger log, String job) {
+        return batch
+                .repeat(maxBatches - 1)
+                .takeUntil(count -> count < batchSize)
+                .reduce(0L, Long::sum)
+                .timeout(timeout)
+                .onErrorResume(ex -> {
+                    log.warn("{} failed", job, ex);
+                    return Mono.empty();
+                })
+                .block();
+    }
+}
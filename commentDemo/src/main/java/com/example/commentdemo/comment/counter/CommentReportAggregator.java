@@ -0,0 +1,206 @@
+package com.example.commentdemo.comment.counter;
+
+import com.example.commentdemo.comment.service.CommentPageCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Folds new {@code comment_report} rows into {@code comment_report_stats} and acts on the totals.
+ * <p>
+ * Intake only inserts report rows, so thousands of reports against one comment never contend on a shared
+ * row. This job marks a batch of unfolded reports and adds the open ones to each comment's open count and
+ * reason histogram in one statement. Thresholds are evaluated against those totals: a published comment
+ * past the subject's {@code auto_hide_reports} policy (or {@code comment.reports.auto-hide-threshold}) is
+ * hidden and audited as a system action, and any comment past {@code queue-threshold} is put on the
+ * moderation queue. Moderation actions close the open reports and reset the totals.
+ * <p>
+ * Each batch first takes a per-comment advisory lock on the comments it is about to fold, in its own
+ * statement, and then folds only those comments. Moderation actions take the same locks before their reset,
+ * so whichever side runs second starts its statement after the other committed and sees its rows. Comments
+ * locked by an in-flight action are left for the next batch.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CommentReportAggregator {
+
+    /**
+     * Also taken by {@code DefaultModerationService} before it resets a comment's totals.
+     */
+    private static final String LOCK_SQL = """
+            WITH %s,
+            candidates AS (
+                SELECT DISTINCT comment_id
+                FROM (SELECT comment_id
+                      FROM comment_report
+                      WHERE NOT folded AND (SELECT acquired FROM gate)
+                      ORDER BY id
+                      LIMIT :batchSize) r
+            )
+            SELECT comment_id
+            FROM candidates
+            WHERE pg_try_advisory_xact_lock(hashtext('comment_report_stats'), hashint8(comment_id))
+            """.formatted(BatchedDrain.gate("comment_report_stats"));
+
+    private static final String FOLD_SQL = """
+            WITH drained AS (
+                UPDATE comment_report r
+                SET folded = true
+                WHERE r.id IN (SELECT id
+                               FROM comment_report
+                               WHERE NOT folded
+                                 AND comment_id = ANY(:commentIds)
+                               ORDER BY id
+                               LIMIT :batchSize
+                               FOR UPDATE SKIP LOCKED)
+                RETURNING r.comment_id, r.reason, r.status, r.created_at
+            ),
+            by_reason AS (
+                SELECT comment_id, COALESCE(reason, 'other') AS reason, COUNT(*)::int AS n, MAX(created_at) AS latest
+                FROM drained
+                WHERE status = 'open'
+                GROUP BY comment_id, COALESCE(reason, 'other')
+            ),
+            by_comment AS (
+                SELECT comment_id, SUM(n)::int AS n, jsonb_object_agg(reason, n) AS reasons, MAX(latest) AS latest
+                FROM by_reason
+                GROUP BY comment_id
+            ),
+            evaluated AS (
+                SELECT b.comment_id, b.n, b.reasons, b.latest, c.subject_id, c.status,
+                       COALESCE(s.open_count, 0) + b.n AS open_total,
+                       CASE WHEN jsonb_typeof(sub.policy -> 'auto_hide_reports') = 'number'
+                            THEN (sub.policy ->> 'auto_hide_reports')::int
+                            ELSE :autoHideThreshold END AS hide_at
+                FROM by_comment b
+                JOIN comment c ON c.id = b.comment_id
+                JOIN comment_subject sub ON sub.subject_id = c.subject_id
+                LEFT JOIN comment_report_stats s ON s.comment_id = b.comment_id
+            ),
+            hidden AS (
+                UPDATE comment c
+                SET status = 'hidden'
+                FROM evaluated e
+                WHERE c.id = e.comment_id
+                  AND c.status = 'published'
+                  AND e.hide_at > 0
+                  AND e.open_total >= e.hide_at
+                RETURNING c.id, c.subject_id, e.open_total
+            ),
+            stats AS (
+                INSERT INTO comment_report_stats AS s (comment_id, open_count, reason_counts, last_reported_at, auto_hidden_at)
+                SELECT e.comment_id, e.n, e.reasons, e.latest, CASE WHEN h.id IS NOT NULL THEN now() END
+                FROM evaluated e
+                LEFT JOIN hidden h ON h.id = e.comment_id
+                ON CONFLICT (comment_id) DO UPDATE
+                    SET open_count = s.open_count + EXCLUDED.open_count,
+                        reason_counts = (SELECT jsonb_object_agg(key, total)
+                                         FROM (SELECT key, SUM(value::int) AS total
+                                               FROM (SELECT * FROM jsonb_each_text(s.reason_counts)
+                                                     UNION ALL
+                                                     SELECT * FROM jsonb_each_text(EXCLUDED.reason_counts)) merged
+                                               GROUP BY key) totals),
+                        last_reported_at = GREATEST(s.last_reported_at, EXCLUDED.last_reported_at),
+                        auto_hidden_at = COALESCE(EXCLUDED.auto_hidden_at, s.auto_hidden_at)
+            ),
+            audited AS (
+                -- operator 0 marks system actions
+                INSERT INTO moderation_action (comment_id, operator_id, operator_urn, action, reason, prev_status, new_status)
+                SELECT id, 0, 'system:auto-moderation', 'hide',
+                       format('auto-hidden after %s open reports', open_total), 'published', 'hidden'
+                FROM hidden
+            ),
+            queued AS (
+                INSERT INTO comment_moderation_queue (comment_id, subject_id, reason)
+                SELECT comment_id, subject_id, 'reported'
+                FROM evaluated
+                WHERE open_total >= :queueThreshold
+                  AND status IN ('published', 'hidden')
+                ON CONFLICT (comment_id) DO NOTHING
+            )
+            SELECT 'drained' AS kind, NULL::uuid AS subject_id, (SELECT COUNT(*) FROM drained) AS drained
+            UNION ALL
+            SELECT DISTINCT 'subject', subject_id, NULL::bigint FROM hidden
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final CommentPageCache pageCache;
+
+    @Value("${comment.reports.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${comment.reports.max-batches:20}")
+    private int maxBatches;
+
+    @Value("${comment.reports.auto-hide-threshold:10}")
+    private int autoHideThreshold;
+
+    @Value("${comment.reports.queue-threshold:1}")
+    private int queueThreshold;
+
+    @Value("${comment.counters.timeout:PT30S}")
+    private Duration timeout;
+
+    @Scheduled(initialDelayString = "${comment.reports.interval:PT2S}",
+            fixedDelayString = "${comment.reports.interval:PT2S}")
+    public void fold() {
+        Long drained = BatchedDrain.run(foldBatch(), batchSize, maxBatches, timeout, log, "Comment report aggregation");
+        if (drained != null && drained > 0) {
+            log.debug("Folded {} comment reports", drained);
+        }
+    }
+
+    private Mono<Long> foldBatch() {
+        // the fold statement has to start after the locks are held, so it sees every reset committed before
+        Mono<Long> batch = databaseClient.sql(LOCK_SQL)
+                .bind("batchSize", batchSize)
+                .map((row, metadata) -> row.get("comment_id", Long.class))
+                .all()
+                .collectList()
+                .flatMap(commentIds -> commentIds.isEmpty()
+                        ? Mono.just(0L)
+                        : databaseClient.sql(FOLD_SQL)
+                        .bind("commentIds", commentIds.toArray(Long[]::new))
+                        .bind("batchSize", batchSize)
+                        .bind("autoHideThreshold", autoHideThreshold)
+                        .bind("queueThreshold", queueThreshold)
+                        .map((row, metadata) -> new FoldRow(
+                                row.get("kind", String.class),
+                                row.get("subject_id", UUID.class),
+                                row.get("drained", Long.class)))
+                        .all()
+                        .collectList()
+                        .map(this::applyFoldResult));
+        return Mono.defer(() -> transactionalOperator.transactional(batch));
+    }
+
+    private long applyFoldResult(List<FoldRow> rows) {
+        long drained = 0;
+        List<UUID> subjects = new ArrayList<>();
+        for (FoldRow row : rows) {
+            if ("drained".equals(row.kind())) {
+                drained = row.drained() != null ? row.drained() : 0L;
+            } else if (row.subjectId() != null) {
+                subjects.add(row.subjectId());
+            }
+        }
+        // auto-hidden comments drop out of cached pages
+        subjects.forEach(pageCache::invalidateSubject);
+        return drained;
+    }
+
+    private record FoldRow(String kind, UUID subjectId, Long drained) {
+    }
+}
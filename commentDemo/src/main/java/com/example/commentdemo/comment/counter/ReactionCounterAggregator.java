@@ -0,0 +1,268 @@
+package com.example.commentdemo.comment.counter;
+
+import com.example.commentdemo.comment.service.CommentPageCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Folds the reaction deltas appended by {@code fn_reaction_counter} into the denormalized counters.
+ * <p>
+ * Reactions no longer update the comment row themselves, so concurrent votes on a popular comment do not
+ * queue on its row lock. Instead this job drains {@code comment_counter_delta} in batches and applies one
+ * coalesced update per comment. Drain and apply run in one statement, so a crash either keeps or applies
+ * the whole batch; the gated, batched drain is shared with the other folding jobs through {@link BatchedDrain}.
+ * A slower reconciliation pass walks all comments by id and recounts them from
+ * {@code comment_reaction}. It repairs drift left by manual fixes or restored backups. Both jobs take the
+ * same transaction-scoped advisory lock, so only one node works at a time and they never overlap.
+ * <p>
+ * Whenever either job writes a comment's up/down counters it publishes a {@code reaction.counters} event with
+ * the new totals. The per-reaction {@code reaction.changed} events only carry deltas, so these are what lets
+ * stream clients converge on the stored counts.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReactionCounterAggregator {
+
+    private static final String LOCK_NAME = "comment_counter_delta";
+
+    private static final String FLUSH_SQL = """
+            WITH %s,
+            %s,
+            emoji AS (
+                INSERT INTO comment_emoji_count (comment_id, emoji_code, count)
+                SELECT d.comment_id, d.emoji_code, SUM(d.emoji_delta)::int
+                FROM drained d
+                JOIN comment c ON c.id = d.comment_id
+                WHERE d.emoji_code IS NOT NULL
+                GROUP BY d.comment_id, d.emoji_code
+                ON CONFLICT (comment_id, emoji_code)
+                    DO UPDATE SET count = comment_emoji_count.count + EXCLUDED.count
+                RETURNING 1
+            ),
+            coalesced AS (
+                SELECT comment_id, SUM(up_delta)::int AS up, SUM(down_delta)::int AS down
+                FROM drained
+                GROUP BY comment_id
+                HAVING SUM(up_delta) <> 0 OR SUM(down_delta) <> 0
+            ),
+            applied AS (
+                UPDATE comment c
+                SET up_count = c.up_count + d.up,
+                    down_count = c.down_count + d.down
+                FROM coalesced d
+                WHERE c.id = d.comment_id
+                RETURNING c.id, c.subject_id, c.parent_id, c.up_count, c.down_count
+            ),
+            published AS (
+                SELECT fn_publish_comment_event(subject_id, 'reaction.counters', id, parent_id IS NULL,
+                        jsonb_build_object('subject_id', subject_id,
+                                           'comment_id', id,
+                                           'counters', jsonb_build_object('up', up_count, 'down', down_count)))
+                FROM applied
+            ),
+            epoch AS (
+                -- every drained delta may change a top-level page, including the viewer's own reaction
+                UPDATE comment_subject s
+                SET reaction_epoch = s.reaction_epoch + 1
+                WHERE s.subject_id IN (SELECT c.subject_id
+                                       FROM drained d
+                                       JOIN comment c ON c.id = d.comment_id
+                                       WHERE c.parent_id IS NULL)
+                RETURNING 1
+            )
+            SELECT 'drained' AS kind, NULL::uuid AS subject_id, (SELECT COUNT(*) FROM drained) AS drained
+            -- a plain SELECT CTE only runs when referenced
+            WHERE (SELECT COUNT(*) FROM published) >= 0
+            UNION ALL
+            SELECT DISTINCT 'subject', subject_id, NULL::bigint FROM applied WHERE parent_id IS NULL
+            """.formatted(BatchedDrain.gate(LOCK_NAME),
+            BatchedDrain.drained("comment_counter_delta", "id", "comment_id, up_delta, down_delta, emoji_code, emoji_delta"));
+
+    private static final String RECONCILE_SQL = """
+            WITH %s,
+            batch AS (
+                SELECT id
+                FROM comment
+                WHERE id > :afterId AND (SELECT acquired FROM gate)
+                ORDER BY id
+                LIMIT :batchSize
+            ),
+            actual AS (
+                SELECT b.id,
+                       COUNT(r.id) FILTER (WHERE r.type = 'up')::int   AS up,
+                       COUNT(r.id) FILTER (WHERE r.type = 'down')::int AS down
+                FROM batch b
+                LEFT JOIN comment_reaction r ON r.comment_id = b.id
+                GROUP BY b.id
+            ),
+            pending AS (
+                SELECT comment_id, SUM(up_delta)::int AS up, SUM(down_delta)::int AS down
+                FROM comment_counter_delta
+                WHERE comment_id IN (SELECT id FROM batch)
+                GROUP BY comment_id
+            ),
+            expected AS (
+                SELECT a.id, a.up - COALESCE(p.up, 0) AS up, a.down - COALESCE(p.down, 0) AS down
+                FROM actual a
+                LEFT JOIN pending p ON p.comment_id = a.id
+            ),
+            repaired AS (
+                UPDATE comment c
+                SET up_count = e.up,
+                    down_count = e.down
+                FROM expected e
+                WHERE c.id = e.id
+                  AND (c.up_count, c.down_count) IS DISTINCT FROM (e.up, e.down)
+                RETURNING c.id, c.subject_id, c.parent_id, c.up_count, c.down_count
+            ),
+            published AS (
+                SELECT fn_publish_comment_event(subject_id, 'reaction.counters', id, parent_id IS NULL,
+                        jsonb_build_object('subject_id', subject_id,
+                                           'comment_id', id,
+                                           'counters', jsonb_build_object('up', up_count, 'down', down_count)))
+                FROM repaired
+            ),
+            epoch AS (
+                UPDATE comment_subject s
+                SET reaction_epoch = s.reaction_epoch + 1
+                WHERE s.subject_id IN (SELECT subject_id FROM repaired WHERE parent_id IS NULL)
+                RETURNING 1
+            ),
+            emoji_expected AS (
+                SELECT COALESCE(a.comment_id, p.comment_id) AS comment_id,
+                       COALESCE(a.emoji_code, p.emoji_code) AS emoji_code,
+                       COALESCE(a.count, 0) - COALESCE(p.count, 0) AS count
+                FROM (SELECT comment_id, emoji_code, COUNT(*)::int AS count
+                      FROM comment_reaction
+                      WHERE type = 'emoji' AND comment_id IN (SELECT id FROM batch)
+                      GROUP BY comment_id, emoji_code) a
+                FULL JOIN (SELECT comment_id, emoji_code, SUM(emoji_delta)::int AS count
+                           FROM comment_counter_delta
+                           WHERE emoji_code IS NOT NULL AND comment_id IN (SELECT id FROM batch)
+                           GROUP BY comment_id, emoji_code) p
+                    ON p.comment_id = a.comment_id AND p.emoji_code = a.emoji_code
+            ),
+            emoji_removed AS (
+                DELETE FROM comment_emoji_count ec
+                WHERE ec.comment_id IN (SELECT id FROM batch)
+                  AND NOT EXISTS (SELECT 1
+                                  FROM emoji_expected e
+                                  WHERE e.comment_id = ec.comment_id AND e.emoji_code = ec.emoji_code)
+                RETURNING 1
+            ),
+            emoji_repaired AS (
+                INSERT INTO comment_emoji_count (comment_id, emoji_code, count)
+                SELECT comment_id, emoji_code, count
+                FROM emoji_expected
+                ON CONFLICT (comment_id, emoji_code)
+                    DO UPDATE SET count = EXCLUDED.count
+                    WHERE comment_emoji_count.count <> EXCLUDED.count
+                RETURNING 1
+            )
+            SELECT (SELECT acquired FROM gate)           AS acquired,
+                   (SELECT MAX(id) FROM batch)           AS last_id,
+                   (SELECT COUNT(*) FROM repaired)
+                       + (SELECT COUNT(*) FROM emoji_removed)
+                       + (SELECT COUNT(*) FROM emoji_repaired) AS repaired
+            WHERE (SELECT COUNT(*) FROM published) >= 0
+            """.formatted(BatchedDrain.gate(LOCK_NAME));
+
+    private final DatabaseClient databaseClient;
+    private final CommentPageCache pageCache;
+
+    @Value("${comment.counters.flush.batch-size:5000}")
+    private int flushBatchSize;
+
+    @Value("${comment.counters.flush.max-batches:20}")
+    private int flushMaxBatches;
+
+    @Value("${comment.counters.reconcile.batch-size:2000}")
+    private int reconcileBatchSize;
+
+    @Value("${comment.counters.timeout:PT30S}")
+    private Duration timeout;
+
+    private volatile long reconcileCursor;
+
+    @Scheduled(initialDelayString = "${comment.counters.flush.interval:PT1S}",
+            fixedDelayString = "${comment.counters.flush.interval:PT1S}")
+    public void flush() {
+        Long drained = BatchedDrain.run(flushBatch(), flushBatchSize, flushMaxBatches, timeout, log, "Reaction counter flush");
+        if (drained != null && drained > 0) {
+            log.debug("Folded {} reaction counter deltas", drained);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${comment.counters.reconcile.initial-delay:PT2M}",
+            fixedDelayString = "${comment.counters.reconcile.interval:PT1M}")
+    public void reconcile() {
+        databaseClient.sql(RECONCILE_SQL)
+                .bind("afterId", reconcileCursor)
+                .bind("batchSize", reconcileBatchSize)
+                .map((row, metadata) -> new ReconcileResult(
+                        Boolean.TRUE.equals(row.get("acquired", Boolean.class)),
+                        row.get("last_id", Long.class),
+                        row.get("repaired", Long.class)))
+                .one()
+                .doOnNext(result -> {
+                    if (!result.acquired()) {
+                        return;
+                    }
+                    // an empty batch means the walk reached the end of the table; start over
+                    reconcileCursor = result.lastId() != null ? result.lastId() : 0L;
+                    if (result.repaired() != null && result.repaired() > 0) {
+                        log.warn("Reconciled {} drifted reaction counters up to comment {}", result.repaired(), result.lastId());
+                    }
+                })
+                .timeout(timeout)
+                .onErrorResume(ex -> {
+                    log.warn("Reaction counter reconciliation failed", ex);
+                    return Mono.empty();
+                })
+                .block();
+    }
+
+    private Mono<Long> flushBatch() {
+        return Mono.defer(() -> databaseClient.sql(FLUSH_SQL)
+                .bind("batchSize", flushBatchSize)
+                .map((row, metadata) -> new FlushRow(
+                        row.get("kind", String.class),
+                        row.get("subject_id", UUID.class),
+                        row.get("drained", Long.class)))
+                .all()
+                .collectList()
+                .map(this::applyFlushResult));
+    }
+
+    private long applyFlushResult(List<FlushRow> rows) {
+        long drained = 0;
+        List<UUID> subjects = new ArrayList<>();
+        for (FlushRow row : rows) {
+            if ("drained".equals(row.kind())) {
+                drained = row.drained() != null ? row.drained() : 0L;
+            } else if (row.subjectId() != null) {
+                subjects.add(row.subjectId());
+            }
+        }
+        // counters on cached top-level pages only move once the deltas land
+        subjects.forEach(pageCache::invalidateSubject);
+        return drained;
+    }
+
+    private record FlushRow(String kind, UUID subjectId, Long drained) {
+    }
+
+    private record ReconcileResult(boolean acquired, Long lastId, Long repaired) {
+    }
+}
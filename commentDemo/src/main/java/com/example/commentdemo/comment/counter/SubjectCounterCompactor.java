@@ -0,0 +1,82 @@
+package com.example.commentdemo.comment.counter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Folds the striped subject counter slots back into {@code comment_subject}.
+ * <p>
+ * Comment writes add to one of several {@code comment_subject_counter} slots instead of updating the subject
+ * row, so concurrent writers on a busy subject rarely share a lock. Readers sum the base and the slots, which
+ * stays correct at any time; compaction only keeps the number of slot rows small. Each batch deletes slots
+ * and adds them to the base in one statement, so totals, including {@code write_version}, never move
+ * backwards. Slots locked by an in-flight write are skipped and picked up by the next run.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SubjectCounterCompactor {
+
+    private static final String COMPACT_SQL = """
+            WITH %s,
+            %s,
+            summed AS (
+                SELECT subject_id,
+                       SUM(comment_count)::int  AS comments,
+                       SUM(visible_count)::int  AS visible,
+                       SUM(write_version)::bigint AS versions,
+                       MAX(last_commented_at)   AS latest
+                FROM drained
+                GROUP BY subject_id
+            ),
+            applied AS (
+                UPDATE comment_subject s
+                SET comment_count = s.comment_count + x.comments,
+                    visible_count = s.visible_count + x.visible,
+                    write_version = s.write_version + x.versions,
+                    last_commented_at = GREATEST(s.last_commented_at, x.latest)
+                FROM summed x
+                WHERE s.subject_id = x.subject_id
+                RETURNING 1
+            )
+            SELECT (SELECT COUNT(*) FROM drained) AS drained,
+                   (SELECT COUNT(*) FROM applied) AS subjects
+            """.formatted(BatchedDrain.gate("comment_subject_counter"),
+            BatchedDrain.drained("comment_subject_counter", "subject_id, slot",
+                    "subject_id, comment_count, visible_count, write_version, last_commented_at"));
+
+    private final DatabaseClient databaseClient;
+
+    @Value("${comment.counters.subject.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${comment.counters.subject.max-batches:20}")
+    private int maxBatches;
+
+    @Value("${comment.counters.timeout:PT30S}")
+    private Duration timeout;
+
+    @Scheduled(initialDelayString = "${comment.counters.subject.interval:PT30S}",
+            fixedDelayString = "${comment.counters.subject.interval:PT30S}")
+    public void compact() {
+        Long drained = BatchedDrain.run(compactBatch(), batchSize, maxBatches, timeout, log, "Subject counter compaction");
+        if (drained != null && drained > 0) {
+            log.debug("Compacted {} subject counter slots", drained);
+        }
+    }
+
+    private Mono<Long> compactBatch() {
+        return Mono.defer(() -> databaseClient.sql(COMPACT_SQL)
+                .bind("batchSize", batchSize)
+                .map((row, metadata) -> row.get("drained", Long.class))
+                .one()
+                .defaultIfEmpty(0L));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.commentdemo.comment.counter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Folds the visibility deltas appended by {@code fn_subject_metrics} into the per-subject metric tables.
+ * <p>
+ * Every visible insert on a busy subject used to upsert the same {@code comment_latency_histogram} bucket and,
+ * for prolific authors, the same {@code comment_contributor_stat} row, so concurrent writers queued on those
+ * row locks. The trigger now only appends to {@code comment_metric_delta}; this job drains it in batches and
+ * applies one coalesced upsert per contributor and per bucket. Drain and apply run in one statement, so a
+ * crash either keeps or applies the whole batch. Metrics lag writes by at most one interval.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SubjectMetricsAggregator {
+
+    private static final String FOLD_SQL = """
+            WITH %s,
+            %s,
+            live AS (
+                -- deltas of deleted subjects are dropped with the batch
+                SELECT d.*
+                FROM drained d
+                JOIN comment_subject s ON s.subject_id = d.subject_id
+            ),
+            contributors AS (
+                INSERT INTO comment_contributor_stat AS cs (subject_id, author_id, visible_count)
+                SELECT subject_id, author_id, SUM(delta)::int
+                FROM live
+                GROUP BY subject_id, author_id
+                HAVING SUM(delta) <> 0
+                ON CONFLICT (subject_id, author_id)
+                    DO UPDATE SET visible_count = cs.visible_count + EXCLUDED.visible_count
+                RETURNING 1
+            ),
+            buckets AS (
+                INSERT INTO comment_latency_histogram AS h (subject_id, bucket, count)
+                SELECT subject_id, bucket, SUM(delta)::int
+                FROM live
+                GROUP BY subject_id, bucket
+                HAVING SUM(delta) <> 0
+                ON CONFLICT (subject_id, bucket)
+                    DO UPDATE SET count = h.count + EXCLUDED.count
+                RETURNING 1
+            )
+            SELECT COUNT(*) AS drained
+            FROM drained
+            """.formatted(BatchedDrain.gate("comment_metric_delta"),
+            BatchedDrain.drained("comment_metric_delta", "id", "subject_id, author_id, bucket, delta"));
+
+    private final DatabaseClient databaseClient;
+
+    @Value("${comment.counters.metrics.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${comment.counters.metrics.max-batches:20}")
+    private int maxBatches;
+
+    @Value("${comment.counters.timeout:PT30S}")
+    private Duration timeout;
+
+    @Scheduled(initialDelayString = "${comment.counters.metrics.interval:PT5S}",
+            fixedDelayString = "${comment.counters.metrics.interval:PT5S}")
+    public void fold() {
+        Long drained = BatchedDrain.run(foldBatch(), batchSize, maxBatches, timeout, log, "Subject metrics aggregation");
+        if (drained != null && drained > 0) {
+            log.debug("Folded {} subject metric deltas", drained);
+        }
+    }
+
+    private Mono<Long> foldBatch() {
+        return Mono.defer(() -> databaseClient.sql(FOLD_SQL)
+                .bind("batchSize", batchSize)
+                .map((row, metadata) -> row.get("drained", Long.class))
+                .one()
+                .defaultIfEmpty(0L));
+    }
+}
@@ -7,6 +7,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -15,6 +16,9 @@ import java.util.UUID;
 
 /**
  * Persistence entity mapping {@code comment_subject}.
+ * <p>
+ * The counters are maintained by triggers in striped slots and never written from here; they are read
+ * as totals through {@code comment_subject_totals}.
  */
 @Getter
 @Setter
@@ -40,12 +44,15 @@ public class CommentSubjectEntity {
     @Column("policy")
     private JsonNode policy;
 
+    @ReadOnlyProperty
     @Column("comment_count")
     private Integer commentCount;
 
+    @ReadOnlyProperty
     @Column("visible_count")
     private Integer visibleCount;
 
+    @ReadOnlyProperty
     @Column("last_commented_at")
     private OffsetDateTime lastCommentedAt;
 
@@ -0,0 +1,104 @@
+package com.example.commentdemo.comment.metrics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.proxy.core.QueryExecutionInfo;
+import io.r2dbc.proxy.core.QueryInfo;
+import io.r2dbc.proxy.listener.ProxyExecutionListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Records latency and returned rows for every statement that reaches the driver, keyed by a logical name.
+ * <p>
+ * Templates from {@link com.example.commentdemo.comment.service.CommentQueryRegistry} carry their name in a
+ * leading block comment. Anything else, such as repository-generated SQL, is named after its
+ * verb and first table, e.g. {@code select.comment}, which keeps the tag set bounded. Statements slower than
+ * the threshold are logged with their SQL shape; bind values never reach the log.
+ */
+@Slf4j
+public class QueryMetricsListener implements ProxyExecutionListener {
+
+    private static final String ROWS_KEY = QueryMetricsListener.class.getName() + ".rows";
+    private static final Pattern NAME_TAG = Pattern.compile("^\\s*/\\*\\s*([\\w.-]+)\\s*\\*/");
+    private static final Pattern VERB = Pattern.compile("^\\s*(\\w+)");
+    private static final Pattern TABLE = Pattern.compile("\\b(?:FROM|INTO|UPDATE)\\s+\"?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int MAX_SHAPE_LENGTH = 1000;
+
+    private final MeterRegistry meterRegistry;
+    private final Duration slowQueryThreshold;
+    private final Cache<String, String> statementNames = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    public QueryMetricsListener(MeterRegistry meterRegistry, Duration slowQueryThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    @Override
+    public void beforeQuery(QueryExecutionInfo execInfo) {
+        execInfo.getValueStore().put(ROWS_KEY, new AtomicLong());
+    }
+
+    @Override
+    public void eachQueryResult(QueryExecutionInfo execInfo) {
+        AtomicLong rows = execInfo.getValueStore().get(ROWS_KEY, AtomicLong.class);
+        if (rows != null) {
+            rows.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void afterQuery(QueryExecutionInfo execInfo) {
+        String sql = execInfo.getQueries().stream()
+                .map(QueryInfo::getQuery)
+                .collect(Collectors.joining("; "));
+        String name = statementNames.get(sql, QueryMetricsListener::statementName);
+        Duration elapsed = execInfo.getExecuteDuration();
+        AtomicLong rows = execInfo.getValueStore().get(ROWS_KEY, AtomicLong.class);
+        long rowCount = rows == null ? 0 : rows.get();
+
+        Timer.builder("comment.sql.query")
+                .description("Statement execution time, including consumption of its results")
+                .tag("statement", name)
+                .tag("outcome", execInfo.isSuccess() ? "success" : "error")
+                .register(meterRegistry)
+                .record(elapsed);
+        DistributionSummary.builder("comment.sql.rows")
+                .description("Rows returned per statement execution")
+                .tag("statement", name)
+                .register(meterRegistry)
+                .record(rowCount);
+
+        if (elapsed.compareTo(slowQueryThreshold) >= 0) {
+            log.warn("Slow query {} took {} ms and returned {} rows: {}", name, elapsed.toMillis(), rowCount, shape(sql));
+        }
+    }
+
+    static String statementName(String sql) {
+        Matcher tag = NAME_TAG.matcher(sql);
+        if (tag.find()) {
+            return tag.group(1);
+        }
+        Matcher verb = VERB.matcher(sql);
+        String name = verb.find() ? verb.group(1).toLowerCase(Locale.ROOT) : "unknown";
+        Matcher table = TABLE.matcher(sql);
+        return table.find() ? name + "." + table.group(1).toLowerCase(Locale.ROOT) : name;
+    }
+
+    private static String shape(String sql) {
+        String shape = WHITESPACE.matcher(sql).replaceAll(" ").trim();
+        return shape.length() <= MAX_SHAPE_LENGTH ? shape : shape.substring(0, MAX_SHAPE_LENGTH) + "...";
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.commentdemo.comment.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Locale;
+
+/**
+ * Moderation action recorded in {@code moderation_action}, with the comment status it leads to.
+ */
+public enum ModerationActionType {
+
+    APPROVE("approve", CommentStatus.PUBLISHED),
+    HIDE("hide", CommentStatus.HIDDEN),
+    DELETE("delete", CommentStatus.DELETED),
+    SPAM("spam", CommentStatus.SPAM),
+    RESTORE("restore", CommentStatus.PUBLISHED),
+    SHADOW_BAN("shadow_ban", CommentStatus.HIDDEN),
+    /**
+     * Sent back for review by automatic moderation; not accepted from moderators.
+     */
+    HOLD("hold", CommentStatus.PENDING);
+
+    private final String value;
+    private final CommentStatus targetStatus;
+
+    ModerationActionType(String value, CommentStatus targetStatus) {
+        this.value = value;
+        this.targetStatus = targetStatus;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+
+    public CommentStatus getTargetStatus() {
+        return targetStatus;
+    }
+
+    @JsonCreator
+    public static ModerationActionType fromValue(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        var normalized = raw.toLowerCase(Locale.ROOT);
+        for (var type : values()) {
+            if (type.value.equals(normalized)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown moderation action: " + raw);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.commentdemo.comment.ranking;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Re-decays {@code comment_rank.hot_score} for subjects that received comments recently.
+ * <p>
+ * Best and controversy scores only change on votes and are kept current by {@code fn_comment_rank_sync};
+ * hot scores also move with time, so this job rewrites them one subject at a time, limited to subjects
+ * whose {@code last_commented_at} falls inside the active window. Each subject is walked in id order in short
+ * keyset batches over {@code idx_cmt_rank_decay}, so a large subject never holds its row locks for long.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HotScoreDecayScheduler {
+
+    private static final String ACTIVE_SUBJECTS_SQL = """
+            SELECT subject_id
+            FROM comment_subject
+            WHERE last_commented_at >= now() - make_interval(secs => :windowSeconds)
+            UNION
+            SELECT subject_id
+            FROM comment_subject_counter
+            WHERE last_commented_at >= now() - make_interval(secs => :windowSeconds)
+            """;
+
+    /**
+     * Rewrites the hot scores of one keyset batch of a subject's listed comments and advances its reaction
+     * epoch when any of them moved, since hot ordering of its pages changes. Only published top-level rows are
+     * ranked on pages; rows whose score comes out equal (net score 1 stays 0) are not rewritten.
+     */
+    private static final String DECAY_SQL = """
+            WITH batch AS (
+                SELECT id, hn_hot_score(up_count, down_count, created_at, 1.8) AS hot_score
+                FROM comment_rank
+                WHERE subject_id = :subjectId
+                  AND parent_id IS NULL
+                  AND status = 'published'
+                  AND id > :afterId
+                ORDER BY id
+                LIMIT :batchSize
+            ),
+            decayed AS (
+                UPDATE comment_rank r
+                SET hot_score = b.hot_score,
+                    hot_decayed_at = now()
+                FROM batch b
+                WHERE r.id = b.id
+                  AND r.hot_score IS DISTINCT FROM b.hot_score
+                RETURNING 1
+            ),
+            epoch AS (
+                UPDATE comment_subject
+                SET reaction_epoch = reaction_epoch + 1
+                WHERE subject_id = :subjectId
+                  AND EXISTS (SELECT 1 FROM decayed)
+                RETURNING 1
+            )
+            SELECT (SELECT COUNT(*) FROM batch)   AS scanned,
+                   (SELECT MAX(id) FROM batch)    AS last_id,
+                   (SELECT COUNT(*) FROM decayed) AS updated
+            """;
+
+    private final DatabaseClient databaseClient;
+
+    @Value("${comment.ranking.hot-decay.active-window:PT48H}")
+    private Duration activeWindow;
+
+    @Value("${comment.ranking.hot-decay.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${comment.ranking.hot-decay.timeout:PT2M}")
+    private Duration timeout;
+
+    @Scheduled(initialDelayString = "${comment.ranking.hot-decay.initial-delay:PT1M}",
+            fixedDelayString = "${comment.ranking.hot-decay.interval:PT5M}")
+    public void decayActiveSubjects() {
+        Long updated = databaseClient.sql(ACTIVE_SUBJECTS_SQL)
+                .bind("windowSeconds", activeWindow.toSeconds())
+                .map((row, metadata) -> row.get("subject_id", UUID.class))
+                .all()
+                .concatMap(this::decaySubject)
+                .reduce(0L, Long::sum)
+                .timeout(timeout)
+                .onErrorResume(ex -> {
+                    log.warn("Hot score decay pass failed", ex);
+                    return Mono.empty();
+                })
+                .block();
+        if (updated != null) {
+            log.debug("Hot score decay pass rewrote {} rank rows", updated);
+        }
+    }
+
+    private Mono<Long> decaySubject(UUID subjectId) {
+        return decayBatch(subjectId, 0L)
+                .expand(batch -> batch.scanned() < batchSize ? Mono.empty() : decayBatch(subjectId, batch.lastId()))
+                .map(DecayBatch::updated)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<DecayBatch> decayBatch(UUID subjectId, long afterId) {
+        return databaseClient.sql(DECAY_SQL)
+                .bind("subjectId", subjectId)
+                .bind("afterId", afterId)
+                .bind("batchSize", batchSize)
+                .map((row, metadata) -> new DecayBatch(
+                        row.get("scanned", Long.class),
+                        row.get("last_id", Long.class),
+                        row.get("updated", Long.class)))
+                .one();
+    }
+
+    private record DecayBatch(long scanned, Long lastId, long updated) {
+    }
+}
@@ -1,12 +1,22 @@
 package com.example.commentdemo.comment.repository;
 
 import com.example.commentdemo.comment.domain.entity.CommentSubjectEntity;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.data.repository.query.Param;
 import reactor.core.publisher.Mono;
 
 import java.util.UUID;
 
+/**
+ * Subject reads go through {@code comment_subject_totals}, which adds the striped counter slots to the
+ * compacted counts stored on {@code comment_subject}.
+ */
 public interface CommentSubjectRepository extends ReactiveCrudRepository<CommentSubjectEntity, UUID> {
 
-    Mono<CommentSubjectEntity> findBySubjectKey(String subjectKey);
+    @Query("SELECT * FROM comment_subject_totals WHERE subject_id = :subjectId")
+    Mono<CommentSubjectEntity> findById(@Param("subjectId") UUID subjectId);
+
+    @Query("SELECT * FROM comment_subject_totals WHERE subject_key = :subjectKey")
+    Mono<CommentSubjectEntity> findBySubjectKey(@Param("subjectKey") String subjectKey);
 }
@@ -1,9 +1,13 @@
 package com.example.commentdemo.comment.security;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
@@ -14,8 +18,10 @@ import java.util.stream.Collectors;
 /**
  * Extracts basic actor information from the incoming request.
  * <p>
- * This placeholder version reads {@code X-Actor-Id}, {@code X-Actor-Urn} and
- * {@code X-Actor-Roles} headers to build the context. Replace with JWT introspection later.
+ * With {@code comment.auth.mode=headers} (the default) the context is read from {@code X-Actor-Id},
+ * {@code X-Actor-Urn} and {@code X-Actor-Roles}, which a trusted gateway must set. With
+ * {@code comment.auth.mode=jwt} those headers are ignored and the {@code Authorization: Bearer} token is
+ * verified locally by {@link JwtActorVerifier}; requests without a token are anonymous.
  */
 @Component
 @RequiredArgsConstructor
@@ -24,9 +30,35 @@ public class ActorContextResolver {
     private static final String HEADER_ACTOR_ID = "X-Actor-Id";
     private static final String HEADER_ACTOR_URN = "X-Actor-Urn";
     private static final String HEADER_ACTOR_ROLES = "X-Actor-Roles";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String MODE_JWT = "jwt";
+
+    private final JwtActorVerifier jwtActorVerifier;
+
+    @Value("${comment.auth.mode:headers}")
+    private String mode;
 
     public Mono<ActorContext> resolve(ServerWebExchange exchange) {
         ServerHttpRequest request = exchange.getRequest();
+        if (MODE_JWT.equalsIgnoreCase(mode)) {
+            return resolveBearer(request);
+        }
+        return resolveHeaders(request);
+    }
+
+    private Mono<ActorContext> resolveBearer(ServerHttpRequest request) {
+        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (!StringUtils.hasText(authorization)) {
+            return Mono.just(ActorContext.anonymous());
+        }
+        if (!authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unsupported authorization scheme"));
+        }
+        String token = authorization.substring(BEARER_PREFIX.length()).trim();
+        return Mono.fromCallable(() -> jwtActorVerifier.verify(token));
+    }
+
+    private Mono<ActorContext> resolveHeaders(ServerHttpRequest request) {
         var actorId = parseLong(request.getHeaders().getFirst(HEADER_ACTOR_ID));
         var actorUrn = request.getHeaders().getFirst(HEADER_ACTOR_URN);
         var rolesHeader = request.getHeaders().getFirst(HEADER_ACTOR_ROLES);
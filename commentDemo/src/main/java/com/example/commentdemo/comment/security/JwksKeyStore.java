@@ -0,0 +1,103 @@
+package com.example.commentdemo.comment.security;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Public signing keys for local JWT verification, read from a JWKS document.
+ * <p>
+ * {@code comment.auth.jwt.jwks-uri} may point at an {@code http(s)} endpoint or any Spring resource
+ * location such as {@code file:} or {@code classpath:}. The set is loaded at startup and replaced on a
+ * fixed schedule, always off the event loop; requests only read the current in-memory snapshot. An
+ * unknown {@code kid} can ask for an early reload, at most once per {@code min-refresh-interval}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JwksKeyStore {
+
+    private static final int JWKS_SIZE_LIMIT = 256 * 1024;
+
+    private final ResourceLoader resourceLoader;
+    private final AtomicLong lastRefreshNanos = new AtomicLong(System.nanoTime());
+
+    private volatile JWKSet keys = new JWKSet();
+
+    @Value("${comment.auth.jwt.jwks-uri:}")
+    private String jwksUri;
+
+    @Value("${comment.auth.jwt.jwks-timeout:PT5S}")
+    private Duration timeout;
+
+    @Value("${comment.auth.jwt.min-refresh-interval:PT30S}")
+    private Duration minRefreshInterval;
+
+    @PostConstruct
+    void loadInitial() {
+        if (StringUtils.hasText(jwksUri)) {
+            refresh();
+        }
+    }
+
+    public JWKSet current() {
+        return keys;
+    }
+
+    @Scheduled(initialDelayString = "${comment.auth.jwt.jwks-refresh:PT5M}",
+            fixedDelayString = "${comment.auth.jwt.jwks-refresh:PT5M}")
+    public void refresh() {
+        if (!StringUtils.hasText(jwksUri)) {
+            return;
+        }
+        lastRefreshNanos.set(System.nanoTime());
+        try {
+            JWKSet loaded = load().toPublicJWKSet();
+            if (loaded.isEmpty()) {
+                log.warn("JWKS at {} holds no public keys; keeping the previous {} keys", jwksUri, keys.size());
+                return;
+            }
+            keys = loaded;
+            log.debug("Loaded {} signing keys from {}", loaded.size(), jwksUri);
+        } catch (Exception ex) {
+            log.warn("Failed to load JWKS from {}; keeping the previous {} keys", jwksUri, keys.size(), ex);
+        }
+    }
+
+    /**
+     * Schedules a reload on a worker thread unless one ran within the minimum refresh interval.
+     */
+    public void requestRefresh() {
+        long last = lastRefreshNanos.get();
+        long now = System.nanoTime();
+        if (now - last < minRefreshInterval.toNanos() || !lastRefreshNanos.compareAndSet(last, now)) {
+            return;
+        }
+        Mono.fromRunnable(this::refresh)
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe();
+    }
+
+    private JWKSet load() throws Exception {
+        if (jwksUri.startsWith("http://") || jwksUri.startsWith("https://")) {
+            int millis = Math.toIntExact(timeout.toMillis());
+            return JWKSet.load(URI.create(jwksUri).toURL(), millis, millis, JWKS_SIZE_LIMIT);
+        }
+        try (InputStream in = resourceLoader.getResource(jwksUri).getInputStream()) {
+            return JWKSet.load(in);
+        }
+    }
+}
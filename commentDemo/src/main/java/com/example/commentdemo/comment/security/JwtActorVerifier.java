@@ -0,0 +1,205 @@
+package com.example.commentdemo.comment.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.BadJOSEException;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.DefaultJWTClaimsVerifier;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Verifies bearer tokens locally against {@link JwksKeyStore} and maps their claims to an {@link ActorContext}.
+ * <p>
+ * Successful verifications are cached under the token's SHA-256 until the token expires (capped at
+ * {@code comment.auth.jwt.cache.max-ttl}), so a token's signature is checked and its roles parsed once
+ * per node. Rejected tokens are not cached. Nothing here performs I/O, so it is safe on the event loop.
+ */
+@Slf4j
+@Component
+public class JwtActorVerifier {
+
+    private static final Set<String> REQUIRED_CLAIMS = Set.of("sub", "exp");
+
+    private final JwksKeyStore keyStore;
+    private final DefaultJWTProcessor<SecurityContext> processor;
+    private final Cache<String, VerifiedToken> verified;
+    private final Duration maxTtl;
+    private final String actorUrnClaim;
+    private final String rolesClaim;
+
+    public JwtActorVerifier(JwksKeyStore keyStore,
+                            MeterRegistry meterRegistry,
+                            @Value("${comment.auth.jwt.issuer:}") String issuer,
+                            @Value("${comment.auth.jwt.audience:}") String audience,
+                            @Value("${comment.auth.jwt.algorithms:RS256,ES256}") List<String> algorithms,
+                            @Value("${comment.auth.jwt.clock-skew:PT30S}") Duration clockSkew,
+                            @Value("${comment.auth.jwt.actor-urn-claim:actor_urn}") String actorUrnClaim,
+                            @Value("${comment.auth.jwt.roles-claim:roles}") String rolesClaim,
+                            @Value("${comment.auth.jwt.cache.max-size:100000}") long cacheSize,
+                            @Value("${comment.auth.jwt.cache.max-ttl:PT1H}") Duration maxTtl) {
+        this.keyStore = keyStore;
+        this.maxTtl = maxTtl;
+        this.actorUrnClaim = actorUrnClaim;
+        this.rolesClaim = rolesClaim;
+
+        Set<JWSAlgorithm> accepted = algorithms.stream()
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .map(JWSAlgorithm::parse)
+                .collect(Collectors.toUnmodifiableSet());
+        JWTClaimsSet exactMatch = StringUtils.hasText(issuer)
+                ? new JWTClaimsSet.Builder().issuer(issuer).build()
+                : new JWTClaimsSet.Builder().build();
+        DefaultJWTClaimsVerifier<SecurityContext> claimsVerifier = new DefaultJWTClaimsVerifier<>(
+                StringUtils.hasText(audience) ? Set.of(audience) : null,
+                exactMatch,
+                REQUIRED_CLAIMS,
+                null);
+        claimsVerifier.setMaxClockSkew(Math.toIntExact(clockSkew.toSeconds()));
+
+        this.processor = new DefaultJWTProcessor<>();
+        this.processor.setJWSKeySelector(new JWSVerificationKeySelector<>(accepted,
+                (selector, context) -> selector.select(keyStore.current())));
+        this.processor.setJWTClaimsSetVerifier(claimsVerifier);
+
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(Expiry.<String, VerifiedToken>creating((key, token) ->
+                        maxOf(Duration.ZERO, Duration.between(Instant.now(), token.expiresAt()))))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "comment.auth.token");
+    }
+
+    /**
+     * @throws ResponseStatusException 401 when the token is malformed, unsigned by a known key, expired or
+     *                                 fails the issuer/audience checks
+     */
+    public ActorContext verify(String token) {
+        String key = sha256(token);
+        VerifiedToken cached = verified.getIfPresent(key);
+        if (cached != null && cached.expiresAt().isAfter(Instant.now())) {
+            return cached.actor();
+        }
+        VerifiedToken fresh = verifyUncached(token);
+        verified.put(key, fresh);
+        return fresh.actor();
+    }
+
+    private VerifiedToken verifyUncached(String token) {
+        SignedJWT jwt;
+        try {
+            jwt = SignedJWT.parse(token);
+        } catch (ParseException ex) {
+            throw unauthorized("Malformed bearer token");
+        }
+        JWTClaimsSet claims;
+        try {
+            claims = processor.process(jwt, null);
+        } catch (BadJOSEException | JOSEException ex) {
+            log.debug("Rejected bearer token: {}", ex.getMessage());
+            requestRefreshOnUnknownKey(jwt);
+            throw unauthorized("Invalid bearer token");
+        }
+
+        ActorContext actor = ActorContext.builder()
+                .actorId(parseActorId(claims.getSubject()))
+                .actorUrn(stringClaim(claims, actorUrnClaim))
+                .roles(parseRoles(claims.getClaim(rolesClaim)))
+                .build();
+        Instant expiresAt = earliest(claims.getExpirationTime(), Instant.now().plus(maxTtl));
+        return new VerifiedToken(actor, expiresAt);
+    }
+
+    private void requestRefreshOnUnknownKey(SignedJWT jwt) {
+        String kid = jwt.getHeader().getKeyID();
+        if (kid != null && keyStore.current().getKeyByKeyId(kid) == null) {
+            keyStore.requestRefresh();
+        }
+    }
+
+    private static Long parseActorId(String subject) {
+        try {
+            return Long.parseLong(subject);
+        } catch (NumberFormatException ex) {
+            throw unauthorized("Token subject is not an actor id");
+        }
+    }
+
+    private static String stringClaim(JWTClaimsSet claims, String name) {
+        Object value = claims.getClaim(name);
+        return value instanceof String text ? text : null;
+    }
+
+    /**
+     * Accepts a JSON array of role names or a single space- or comma-separated string, like {@code scope}.
+     */
+    private static Set<String> parseRoles(Object claim) {
+        if (claim instanceof Collection<?> values) {
+            return values.stream()
+                    .map(String::valueOf)
+                    .map(String::trim)
+                    .filter(StringUtils::hasText)
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+        if (claim instanceof String text) {
+            return Arrays.stream(text.split("[,\\s]+"))
+                    .filter(StringUtils::hasText)
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+        return Set.of();
+    }
+
+    private static Duration maxOf(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static Instant earliest(Date expiration, Instant cap) {
+        Instant exp = expiration.toInstant();
+        return exp.isBefore(cap) ? exp : cap;
+    }
+
+    private static String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    private static ResponseStatusException unauthorized(String message) {
+        return new ResponseStatusException(HttpStatus.UNAUTHORIZED, message);
+    }
+
+    private record VerifiedToken(ActorContext actor, Instant expiresAt) {
+    }
+}
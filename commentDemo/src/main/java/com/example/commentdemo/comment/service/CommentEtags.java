@@ -0,0 +1,129 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.example.commentdemo.comment.model.CommentStatus;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * ETags for single comments.
+ * <p>
+ * The content tag covers the id, the latest of edited/deleted/created time, the status and the toxicity score,
+ * and guards updates through {@code If-Match}. Moderation and toxicity scoring change the last two without
+ * touching the timestamps, so they have to be part of the version. The read tag extends the same token with
+ * counters, rank scores and the viewer's reaction, so it changes whenever the rendered comment would; its
+ * leading content part equals the content tag, which lets either form satisfy {@code If-Match}.
+ */
+public final class CommentEtags {
+
+    private static final int CONTENT_PARTS = 4;
+
+    private CommentEtags() {
+    }
+
+    public static String contentTag(long id,
+                                    OffsetDateTime createdAt,
+                                    OffsetDateTime editedAt,
+                                    OffsetDateTime deletedAt,
+                                    CommentStatus status,
+                                    BigDecimal toxicityScore) {
+        return encode(contentKey(id, createdAt, editedAt, deletedAt, status, toxicityScore));
+    }
+
+    public static String contentTag(CommentResponse response) {
+        return contentTag(response.id(), response.createdAt(), response.editedAt(), response.deletedAt(),
+                response.status(), response.toxicityScore());
+    }
+
+    public static String readTag(CommentResponse response) {
+        CommentResponse.Counters counters = response.counters();
+        CommentResponse.Quality quality = response.quality();
+        return readTag(response.id(), response.createdAt(), response.editedAt(), response.deletedAt(),
+                response.status(), response.toxicityScore(),
+                counters != null ? counters.up() : 0,
+                counters != null ? counters.down() : 0,
+                counters != null ? counters.replies() : 0,
+                quality != null && quality.bestScore() != null ? quality.bestScore().doubleValue() : null,
+                quality != null && quality.hotScore() != null ? quality.hotScore().doubleValue() : null,
+                response.myReaction());
+    }
+
+    static String readTag(long id,
+                          OffsetDateTime createdAt,
+                          OffsetDateTime editedAt,
+                          OffsetDateTime deletedAt,
+                          CommentStatus status,
+                          BigDecimal toxicityScore,
+                          int up,
+                          int down,
+                          int replies,
+                          Double bestScore,
+                          Double hotScore,
+                          CommentResponse.MyReaction myReaction) {
+        StringBuilder token = new StringBuilder(contentKey(id, createdAt, editedAt, deletedAt, status, toxicityScore))
+                .append(':').append(up)
+                .append(':').append(down)
+                .append(':').append(replies)
+                .append(':').append(bestScore != null ? bestScore : "")
+                .append(':').append(hotScore != null ? hotScore : "")
+                .append(':');
+        if (myReaction != null) {
+            token.append(myReaction.up() ? 'u' : '-').append(myReaction.down() ? 'd' : '-');
+            token.append(String.join(",", emojiKey(myReaction.emoji())));
+        }
+        return encode(token.toString());
+    }
+
+    /**
+     * Returns the {@code id:version:status:score} part of a content or read tag, or {@code null} when it is not
+     * one of ours.
+     */
+    static String contentKeyOf(String etag) {
+        String value = etag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() < 2 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            return null;
+        }
+        try {
+            String token = new String(Base64.getUrlDecoder().decode(value.substring(1, value.length() - 1)), StandardCharsets.UTF_8);
+            String[] parts = token.split(":", CONTENT_PARTS + 1);
+            return parts.length >= CONTENT_PARTS ? String.join(":", Arrays.asList(parts).subList(0, CONTENT_PARTS)) : null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    static String contentKey(long id,
+                             OffsetDateTime createdAt,
+                             OffsetDateTime editedAt,
+                             OffsetDateTime deletedAt,
+                             CommentStatus status,
+                             BigDecimal toxicityScore) {
+        OffsetDateTime baseline = editedAt != null ? editedAt : deletedAt != null ? deletedAt : createdAt;
+        long version = baseline != null ? baseline.toInstant().toEpochMilli() : 0L;
+        // scores read from the column and from a replayed JSON response differ only in trailing zeros
+        return id + ":" + version
+                + ":" + (status != null ? status.getValue() : "")
+                + ":" + (toxicityScore != null ? toxicityScore.stripTrailingZeros().toPlainString() : "");
+    }
+
+    private static Collection<String> emojiKey(Collection<String> emoji) {
+        TreeSet<String> sorted = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        if (emoji != null) {
+            sorted.addAll(emoji);
+        }
+        return sorted;
+    }
+
+    private static String encode(String token) {
+        return "W/\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
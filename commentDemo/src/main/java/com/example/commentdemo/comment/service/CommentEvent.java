@@ -0,0 +1,18 @@
+package com.example.commentdemo.comment.service;
+
+import java.util.UUID;
+
+/**
+ * Subject-level event read from the {@code comment_event} outbox or its {@code comment_events} notification.
+ *
+ * @param topLevel whether the event concerns a top-level comment, used for page cache invalidation
+ * @param data     JSON payload forwarded verbatim as the SSE data field
+ */
+public record CommentEvent(long id, UUID subjectId, String type, boolean topLevel, String data) {
+
+    public static final String COMMENT_CREATED = "comment.created";
+    public static final String COMMENT_UPDATED = "comment.updated";
+    public static final String COMMENT_DELETED = "comment.deleted";
+    public static final String REACTION_CHANGED = "reaction.changed";
+    public static final String REACTION_COUNTERS = "reaction.counters";
+}
@@ -0,0 +1,209 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.example.commentdemo.comment.domain.entity.CommentEntity;
+import com.example.commentdemo.comment.model.ReactionType;
+import com.example.commentdemo.comment.security.ActorContext;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Loads full comment rows for a page of ids with set-based statements.
+ * <p>
+ * Rows and rank scores come back from a single query, the viewer's reactions from a second one;
+ * callers receive them in the order of the ids they passed in.
+ */
+@Component
+@RequiredArgsConstructor
+public class CommentHydrator {
+
+    private static final String ROWS_STATEMENT = "comment.hydrate.rows";
+    private static final String SUBTREE_STATEMENT = "comment.hydrate.subtree";
+    private static final String MY_REACTIONS_STATEMENT = "comment.hydrate.my-reactions";
+
+    private static final String ROWS_SQL = """
+            SELECT c.*, r.best_score, r.hot_score, r.controversy_score
+            FROM comment c
+            LEFT JOIN comment_rank r ON r.id = c.id
+            WHERE c.id = ANY(:ids)
+            """;
+
+    private static final String SUBTREE_SQL = """
+            SELECT c.*, r.best_score, r.hot_score, r.controversy_score
+            FROM comment root
+            JOIN comment c ON c.path <@ root.path
+            LEFT JOIN comment_rank r ON r.id = c.id
+            WHERE root.id = :rootId
+              AND c.depth <= root.depth + :maxDepth
+              -- a deleted reply hides its whole subtree, so the LIMIT only counts rows that can be attached
+              AND (c.id = root.id
+                   OR NOT EXISTS (SELECT 1
+                                  FROM comment a
+                                  WHERE a.path @> c.path
+                                    AND a.depth > root.depth
+                                    AND a.status = 'deleted'))
+            ORDER BY c.path
+            LIMIT :limit
+            """;
+
+    private static final String MY_REACTIONS_SQL = """
+            SELECT comment_id, type, emoji_code
+            FROM comment_reaction
+            WHERE comment_id = ANY(:ids)
+              AND actor_id = :actorId
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter r2dbcConverter;
+    private final CommentQueryRegistry queryRegistry;
+
+    @PostConstruct
+    void registerStatements() {
+        queryRegistry.register(ROWS_STATEMENT, ROWS_SQL);
+        queryRegistry.register(SUBTREE_STATEMENT, SUBTREE_SQL);
+        queryRegistry.register(MY_REACTIONS_STATEMENT, MY_REACTIONS_SQL);
+    }
+
+    public Mono<List<HydratedComment>> loadRows(List<Long> commentIds) {
+        if (commentIds.isEmpty()) {
+            return Mono.just(List.of());
+        }
+
+        // one bigint[] bind keeps the statement text identical for every page size
+        return databaseClient.sql(queryRegistry.sql(ROWS_STATEMENT))
+                .bind("ids", commentIds.toArray(Long[]::new))
+                .map(this::toHydrated)
+                .all()
+                .collectList()
+                .map(rows -> inIdOrder(commentIds, rows));
+    }
+
+    /**
+     * Streams the subtree under {@code rootId} in {@code path} order, so every row follows its parent.
+     * Descendants deeper than {@code maxDepth} levels below the root are skipped, and so are deleted replies
+     * together with their subtrees, so every row returned can be attached to its parent. At most
+     * {@code limit} rows are read. An unknown root yields an empty flux.
+     */
+    public Flux<HydratedComment> streamSubtree(Long rootId, int maxDepth, int limit) {
+        return databaseClient.sql(queryRegistry.sql(SUBTREE_STATEMENT))
+                .bind("rootId", rootId)
+                .bind("maxDepth", maxDepth)
+                .bind("limit", limit)
+                .map(this::toHydrated)
+                .all();
+    }
+
+    public Mono<Map<Long, CommentResponse.MyReaction>> loadMyReactions(List<Long> commentIds,
+                                                                       ActorContext actor,
+                                                                       boolean include) {
+        if (!include || actor == null || actor.actorId() == null || commentIds.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return databaseClient.sql(queryRegistry.sql(MY_REACTIONS_STATEMENT))
+                .bind("ids", commentIds.toArray(Long[]::new))
+                .bind("actorId", actor.actorId())
+                .map((row, metadata) -> new ReactionRow(
+                        row.get("comment_id", Long.class),
+                        ReactionType.fromValue(row.get("type", String.class)),
+                        row.get("emoji_code", String.class)))
+                .all()
+                .collectList()
+                .map(CommentHydrator::mergeReactions);
+    }
+
+    /**
+     * Folds the viewer's reaction rows into one {@link CommentResponse.MyReaction} per comment, keeping
+     * the order in which comments first appear.
+     */
+    static Map<Long, CommentResponse.MyReaction> mergeReactions(List<ReactionRow> reactions) {
+        Map<Long, ReactionAccumulator> accumulators = new LinkedHashMap<>();
+        for (ReactionRow reaction : reactions) {
+            ReactionAccumulator accumulator = accumulators.computeIfAbsent(
+                    reaction.commentId(),
+                    key -> new ReactionAccumulator()
+            );
+            if (reaction.type() == ReactionType.UP) {
+                accumulator.up = true;
+            } else if (reaction.type() == ReactionType.DOWN) {
+                accumulator.down = true;
+            } else if (reaction.type() == ReactionType.EMOJI && StringUtils.hasText(reaction.emojiCode())) {
+                accumulator.emoji.add(reaction.emojiCode().trim());
+            }
+        }
+        Map<Long, CommentResponse.MyReaction> result = new LinkedHashMap<>();
+        accumulators.forEach((commentId, accumulator) -> result.put(commentId, accumulator.toResponse()));
+        return result;
+    }
+
+    private HydratedComment toHydrated(Row row, RowMetadata metadata) {
+        CommentEntity entity = r2dbcConverter.read(CommentEntity.class, row, metadata);
+        Number best = row.get("best_score", Number.class);
+        Number hot = row.get("hot_score", Number.class);
+        Number controversy = row.get("controversy_score", Number.class);
+        CommentResponse.Quality quality = best == null && hot == null
+                ? null
+                : CommentResponse.Quality.builder()
+                .bestScore(best != null ? BigDecimal.valueOf(best.doubleValue()) : null)
+                .hotScore(hot != null ? BigDecimal.valueOf(hot.doubleValue()) : null)
+                .build();
+        return new HydratedComment(entity, quality, controversy != null ? controversy.doubleValue() : null);
+    }
+
+    private List<HydratedComment> inIdOrder(List<Long> commentIds, List<HydratedComment> rows) {
+        Map<Long, HydratedComment> byId = new HashMap<>(rows.size() * 2);
+        for (HydratedComment row : rows) {
+            byId.put(row.entity().getId(), row);
+        }
+        List<HydratedComment> ordered = new ArrayList<>(commentIds.size());
+        for (Long id : commentIds) {
+            HydratedComment row = byId.get(id);
+            if (row != null) {
+                ordered.add(row);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Comment row together with its rank scores; the controversy score only feeds cursors and is not exposed.
+     */
+    public record HydratedComment(CommentEntity entity, CommentResponse.Quality quality, Double controversyScore) {
+    }
+
+    record ReactionRow(Long commentId, ReactionType type, String emojiCode) {
+    }
+
+    private static final class ReactionAccumulator {
+
+        private boolean up;
+        private boolean down;
+        private final Set<String> emoji = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+        CommentResponse.MyReaction toResponse() {
+            Set<String> codes = emoji.isEmpty() ? Set.of() : new LinkedHashSet<>(emoji);
+            return CommentResponse.MyReaction.builder()
+                    .up(up)
+                    .down(down)
+                    .emoji(codes)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of writes sent with an {@code Idempotency-Key}, per actor, for a fixed TTL.
+ * <p>
+ * The first attempt claims the key by inserting its row in the same transaction as the write; a concurrent
+ * attempt on any node blocks on that row's unique index until the first one commits, then replays the
+ * stored response, or takes over the key if the first attempt rolled back. Completed results are also kept
+ * in a node-local cache, which lets concurrent retries on one node share the in-flight attempt and answers
+ * repeats without a database round trip. Reusing a key for a different request fails with 422.
+ */
+@Slf4j
+@Component
+public class CommentIdempotencyStore {
+
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final String CLAIM_STATEMENT = "idempotency.claim";
+    private static final String LOOKUP_STATEMENT = "idempotency.lookup";
+    private static final String COMPLETE_STATEMENT = "idempotency.complete";
+
+    private static final String CLAIM_SQL = """
+            INSERT INTO comment_idempotency_key (actor_id, idem_key, request_hash, expires_at)
+            VALUES (:actorId, :key, :requestHash, now() + make_interval(secs => :ttlSeconds))
+            ON CONFLICT (actor_id, idem_key) DO UPDATE
+                SET request_hash = EXCLUDED.request_hash,
+                    comment_id   = NULL,
+                    response     = NULL,
+                    created_at   = now(),
+                    expires_at   = EXCLUDED.expires_at
+                WHERE comment_idempotency_key.expires_at < now()
+            RETURNING actor_id
+            """;
+
+    private static final String LOOKUP_SQL = """
+            SELECT request_hash, response::text AS response
+            FROM comment_idempotency_key
+            WHERE actor_id = :actorId
+              AND idem_key = :key
+            """;
+
+    private static final String COMPLETE_SQL = """
+            UPDATE comment_idempotency_key
+            SET comment_id = :commentId,
+                response   = CAST(:response AS jsonb)
+            WHERE actor_id = :actorId
+              AND idem_key = :key
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final CommentQueryRegistry queryRegistry;
+    private final ObjectMapper objectMapper;
+    private final AsyncCache<StoreKey, StoredResult> recent;
+    private final Duration ttl;
+
+    public CommentIdempotencyStore(DatabaseClient databaseClient,
+                                   TransactionalOperator transactionalOperator,
+                                   CommentQueryRegistry queryRegistry,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${comment.idempotency.ttl:PT24H}") Duration ttl,
+                                   @Value("${comment.idempotency.cache.max-size:10000}") long cacheSize,
+                                   @Value("${comment.idempotency.cache.ttl:PT10M}") Duration cacheTtl) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.queryRegistry = queryRegistry;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        // never outlive the durable row, or a key could be replayed after it was released
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl.compareTo(ttl) < 0 ? cacheTtl : ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, recent.synchronous(), "comment.idempotency");
+    }
+
+    @PostConstruct
+    void registerStatements() {
+        queryRegistry.register(CLAIM_STATEMENT, CLAIM_SQL);
+        queryRegistry.register(LOOKUP_STATEMENT, LOOKUP_SQL);
+        queryRegistry.register(COMPLETE_STATEMENT, COMPLETE_SQL);
+    }
+
+    /**
+     * Runs {@code write} at most once per {@code (actorId, key)} within the TTL and returns its response,
+     * or the stored response of the attempt that already ran.
+     *
+     * @param requestHash digest of the request payload, compared on replay to detect key reuse
+     */
+    public Mono<CommentResponse> execute(Long actorId,
+                                         String key,
+                                         String requestHash,
+                                         Supplier<Mono<CommentResponse>> write) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key must be at most %d characters".formatted(MAX_KEY_LENGTH)));
+        }
+        StoreKey storeKey = new StoreKey(actorId, key);
+        return Mono.fromFuture(() -> recent.get(storeKey, (k, executor) -> claimOrReplay(k, requestHash, write).toFuture()), true)
+                .map(stored -> {
+                    if (!stored.requestHash().equals(requestHash)) {
+                        throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                                "Idempotency-Key was already used for a different request");
+                    }
+                    return stored.response();
+                });
+    }
+
+    @Scheduled(initialDelayString = "${comment.idempotency.purge-interval:PT10M}",
+            fixedDelayString = "${comment.idempotency.purge-interval:PT10M}")
+    public void purgeExpired() {
+        databaseClient.sql("DELETE FROM comment_idempotency_key WHERE expires_at < now()")
+                .fetch()
+                .rowsUpdated()
+                .doOnNext(purged -> log.debug("Purged {} expired idempotency keys", purged))
+                .onErrorResume(ex -> {
+                    log.warn("Idempotency key purge failed", ex);
+                    return Mono.empty();
+                })
+                .block(Duration.ofMinutes(1));
+    }
+
+    private Mono<StoredResult> claimOrReplay(StoreKey key, String requestHash, Supplier<Mono<CommentResponse>> write) {
+        Mono<StoredResult> attempt = claim(key, requestHash)
+                .flatMap(claimed -> claimed
+                        ? write.get().flatMap(response -> complete(key, response)
+                        .thenReturn(new StoredResult(requestHash, response)))
+                        : replay(key));
+        return transactionalOperator.transactional(attempt);
+    }
+
+    private Mono<Boolean> claim(StoreKey key, String requestHash) {
+        return databaseClient.sql(queryRegistry.sql(CLAIM_STATEMENT))
+                .bind("actorId", key.actorId())
+                .bind("key", key.key())
+                .bind("requestHash", requestHash)
+                .bind("ttlSeconds", ttl.toSeconds())
+                .map((row, metadata) -> Boolean.TRUE)
+                .one()
+                .defaultIfEmpty(Boolean.FALSE);
+    }
+
+    private Mono<Void> complete(StoreKey key, CommentResponse response) {
+        return databaseClient.sql(queryRegistry.sql(COMPLETE_STATEMENT))
+                .bind("actorId", key.actorId())
+                .bind("key", key.key())
+                .bind("commentId", response.id())
+                .bind("response", toJson(response))
+                .fetch()
+                .rowsUpdated()
+                .then();
+    }
+
+    private Mono<StoredResult> replay(StoreKey key) {
+        return databaseClient.sql(queryRegistry.sql(LOOKUP_STATEMENT))
+                .bind("actorId", key.actorId())
+                .bind("key", key.key())
+                .map((row, metadata) -> {
+                    String response = row.get("response", String.class);
+                    if (response == null) {
+                        throw conflict();
+                    }
+                    return new StoredResult(row.get("request_hash", String.class), fromJson(response));
+                })
+                .one()
+                // the row expired and was purged between claim and lookup
+                .switchIfEmpty(Mono.error(CommentIdempotencyStore::conflict));
+    }
+
+    private String toJson(CommentResponse response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to serialize comment " + response.id(), ex);
+        }
+    }
+
+    private CommentResponse fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, CommentResponse.class);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to read stored idempotent response", ex);
+        }
+    }
+
+    private static ResponseStatusException conflict() {
+        return new ResponseStatusException(HttpStatus.CONFLICT, "Request with this Idempotency-Key is still in progress; retry later");
+    }
+
+    private record StoreKey(Long actorId, String key) {
+    }
+
+    private record StoredResult(String requestHash, CommentResponse response) {
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentImportResponse;
+import com.example.commentdemo.comment.security.ActorContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+public interface CommentImportService {
+
+    /**
+     * @param lines NDJSON body split into lines, each a {@link com.example.commentdemo.comment.api.dto.CommentImportRecord}
+     */
+    Mono<CommentImportResponse> importComments(UUID subjectId, Flux<String> lines, ActorContext actor);
+}
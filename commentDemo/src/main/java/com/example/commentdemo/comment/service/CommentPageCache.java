@@ -0,0 +1,77 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentPageResponse;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache for the viewer-independent part of top-level comment pages.
+ * <p>
+ * Entries are keyed by the subject's current version, so a write only has to bump that version;
+ * superseded entries are never read again and age out through size/TTL eviction. Concurrent misses
+ * for the same key share one load. The TTL bounds staleness for writes handled by other nodes.
+ */
+@Component
+public class CommentPageCache {
+
+    private final boolean enabled;
+    private final AsyncCache<PageKey, CommentPageResponse> pages;
+    private final Cache<UUID, Long> subjectVersions;
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    public CommentPageCache(MeterRegistry meterRegistry,
+                            @Value("${comment.cache.page.enabled:true}") boolean enabled,
+                            @Value("${comment.cache.page.max-size:10000}") long maxSize,
+                            @Value("${comment.cache.page.ttl:PT10S}") Duration ttl) {
+        this.enabled = enabled;
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        // versions must outlive every page cached under them; a forgotten subject restarts at a fresh version
+        this.subjectVersions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttl.multipliedBy(2))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, pages.synchronous(), "comment.page");
+    }
+
+    public Mono<CommentPageResponse> get(UUID subjectId,
+                                         String view,
+                                         String status,
+                                         int limit,
+                                         String cursor,
+                                         Supplier<Mono<CommentPageResponse>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        PageKey key = new PageKey(subjectId, currentVersion(subjectId), view, status, limit, cursor == null ? "" : cursor);
+        return Mono.fromFuture(() -> pages.get(key, (k, executor) -> loader.get().toFuture()), true);
+    }
+
+    public void invalidateSubject(UUID subjectId) {
+        if (subjectId == null) {
+            return;
+        }
+        subjectVersions.put(subjectId, versionSequence.incrementAndGet());
+    }
+
+    private long currentVersion(UUID subjectId) {
+        return subjectVersions.get(subjectId, key -> versionSequence.incrementAndGet());
+    }
+
+    private record PageKey(UUID subjectId, long version, String view, String status, int limit, String cursor) {
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.commentdemo.comment.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fixed set of SQL statement templates for the dynamically assembled queries.
+ * <p>
+ * Every shape a query builder can produce is registered once at startup, and callers fetch templates by
+ * name. Postgres therefore only ever sees a bounded set of statement texts, which the driver's prepared
+ * statement cache can hold entirely. Looking up an unregistered name fails fast instead of silently
+ * growing the set.
+ * <p>
+ * The template count and the driver's {@code preparedStatementCacheQueries} are published as gauges; while
+ * the former stays within the latter, every template remains prepared after its first execution. The driver
+ * does not expose its cache hit counters, so no hit ratio is published.
+ * <p>
+ * Templates are handed out with their name prepended as a block comment, so statement metrics and
+ * server-side logs can attribute each execution to its logical query.
+ */
+@Component
+public class CommentQueryRegistry {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+    public CommentQueryRegistry(MeterRegistry meterRegistry,
+                                @Value("${spring.r2dbc.properties.preparedStatementCacheQueries:-1}") int cacheCapacity) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("comment.sql.templates", templates, Map::size)
+                .description("Registered SQL statement templates")
+                .register(meterRegistry);
+        Gauge.builder("comment.sql.statement.cache.capacity", () -> cacheCapacity)
+                .description("Driver prepared statement cache size; -1 means unbounded")
+                .register(meterRegistry);
+    }
+
+    public void register(String name, String sql) {
+        Counter executions = Counter.builder("comment.sql.executions")
+                .tag("statement", name)
+                .register(meterRegistry);
+        Template template = new Template(sql, "/* " + name + " */ " + sql, executions);
+        Template previous = templates.putIfAbsent(name, template);
+        if (previous != null && !previous.sql().equals(sql)) {
+            throw new IllegalStateException("Statement template %s registered twice with different SQL".formatted(name));
+        }
+    }
+
+    /**
+     * Returns the template registered under {@code name} and records one execution of it.
+     */
+    public String sql(String name) {
+        Template template = templates.get(name);
+        if (template == null) {
+            throw new IllegalStateException("Unregistered statement template " + name);
+        }
+        template.executions().increment();
+        return template.taggedSql();
+    }
+
+    private record Template(String sql, String taggedSql, Counter executions) {
+    }
+}
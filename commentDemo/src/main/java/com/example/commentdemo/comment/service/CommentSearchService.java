@@ -0,0 +1,22 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentPageResponse;
+import com.example.commentdemo.comment.security.ActorContext;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+public interface CommentSearchService {
+
+    /**
+     * Finds comments whose body contains {@code query}, most relevant first. {@code subjectId} and
+     * {@code authorId} are optional filters; statuses other than {@code published} require the moderator role.
+     */
+    Mono<CommentPageResponse> search(String query,
+                                     UUID subjectId,
+                                     Long authorId,
+                                     String status,
+                                     int limit,
+                                     String cursor,
+                                     ActorContext actor);
+}
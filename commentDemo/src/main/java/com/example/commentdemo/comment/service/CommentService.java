@@ -5,6 +5,7 @@ import com.example.commentdemo.comment.api.dto.CommentPageResponse;
 import com.example.commentdemo.comment.api.dto.CommentResponse;
 import com.example.commentdemo.comment.api.dto.CommentUpdateRequest;
 import com.example.commentdemo.comment.security.ActorContext;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.UUID;
@@ -20,6 +21,19 @@ public interface CommentService {
                                            boolean withMyReaction,
                                            ActorContext actor);
 
+    /**
+     * Weak ETag for the page {@link #listTopLevel} would return for the same arguments, computed from the
+     * subject's version columns with a single primary-key lookup. Fails with 404 for an unknown subject.
+     */
+    Mono<String> topLevelEtag(UUID subjectId,
+                              String view,
+                              int limit,
+                              String cursor,
+                              String status,
+                              boolean withCounts,
+                              boolean withMyReaction,
+                              ActorContext actor);
+
     Mono<CommentPageResponse> listReplies(Long commentId,
                                           String order,
                                           int limit,
@@ -29,8 +43,38 @@ public interface CommentService {
                                           boolean withMyReaction,
                                           ActorContext actor);
 
+    /**
+     * Same page as {@link #listReplies}, emitted as consecutive slices of it as soon as each slice is
+     * hydrated. Only the last slice carries {@code next_cursor}; an empty page emits nothing.
+     */
+    Flux<CommentPageResponse> streamReplies(Long commentId,
+                                            String order,
+                                            int limit,
+                                            String cursor,
+                                            double collapseBelow,
+                                            boolean withCounts,
+                                            boolean withMyReaction,
+                                            ActorContext actor);
+
+    /**
+     * Streams the subtree rooted at {@code commentId} in path order, parents before their replies.
+     * Emits at most {@code limit + 1} comments so callers can tell that the node budget cut the subtree.
+     */
+    Flux<CommentResponse> streamThread(Long commentId,
+                                       int maxDepth,
+                                       int limit,
+                                       boolean withCounts,
+                                       boolean withMyReaction,
+                                       ActorContext actor);
+
     Mono<CommentResponse> getComment(Long commentId, ActorContext actor);
 
+    /**
+     * Read ETag of the comment {@link #getComment} would return to {@code actor}, from one narrow lookup of its
+     * timestamps, counters, rank scores and the actor's reactions. Fails with 404 for an unknown comment.
+     */
+    Mono<String> commentEtag(Long commentId, ActorContext actor);
+
     Mono<CommentResponse> create(UUID subjectId, CommentCreateRequest request, ActorContext actor, String idempotencyKey);
 
     Mono<CommentResponse> update(Long commentId, CommentUpdateRequest request, ActorContext actor, String ifMatch);
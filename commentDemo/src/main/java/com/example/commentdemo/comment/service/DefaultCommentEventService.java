@@ -1,19 +1,157 @@
 package com.example.commentdemo.comment.service;
 
+import com.example.commentdemo.comment.repository.CommentSubjectRepository;
 import com.example.commentdemo.comment.security.ActorContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
+@RequiredArgsConstructor
 public class DefaultCommentEventService implements CommentEventService {
 
+    private static final Set<String> SUPPORTED_TYPES = Set.of(
+            CommentEvent.COMMENT_CREATED,
+            CommentEvent.COMMENT_UPDATED,
+            CommentEvent.COMMENT_DELETED,
+            CommentEvent.REACTION_CHANGED,
+            CommentEvent.REACTION_COUNTERS
+    );
+    private static final int REPLAY_PAGE = 1000;
+    private static final long REPLAY_OVERLAP = 1000;
+
+    private final CommentSubjectRepository subjectRepository;
+    private final SubjectEventHub eventHub;
+    private final DatabaseClient databaseClient;
+
+    @Value("${comment.events.heartbeat:PT15S}")
+    private Duration heartbeat;
+
     @Override
     public Flux<ServerSentEvent<String>> streamSubjectEvents(UUID subjectId, OffsetDateTime since, Set<String> eventTypes, ActorContext actor) {
-        return Flux.empty();
+        for (String type : eventTypes) {
+            if (!SUPPORTED_TYPES.contains(type)) {
+                return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported event type: " + type));
+            }
+        }
+        return subjectRepository.existsById(subjectId)
+                .flatMapMany(exists -> {
+                    if (!exists) {
+                        return Flux.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Subject not found for id %s".formatted(subjectId)));
+                    }
+                    return withHeartbeat(events(subjectId, since, eventTypes).map(this::toServerSentEvent));
+                });
+    }
+
+    private Flux<CommentEvent> events(UUID subjectId, OffsetDateTime since, Set<String> eventTypes) {
+        Flux<Sourced> replay = since == null
+                ? Flux.empty()
+                : replay(subjectId, since, eventTypes).map(event -> new Sourced(event, true));
+        Flux<Sourced> live = eventHub.subscribe(subjectId)
+                .filter(event -> eventTypes.isEmpty() || eventTypes.contains(event.type()))
+                .map(event -> new Sourced(event, false));
+        // live events are buffered while the replay runs; once it is done, the ones it already delivered are
+        // skipped. The check has to run after the merge: the live source is subscribed, and its events
+        // arrive, before the replay has reached its last id. Ids are allocated before commit, so a live event
+        // may carry a lower id than one the replay has already read; the check goes by the replayed ids
+        // themselves, kept for an overlap window of REPLAY_OVERLAP ids below the newest one.
+        NavigableSet<Long> replayed = new TreeSet<>();
+        // a subscriber that overflowed its buffer is cut off; the client reconnects with `since` to catch up
+        return Flux.mergeSequential(replay, live)
+                .filter(sourced -> {
+                    long id = sourced.event().id();
+                    if (sourced.replayed()) {
+                        replayed.add(id);
+                        replayed.headSet(id - REPLAY_OVERLAP, false).clear();
+                        return true;
+                    }
+                    return !replayed.contains(id);
+                })
+                .map(Sourced::event)
+                .onErrorResume(Exceptions::isOverflow, ex -> Flux.empty());
+    }
+
+    /**
+     * Replays the whole outbox backlog after {@code since} in pages of {@value #REPLAY_PAGE}, keyed by event id.
+     * The next page is only read once the previous one has been consumed; the backlog itself is bounded by the
+     * outbox retention.
+     */
+    private Flux<CommentEvent> replay(UUID subjectId, OffsetDateTime since, Set<String> eventTypes) {
+        AtomicLong cursor = new AtomicLong();
+        return Mono.defer(() -> replayPage(subjectId, since, eventTypes, cursor.get()))
+                .doOnNext(page -> {
+                    if (!page.isEmpty()) {
+                        cursor.set(page.get(page.size() - 1).id());
+                    }
+                })
+                .repeat()
+                .takeUntil(page -> page.size() < REPLAY_PAGE)
+                .concatMapIterable(page -> page);
+    }
+
+    private Mono<List<CommentEvent>> replayPage(UUID subjectId, OffsetDateTime since, Set<String> eventTypes, long afterId) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT id, subject_id, event_type, payload::text AS payload
+                FROM comment_event
+                WHERE subject_id = :subjectId
+                  AND created_at > :since
+                  AND id > :afterId
+                """);
+        if (!eventTypes.isEmpty()) {
+            sql.append(" AND event_type = ANY(:types)");
+        }
+        sql.append(" ORDER BY id LIMIT ").append(REPLAY_PAGE);
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString())
+                .bind("subjectId", subjectId)
+                .bind("since", since)
+                .bind("afterId", afterId);
+        if (!eventTypes.isEmpty()) {
+            spec = spec.bind("types", eventTypes.toArray(String[]::new));
+        }
+        // replayed events only feed the stream; cache invalidation already happened when they were live
+        return spec.map((row, metadata) -> new CommentEvent(
+                        row.get("id", Long.class),
+                        row.get("subject_id", UUID.class),
+                        row.get("event_type", String.class),
+                        false,
+                        row.get("payload", String.class)))
+                .all()
+                .collectList();
+    }
+
+    private Flux<ServerSentEvent<String>> withHeartbeat(Flux<ServerSentEvent<String>> events) {
+        Flux<ServerSentEvent<String>> shared = events.share();
+        Flux<ServerSentEvent<String>> keepAlive = Flux.interval(heartbeat)
+                .map(tick -> ServerSentEvent.<String>builder().comment("keepalive").build())
+                .takeUntilOther(shared.ignoreElements().then(Mono.just(Boolean.TRUE)));
+        return Flux.merge(shared, keepAlive);
+    }
+
+    private ServerSentEvent<String> toServerSentEvent(CommentEvent event) {
+        return ServerSentEvent.<String>builder()
+                .id(Long.toString(event.id()))
+                .event(event.type())
+                .data(event.data())
+                .build();
+    }
+
+    private record Sourced(CommentEvent event, boolean replayed) {
     }
 }
@@ -0,0 +1,375 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentImportRecord;
+import com.example.commentdemo.comment.api.dto.CommentImportResponse;
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.example.commentdemo.comment.repository.CommentSubjectRepository;
+import com.example.commentdemo.comment.security.ActorContext;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Imports legacy comments in large batches instead of going through {@link CommentService#create}.
+ * <p>
+ * Ids are drawn from the comment sequence up front, so paths and root ids are computed here and
+ * {@code fn_set_path_and_root} skips its per-row parent lookup. The transaction-local
+ * {@code comment.bulk_import} flag also switches off reply and subject counter maintenance, subject
+ * metrics and event publication. Counters and metrics are recomputed once per subject at the end.
+ * Legacy ids are recorded in {@code comment_import_key}, which resolves parents across batches and
+ * makes re-running an import skip rows that were already imported.
+ * <p>
+ * Lines are decoded one at a time, so a malformed line or an unknown status is reported as rejected and
+ * the import carries on. The recount also runs when the import fails or the client disconnects, because
+ * the batches committed until then bypassed counter maintenance.
+ */
+@Service
+@RequiredArgsConstructor
+public class DefaultCommentImportService implements CommentImportService {
+
+    private static final String ROLE_ADMIN = "comment:admin";
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final String LOOKUP_SQL = """
+            SELECT k.external_id, c.id, c.path::text AS path, c.root_id
+            FROM comment_import_key k
+            JOIN comment c ON c.id = k.comment_id
+            WHERE k.subject_id = :subjectId
+              AND k.external_id = ANY(:externalIds)
+            """;
+
+    private static final String ALLOCATE_IDS_SQL = """
+            SELECT nextval(pg_get_serial_sequence('comment', 'id')) AS id
+            FROM generate_series(1, :count)
+            """;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO comment (id, subject_id, parent_id, root_id, path, author_id, author_urn,
+                                 body_md, body_html, status, created_at, edited_at)
+            SELECT t.id, :subjectId, t.parent_id, t.root_id, t.path::ltree, t.author_id, t.author_urn::citext,
+                   t.body_md, t.body_html, t.status, t.created_at::timestamptz, t.edited_at::timestamptz
+            FROM unnest(:ids::bigint[], :parentIds::bigint[], :rootIds::bigint[], :paths::text[],
+                        :authorIds::bigint[], :authorUrns::text[], :bodiesMd::text[], :bodiesHtml::text[],
+                        :statuses::text[], :createdAt::text[], :editedAt::text[])
+                     AS t(id, parent_id, root_id, path, author_id, author_urn,
+                          body_md, body_html, status, created_at, edited_at)
+            """;
+
+    private static final String INSERT_KEYS_SQL = """
+            INSERT INTO comment_import_key (subject_id, external_id, comment_id)
+            SELECT :subjectId, k.external_id, k.comment_id
+            FROM unnest(:externalIds::text[], :ids::bigint[]) AS k(external_id, comment_id)
+            """;
+
+    private static final String RECOUNT_REPLIES_SQL = """
+            UPDATE comment c
+            SET reply_count = x.replies
+            FROM (SELECT parent_id, COUNT(*)::int AS replies
+                  FROM comment
+                  WHERE subject_id = :subjectId AND parent_id IS NOT NULL
+                  GROUP BY parent_id) x
+            WHERE c.id = x.parent_id
+              AND c.reply_count <> x.replies
+            """;
+
+    private static final String RECOUNT_SUBJECT_SQL = """
+            UPDATE comment_subject s
+            SET comment_count = x.total - p.comments,
+                visible_count = x.visible - p.visible,
+                last_commented_at = GREATEST(s.last_commented_at, x.latest),
+                write_version = s.write_version + 1
+            FROM (SELECT COUNT(*)::int AS total,
+                         (COUNT(*) FILTER (WHERE status = 'published' AND deleted_at IS NULL))::int AS visible,
+                         MAX(created_at) AS latest
+                  FROM comment
+                  WHERE subject_id = :subjectId) x,
+                 -- counter slots not yet compacted stay where they are; the base absorbs the difference
+                 (SELECT COALESCE(SUM(comment_count), 0)::int AS comments,
+                         COALESCE(SUM(visible_count), 0)::int AS visible
+                  FROM comment_subject_counter
+                  WHERE subject_id = :subjectId) p
+            WHERE s.subject_id = :subjectId
+            """;
+
+    private final CommentSubjectRepository subjectRepository;
+    private final CommentPageCache pageCache;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final ObjectMapper objectMapper;
+
+    @Value("${comment.import.batch-size:1000}")
+    private int batchSize;
+
+    @Override
+    public Mono<CommentImportResponse> importComments(UUID subjectId, Flux<String> lines, ActorContext actor) {
+        Assert.notNull(subjectId, "subjectId must not be null");
+        if (actor == null || !actor.hasRole(ROLE_ADMIN)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.FORBIDDEN, "Bulk import requires the admin role"));
+        }
+        return subjectRepository.existsById(subjectId)
+                .flatMap(exists -> {
+                    if (!exists) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Subject not found for id %s".formatted(subjectId)));
+                    }
+                    ImportStats stats = new ImportStats();
+                    Mono<Void> recount = recount(subjectId);
+                    // batches committed before a failure or a cancellation still need their counters
+                    return Mono.usingWhen(Mono.just(stats),
+                                    ignored -> lines.index((index, line) -> Map.entry(index + 1, line))
+                                            .concatMap(line -> decode(line.getKey(), line.getValue(), stats))
+                                            .buffer(batchSize)
+                                            .concatMap(batch -> importBatch(subjectId, batch, stats))
+                                            .then(),
+                                    ignored -> recount,
+                                    (ignored, ex) -> recount,
+                                    ignored -> recount)
+                            .then(Mono.fromSupplier(stats::toResponse));
+                });
+    }
+
+    private Mono<NumberedRecord> decode(long line, String json, ImportStats stats) {
+        if (!StringUtils.hasText(json)) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> new NumberedRecord(line, objectMapper.readValue(json, CommentImportRecord.class)))
+                .onErrorResume(ex -> {
+                    String detail = ex instanceof JsonProcessingException parse ? parse.getOriginalMessage() : ex.getMessage();
+                    stats.reject(line, null, "Malformed record: " + detail);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> importBatch(UUID subjectId, List<NumberedRecord> batch, ImportStats stats) {
+        Set<String> referenced = new LinkedHashSet<>();
+        for (NumberedRecord numbered : batch) {
+            CommentImportRecord record = numbered.record();
+            if (StringUtils.hasText(record.getExternalId())) {
+                referenced.add(record.getExternalId());
+            }
+            if (StringUtils.hasText(record.getParentExternalId())) {
+                referenced.add(record.getParentExternalId());
+            }
+        }
+
+        // statements share the transaction's connection, so they run one after another
+        Mono<Void> work = lookup(subjectId, referenced)
+                .flatMap(known -> allocateIds(batch.size()).map(ids -> prepare(batch, known, ids, stats)))
+                .flatMap(prepared -> {
+                    if (prepared.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    return enableBulkMode()
+                            .then(insertComments(subjectId, prepared))
+                            .then(insertKeys(subjectId, prepared))
+                            .doOnSuccess(ignored -> stats.imported += prepared.ids.size());
+                });
+        return transactionalOperator.transactional(work);
+    }
+
+    private PreparedBatch prepare(List<NumberedRecord> batch,
+                                  Map<String, ImportedRef> known,
+                                  List<Long> ids,
+                                  ImportStats stats) {
+        PreparedBatch prepared = new PreparedBatch();
+        Map<String, ImportedRef> refs = new HashMap<>(known);
+        for (int i = 0; i < batch.size(); i++) {
+            NumberedRecord numbered = batch.get(i);
+            CommentImportRecord record = numbered.record();
+            String externalId = record.getExternalId();
+
+            if (!StringUtils.hasText(externalId)) {
+                stats.reject(numbered.line(), null, "external_id is required");
+                continue;
+            }
+            if (refs.containsKey(externalId)) {
+                stats.skipped++;
+                continue;
+            }
+            if (record.getAuthorId() == null) {
+                stats.reject(numbered.line(), externalId, "author_id is required");
+                continue;
+            }
+            if (!StringUtils.hasText(record.getBodyMd())) {
+                stats.reject(numbered.line(), externalId, "body_md is required");
+                continue;
+            }
+
+            long id = ids.get(i);
+            ImportedRef parent = null;
+            if (StringUtils.hasText(record.getParentExternalId())) {
+                parent = refs.get(record.getParentExternalId());
+                if (parent == null) {
+                    stats.reject(numbered.line(), externalId, "Parent %s has not been imported".formatted(record.getParentExternalId()));
+                    continue;
+                }
+            }
+            String label = "c" + id;
+            ImportedRef ref = parent == null
+                    ? new ImportedRef(id, label, id)
+                    : new ImportedRef(id, parent.path() + "." + label, parent.rootId());
+            refs.put(externalId, ref);
+
+            CommentStatus status = record.getStatus() != null ? record.getStatus() : CommentStatus.PUBLISHED;
+            OffsetDateTime createdAt = record.getCreatedAt() != null ? record.getCreatedAt() : OffsetDateTime.now(ZoneOffset.UTC);
+            prepared.externalIds.add(externalId);
+            prepared.ids.add(id);
+            prepared.parentIds.add(parent != null ? parent.id() : null);
+            prepared.rootIds.add(ref.rootId());
+            prepared.paths.add(ref.path());
+            prepared.authorIds.add(record.getAuthorId());
+            prepared.authorUrns.add(record.getAuthorUrn());
+            prepared.bodiesMd.add(record.getBodyMd());
+            prepared.bodiesHtml.add(record.getBodyHtml());
+            prepared.statuses.add(status.getValue());
+            prepared.createdAt.add(createdAt.toString());
+            prepared.editedAt.add(record.getEditedAt() != null ? record.getEditedAt().toString() : null);
+        }
+        return prepared;
+    }
+
+    private Mono<Map<String, ImportedRef>> lookup(UUID subjectId, Set<String> externalIds) {
+        if (externalIds.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return databaseClient.sql(LOOKUP_SQL)
+                .bind("subjectId", subjectId)
+                .bind("externalIds", externalIds.toArray(String[]::new))
+                .map((row, metadata) -> Map.entry(
+                        row.get("external_id", String.class),
+                        new ImportedRef(row.get("id", Long.class), row.get("path", String.class), row.get("root_id", Long.class))))
+                .all()
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    private Mono<List<Long>> allocateIds(int count) {
+        return databaseClient.sql(ALLOCATE_IDS_SQL)
+                .bind("count", count)
+                .map((row, metadata) -> row.get("id", Long.class))
+                .all()
+                .collectList();
+    }
+
+    private Mono<Void> enableBulkMode() {
+        return databaseClient.sql("SELECT set_config('comment.bulk_import', 'on', true)")
+                .then();
+    }
+
+    private Mono<Void> insertComments(UUID subjectId, PreparedBatch prepared) {
+        return databaseClient.sql(INSERT_SQL)
+                .bind("subjectId", subjectId)
+                .bind("ids", prepared.ids.toArray(Long[]::new))
+                .bind("parentIds", prepared.parentIds.toArray(Long[]::new))
+                .bind("rootIds", prepared.rootIds.toArray(Long[]::new))
+                .bind("paths", prepared.paths.toArray(String[]::new))
+                .bind("authorIds", prepared.authorIds.toArray(Long[]::new))
+                .bind("authorUrns", prepared.authorUrns.toArray(String[]::new))
+                .bind("bodiesMd", prepared.bodiesMd.toArray(String[]::new))
+                .bind("bodiesHtml", prepared.bodiesHtml.toArray(String[]::new))
+                .bind("statuses", prepared.statuses.toArray(String[]::new))
+                .bind("createdAt", prepared.createdAt.toArray(String[]::new))
+                .bind("editedAt", prepared.editedAt.toArray(String[]::new))
+                .fetch()
+                .rowsUpdated()
+                .then();
+    }
+
+    private Mono<Void> insertKeys(UUID subjectId, PreparedBatch prepared) {
+        return databaseClient.sql(INSERT_KEYS_SQL)
+                .bind("subjectId", subjectId)
+                .bind("externalIds", prepared.externalIds.toArray(String[]::new))
+                .bind("ids", prepared.ids.toArray(Long[]::new))
+                .fetch()
+                .rowsUpdated()
+                .then();
+    }
+
+    private Mono<Void> recount(UUID subjectId) {
+        return Mono.defer(() -> databaseClient.sql(RECOUNT_REPLIES_SQL)
+                .bind("subjectId", subjectId)
+                .fetch()
+                .rowsUpdated()
+                .then(databaseClient.sql(RECOUNT_SUBJECT_SQL)
+                        .bind("subjectId", subjectId)
+                        .fetch()
+                        .rowsUpdated())
+                .then(databaseClient.sql("SELECT fn_rebuild_subject_metrics(:subjectId)")
+                        .bind("subjectId", subjectId)
+                        .then())
+                .doOnSuccess(ignored -> pageCache.invalidateSubject(subjectId))
+                .then());
+    }
+
+    private record NumberedRecord(long line, CommentImportRecord record) {
+    }
+
+    private record ImportedRef(long id, String path, long rootId) {
+    }
+
+    private static final class PreparedBatch {
+
+        private final List<String> externalIds = new ArrayList<>();
+        private final List<Long> ids = new ArrayList<>();
+        private final List<Long> parentIds = new ArrayList<>();
+        private final List<Long> rootIds = new ArrayList<>();
+        private final List<String> paths = new ArrayList<>();
+        private final List<Long> authorIds = new ArrayList<>();
+        private final List<String> authorUrns = new ArrayList<>();
+        private final List<String> bodiesMd = new ArrayList<>();
+        private final List<String> bodiesHtml = new ArrayList<>();
+        private final List<String> statuses = new ArrayList<>();
+        private final List<String> createdAt = new ArrayList<>();
+        private final List<String> editedAt = new ArrayList<>();
+
+        boolean isEmpty() {
+            return ids.isEmpty();
+        }
+    }
+
+    private static final class ImportStats {
+
+        private long imported;
+        private long skipped;
+        private long rejected;
+        private final List<CommentImportResponse.Rejection> errors = new ArrayList<>();
+
+        void reject(long line, String externalId, String reason) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(CommentImportResponse.Rejection.builder()
+                        .line(line)
+                        .externalId(externalId)
+                        .reason(reason)
+                        .build());
+            }
+        }
+
+        CommentImportResponse toResponse() {
+            return CommentImportResponse.builder()
+                    .imported(imported)
+                    .skipped(skipped)
+                    .rejected(rejected)
+                    .errors(List.copyOf(errors))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentPageResponse;
+import com.example.commentdemo.comment.security.ActorContext;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Substring search over {@code body_md}, served by the {@code idx_cmt_body_trgm} trigram index.
+ * <p>
+ * Matches are ranked by trigram {@code similarity()} and paged with a {@code (rank, created_at, id)} keyset.
+ * Only the newest {@code comment.search.max-candidates} matches are ranked, so similarity is computed and
+ * sorted for a bounded set on every page however broad the query; older matches beyond that cap are not
+ * returned. The matching ids are materialized before they are capped, which keeps the trigram index in
+ * charge of finding them. Every search runs in its own transaction with a local {@code statement_timeout}, and at most
+ * {@code comment.search.max-concurrent} searches hold a connection at once; callers past that limit get 429
+ * immediately, so a burst of expensive searches cannot starve the pool for regular reads and writes.
+ * <p>
+ * pg_trgm only extracts trigrams from non-ASCII text such as Chinese when the database {@code LC_CTYPE} is not
+ * {@code C}/{@code POSIX}; the locale is checked once at startup and a mismatch is logged.
+ */
+@Slf4j
+@Service
+public class DefaultCommentSearchService implements CommentSearchService {
+
+    private static final String ROLE_MODERATOR = "comment:moderator";
+    private static final String ROLE_ADMIN = "comment:admin";
+    private static final String RELEVANCE_CURSOR_KEY = "relevance";
+    private static final int MIN_QUERY_LENGTH = 3;
+    private static final int MAX_QUERY_LENGTH = 200;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String BUDGET_SQL = "SELECT set_config('statement_timeout', :budget, true)";
+    private static final Set<String> ASCII_ONLY_CTYPES = Set.of("C", "POSIX");
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final CommentQueryRegistry queryRegistry;
+    private final CommentHydrator commentHydrator;
+    private final CommentMapper commentMapper;
+    private final Duration budget;
+    private final int maxCandidates;
+    private final Semaphore permits;
+
+    public DefaultCommentSearchService(DatabaseClient databaseClient,
+                                       TransactionalOperator transactionalOperator,
+                                       CommentQueryRegistry queryRegistry,
+                                       CommentHydrator commentHydrator,
+                                       CommentMapper commentMapper,
+                                       @Value("${comment.search.timeout:PT2S}") Duration budget,
+                                       @Value("${comment.search.max-concurrent:3}") int maxConcurrent,
+                                       @Value("${comment.search.max-candidates:1000}") int maxCandidates) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.queryRegistry = queryRegistry;
+        this.commentHydrator = commentHydrator;
+        this.commentMapper = commentMapper;
+        this.budget = budget;
+        this.maxCandidates = maxCandidates;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    @PostConstruct
+    void registerStatements() {
+        for (boolean bySubject : new boolean[]{false, true}) {
+            for (boolean byAuthor : new boolean[]{false, true}) {
+                for (boolean withCursor : new boolean[]{false, true}) {
+                    queryRegistry.register(searchStatement(bySubject, byAuthor, withCursor),
+                            searchSql(bySubject, byAuthor, withCursor));
+                }
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkCollation() {
+        databaseClient.sql("SELECT current_setting('lc_ctype') AS ctype")
+                .map((row, metadata) -> row.get("ctype", String.class))
+                .one()
+                .subscribe(ctype -> {
+                    if (ctype != null && ASCII_ONLY_CTYPES.contains(ctype.toUpperCase(Locale.ROOT))) {
+                        log.warn("Database LC_CTYPE is {}; trigram search will not match non-ASCII text such as Chinese", ctype);
+                    }
+                }, ex -> log.warn("Could not read the database LC_CTYPE", ex));
+    }
+
+    @Override
+    public Mono<CommentPageResponse> search(String query,
+                                            UUID subjectId,
+                                            Long authorId,
+                                            String status,
+                                            int limit,
+                                            String cursor,
+                                            ActorContext actor) {
+        String normalized = normalizeQuery(query);
+        String[] statuses = resolveStatuses(status, actor);
+        DefaultCommentService.PageCursor pageCursor = DefaultCommentService.decodeCursor(cursor, RELEVANCE_CURSOR_KEY);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        return Mono.defer(() -> {
+            if (!permits.tryAcquire()) {
+                return Mono.error(new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many searches in progress; retry shortly"));
+            }
+            return findMatches(normalized, subjectId, authorId, statuses, pageCursor, pageSize + 1)
+                    .doFinally(signal -> permits.release());
+        }).flatMap(matches -> {
+            boolean hasNext = matches.size() > pageSize;
+            List<Match> page = hasNext ? matches.subList(0, pageSize) : matches;
+            String nextCursor = hasNext ? encodeCursor(page.get(page.size() - 1)) : null;
+            return commentHydrator.loadRows(page.stream().map(Match::id).toList())
+                    .map(rows -> CommentPageResponse.builder()
+                            .items(rows.stream()
+                                    .map(row -> commentMapper.toResponse(row.entity(), true, null, row.quality(), null))
+                                    .toList())
+                            .nextCursor(nextCursor)
+                            .build());
+        });
+    }
+
+    private Mono<List<Match>> findMatches(String query,
+                                          UUID subjectId,
+                                          Long authorId,
+                                          String[] statuses,
+                                          DefaultCommentService.PageCursor cursor,
+                                          int limit) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(queryRegistry.sql(searchStatement(subjectId != null, authorId != null, cursor != null)))
+                .bind("query", query)
+                .bind("pattern", "%" + escapeLike(query) + "%")
+                .bind("statuses", statuses)
+                .bind("maxCandidates", maxCandidates)
+                .bind("limit", limit);
+        if (subjectId != null) {
+            spec = spec.bind("subjectId", subjectId);
+        }
+        if (authorId != null) {
+            spec = spec.bind("authorId", authorId);
+        }
+        if (cursor != null) {
+            spec = spec.bind("cursorScore", cursor.score())
+                    .bind("cursorCreatedAt", cursor.createdAt())
+                    .bind("cursorId", cursor.id());
+        }
+        Mono<List<Match>> matches = spec.map((row, metadata) -> new Match(
+                        row.get("id", Long.class),
+                        row.get("created_at", OffsetDateTime.class),
+                        row.get("rank", Double.class)))
+                .all()
+                .collectList();
+
+        Mono<List<Match>> budgeted = databaseClient.sql(BUDGET_SQL)
+                .bind("budget", String.valueOf(budget.toMillis()))
+                .fetch()
+                .first()
+                .then(matches);
+        return transactionalOperator.transactional(budgeted)
+                // also bounds the wait for a pooled connection, which statement_timeout does not cover
+                .timeout(budget.multipliedBy(2))
+                .onErrorMap(DefaultCommentSearchService::isTimeout, ex -> {
+                    log.debug("Search for '{}' exceeded its {} budget", query, budget);
+                    return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                            "Search exceeded its time budget; narrow the query or add filters", ex);
+                });
+    }
+
+    private static boolean isTimeout(Throwable ex) {
+        return ex instanceof QueryTimeoutException
+                || ex instanceof R2dbcTimeoutException
+                || ex instanceof TimeoutException;
+    }
+
+    private static String searchStatement(boolean bySubject, boolean byAuthor, boolean withCursor) {
+        return "comment.search" + (bySubject ? ".subject" : "") + (byAuthor ? ".author" : "") + (withCursor ? ".cursor" : "");
+    }
+
+    private static String searchSql(boolean bySubject, boolean byAuthor, boolean withCursor) {
+        // the matches are collected first, through the trigram bitmap scan; with ORDER BY id DESC LIMIT in the
+        // same query level the planner may instead walk the primary key backwards and filter every body
+        StringBuilder sql = new StringBuilder("""
+                WITH matches AS MATERIALIZED (
+                    SELECT c.id
+                    FROM comment c
+                    WHERE c.body_md ILIKE :pattern
+                      AND c.status = ANY(:statuses)
+                """);
+        if (bySubject) {
+            sql.append("      AND c.subject_id = :subjectId\n");
+        }
+        if (byAuthor) {
+            sql.append("      AND c.author_id = :authorId\n");
+        }
+        // newest matches first, so the capped candidate set stays the same from one page to the next
+        sql.append("""
+                ),
+                candidates AS (
+                    SELECT id
+                    FROM matches
+                    ORDER BY id DESC
+                    LIMIT :maxCandidates
+                )
+                SELECT id, created_at, rank
+                FROM (SELECT c.id, c.created_at, similarity(c.body_md, :query)::float8 AS rank
+                      FROM candidates k
+                      JOIN comment c ON c.id = k.id) m
+                """);
+        if (withCursor) {
+            sql.append("WHERE (rank, created_at, id) < (:cursorScore, :cursorCreatedAt, :cursorId)\n");
+        }
+        sql.append("ORDER BY rank DESC, created_at DESC, id DESC\n");
+        sql.append("LIMIT :limit");
+        return sql.toString();
+    }
+
+    private static String normalizeQuery(String query) {
+        String trimmed = query == null ? "" : query.strip();
+        int length = trimmed.codePointCount(0, trimmed.length());
+        // shorter patterns have no full trigram and would fall back to scanning every body
+        if (length < MIN_QUERY_LENGTH || length > MAX_QUERY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Search query must be %d to %d characters".formatted(MIN_QUERY_LENGTH, MAX_QUERY_LENGTH));
+        }
+        return trimmed;
+    }
+
+    private static String[] resolveStatuses(String status, ActorContext actor) {
+        String normalized = StringUtils.hasText(status) ? status.toLowerCase(Locale.ROOT) : "published";
+        String[] statuses = switch (normalized) {
+            case "published", "pending", "hidden", "spam", "deleted" -> new String[]{normalized};
+            case "all" -> new String[]{"published", "pending", "hidden", "spam", "deleted"};
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported status filter: " + status);
+        };
+        boolean moderator = actor != null && (actor.hasRole(ROLE_MODERATOR) || actor.hasRole(ROLE_ADMIN));
+        if (!"published".equals(normalized) && !moderator) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Searching non-published comments requires the moderator role");
+        }
+        return statuses;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static String encodeCursor(Match match) {
+        return DefaultCommentService.encodeCursor(RELEVANCE_CURSOR_KEY, match.rank(), match.createdAt(), match.id());
+    }
+
+    private record Match(Long id, OffsetDateTime createdAt, Double rank) {
+    }
+}
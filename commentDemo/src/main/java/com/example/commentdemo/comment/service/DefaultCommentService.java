@@ -5,19 +5,18 @@ import com.example.commentdemo.comment.api.dto.CommentPageResponse;
 import com.example.commentdemo.comment.api.dto.CommentResponse;
 import com.example.commentdemo.comment.api.dto.CommentUpdateRequest;
 import com.example.commentdemo.comment.domain.entity.CommentEntity;
-import com.example.commentdemo.comment.domain.entity.CommentReactionEntity;
 import com.example.commentdemo.comment.model.CommentStatus;
-import com.example.commentdemo.comment.model.ReactionType;
-import com.example.commentdemo.comment.repository.CommentReactionRepository;
 import com.example.commentdemo.comment.repository.CommentRepository;
 import com.example.commentdemo.comment.repository.CommentSubjectRepository;
 import com.example.commentdemo.comment.security.ActorContext;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
@@ -29,18 +28,17 @@ import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.StringJoiner;
-import java.util.TreeSet;
 import java.util.UUID;
+import java.util.function.Function;
 
 @Slf4j
 @Service
@@ -52,12 +50,44 @@ public class DefaultCommentService implements CommentService {
     private static final int MAX_REPLY_PAGE_SIZE = 200;
     private static final String ROLE_MODERATOR = "comment:moderator";
     private static final String ROLE_ADMIN = "comment:admin";
+    static final String TIME_CURSOR_KEY = "time";
+    private static final int MAX_THREAD_DEPTH = 20;
+    private static final int MAX_THREAD_NODES = 2000;
+    private static final int THREAD_CHUNK_SIZE = 100;
+    private static final int STREAM_CHUNK_SIZE = 25;
+    private static final String SUBJECT_VERSION_STATEMENT = "subject.version";
+    private static final String SUBJECT_VERSION_SQL = """
+            SELECT write_version, reaction_epoch, last_commented_at
+            FROM comment_subject_totals
+            WHERE subject_id = :subjectId
+            """;
+    private static final String COMMENT_VERSION_STATEMENT = "comment.version";
+    private static final String COMMENT_VERSION_SQL = """
+            SELECT c.id, c.created_at, c.edited_at, c.deleted_at, c.status, c.toxicity_score,
+                   c.up_count, c.down_count, c.reply_count,
+                   r.best_score, r.hot_score, m.reactions, m.my_up, m.my_down, m.my_emoji
+            FROM comment c
+            LEFT JOIN comment_rank r ON r.id = c.id
+            CROSS JOIN LATERAL (
+                SELECT COUNT(*) AS reactions,
+                       COALESCE(bool_or(type = 'up'), false) AS my_up,
+                       COALESCE(bool_or(type = 'down'), false) AS my_down,
+                       array_agg(trim(emoji_code)) FILTER (WHERE type = 'emoji' AND trim(emoji_code) <> '') AS my_emoji
+                FROM comment_reaction
+                WHERE comment_id = c.id
+                  AND actor_id = :actorId
+            ) m
+            WHERE c.id = :commentId
+            """;
 
     private final CommentRepository commentRepository;
     private final CommentSubjectRepository subjectRepository;
-    private final CommentReactionRepository reactionRepository;
     private final CommentMapper commentMapper;
+    private final CommentHydrator commentHydrator;
+    private final CommentPageCache pageCache;
     private final DatabaseClient databaseClient;
+    private final CommentQueryRegistry queryRegistry;
+    private final CommentIdempotencyStore idempotencyStore;
 
     @Override
     public Mono<CommentPageResponse> listTopLevel(UUID subjectId,
@@ -71,14 +101,53 @@ public class DefaultCommentService implements CommentService {
         Assert.notNull(subjectId, "subjectId must not be null");
         ViewMode viewMode = ViewMode.from(view);
         StatusFilter statusFilter = StatusFilter.from(status);
-        PageCursor pageCursor = decodeCursor(cursor);
+        PageCursor pageCursor = decodeCursor(cursor, viewMode.cursorKey());
         int pageSize = normalizeLimit(limit, MAX_TOP_LEVEL_PAGE_SIZE);
 
-        return ensureSubjectExists(subjectId)
-                .thenMany(fetchTopLevelIds(subjectId, viewMode, statusFilter, pageCursor, pageSize + 1))
-                .concatMap(commentRepository::findById)
-                .collectList()
-                .flatMap(entities -> buildPageResponse(entities, pageSize, withCounts, withMyReaction, 0, actor));
+        return pageCache.get(subjectId, viewMode.name(), statusFilter.name(), pageSize, cursor,
+                        () -> ensureSubjectExists(subjectId)
+                                .thenMany(fetchTopLevelIds(subjectId, viewMode, statusFilter, pageCursor, pageSize + 1))
+                                .collectList()
+                                .flatMap(ids -> buildPageResponse(ids, pageSize, true, false, 0, null,
+                                        row -> encodeCursor(viewMode, row))))
+                .flatMap(page -> overlayViewer(page, withCounts, withMyReaction, actor));
+    }
+
+    @Override
+    public Mono<String> topLevelEtag(UUID subjectId,
+                                     String view,
+                                     int limit,
+                                     String cursor,
+                                     String status,
+                                     boolean withCounts,
+                                     boolean withMyReaction,
+                                     ActorContext actor) {
+        Assert.notNull(subjectId, "subjectId must not be null");
+        ViewMode viewMode = ViewMode.from(view);
+        StatusFilter statusFilter = StatusFilter.from(status);
+        int pageSize = normalizeLimit(limit, MAX_TOP_LEVEL_PAGE_SIZE);
+        // my_reaction makes the page viewer-specific; without it every viewer shares one tag
+        Long viewerId = withMyReaction && actor != null ? actor.actorId() : null;
+
+        return databaseClient.sql(queryRegistry.sql(SUBJECT_VERSION_STATEMENT))
+                .bind("subjectId", subjectId)
+                .map((row, metadata) -> {
+                    OffsetDateTime lastCommentedAt = row.get("last_commented_at", OffsetDateTime.class);
+                    return String.join(":",
+                            subjectId.toString(),
+                            String.valueOf(row.get("write_version", Long.class)),
+                            String.valueOf(row.get("reaction_epoch", Long.class)),
+                            lastCommentedAt != null ? Long.toString(ChronoUnit.MICROS.between(Instant.EPOCH, lastCommentedAt.toInstant())) : "",
+                            viewMode.name(),
+                            statusFilter.name(),
+                            Integer.toString(pageSize),
+                            cursor != null ? cursor : "",
+                            Boolean.toString(withCounts),
+                            String.valueOf(viewerId));
+                })
+                .one()
+                .switchIfEmpty(Mono.error(() -> notFound("Subject not found for id %s".formatted(subjectId))))
+                .map(token -> "W/\"" + DigestUtils.md5DigestAsHex(token.getBytes(StandardCharsets.UTF_8)) + "\"");
     }
 
     @Override
@@ -92,23 +161,111 @@ public class DefaultCommentService implements CommentService {
                                                  ActorContext actor) {
         Assert.notNull(commentId, "commentId must not be null");
         ReplyOrder replyOrder = ReplyOrder.from(order);
-        PageCursor pageCursor = decodeCursor(cursor);
+        PageCursor pageCursor = decodeCursor(cursor, TIME_CURSOR_KEY);
         int pageSize = normalizeLimit(limit, MAX_REPLY_PAGE_SIZE);
 
         return commentRepository.findById(commentId)
                 .switchIfEmpty(Mono.error(() -> notFound("Comment not found for id %s".formatted(commentId))))
                 .flatMap(parent -> fetchReplyIds(commentId, replyOrder, pageCursor, pageSize + 1)
-                        .concatMap(commentRepository::findById)
                         .collectList()
-                        .flatMap(entities -> buildPageResponse(entities, pageSize, withCounts, withMyReaction, collapseBelow, actor)));
+                        .flatMap(ids -> buildPageResponse(ids, pageSize, withCounts, withMyReaction, collapseBelow, actor,
+                                row -> encodeCursor(null, row))));
     }
 
     @Override
-    public Mono<CommentResponse> getComment(Long commentId, ActorContext actor) {
+    public Flux<CommentPageResponse> streamReplies(Long commentId,
+                                                   String order,
+                                                   int limit,
+                                                   String cursor,
+                                                   double collapseBelow,
+                                                   boolean withCounts,
+                                                   boolean withMyReaction,
+                                                   ActorContext actor) {
         Assert.notNull(commentId, "commentId must not be null");
+        ReplyOrder replyOrder = ReplyOrder.from(order);
+        PageCursor pageCursor = decodeCursor(cursor, TIME_CURSOR_KEY);
+        int pageSize = normalizeLimit(limit, MAX_REPLY_PAGE_SIZE);
+
         return commentRepository.findById(commentId)
                 .switchIfEmpty(Mono.error(() -> notFound("Comment not found for id %s".formatted(commentId))))
-                .flatMap(entity -> enrichSingle(entity, true, true, 0, actor));
+                .flatMap(parent -> fetchReplyIds(commentId, replyOrder, pageCursor, pageSize + 1).collectList())
+                .flatMapMany(ids -> streamPage(ids, pageSize, withCounts, withMyReaction, collapseBelow, actor,
+                        row -> encodeCursor(null, row)));
+    }
+
+    @Override
+    public Flux<CommentResponse> streamThread(Long commentId,
+                                              int maxDepth,
+                                              int limit,
+                                              boolean withCounts,
+                                              boolean withMyReaction,
+                                              ActorContext actor) {
+        Assert.notNull(commentId, "commentId must not be null");
+        int depth = Math.max(0, Math.min(maxDepth, MAX_THREAD_DEPTH));
+        int budget = normalizeLimit(limit, MAX_THREAD_NODES);
+
+        // viewer reactions are probed per chunk so the tree keeps streaming while rows arrive
+        return commentHydrator.streamSubtree(commentId, depth, budget + 1)
+                .switchIfEmpty(Flux.error(() -> notFound("Comment not found for id %s".formatted(commentId))))
+                .buffer(THREAD_CHUNK_SIZE)
+                .concatMap(chunk -> {
+                    List<Long> ids = chunk.stream().map(row -> row.entity().getId()).toList();
+                    return commentHydrator.loadMyReactions(ids, actor, withMyReaction)
+                            .flatMapIterable(reactions -> chunk.stream()
+                                    .map(row -> commentMapper.toResponse(row.entity(), withCounts,
+                                            reactions.get(row.entity().getId()), row.quality(), null))
+                                    .toList());
+                });
+    }
+
+    @Override
+    public Mono<CommentResponse> getComment(Long commentId, ActorContext actor) {
+        Assert.notNull(commentId, "commentId must not be null");
+        List<Long> ids = List.of(commentId);
+        return Mono.zip(commentHydrator.loadRows(ids), commentHydrator.loadMyReactions(ids, actor, true))
+                .flatMap(tuple -> {
+                    if (tuple.getT1().isEmpty()) {
+                        return Mono.error(notFound("Comment not found for id %s".formatted(commentId)));
+                    }
+                    CommentHydrator.HydratedComment row = tuple.getT1().get(0);
+                    return Mono.just(commentMapper.toResponse(row.entity(), true, tuple.getT2().get(commentId), row.quality(), null));
+                });
+    }
+
+    @Override
+    public Mono<String> commentEtag(Long commentId, ActorContext actor) {
+        Assert.notNull(commentId, "commentId must not be null");
+        Long actorId = actor != null ? actor.actorId() : null;
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(queryRegistry.sql(COMMENT_VERSION_STATEMENT))
+                .bind("commentId", commentId);
+        spec = actorId != null ? spec.bind("actorId", actorId) : spec.bindNull("actorId", Long.class);
+        return spec.map((row, metadata) -> {
+                    Number best = row.get("best_score", Number.class);
+                    Number hot = row.get("hot_score", Number.class);
+                    Long reactions = row.get("reactions", Long.class);
+                    String[] myEmoji = row.get("my_emoji", String[].class);
+                    CommentResponse.MyReaction myReaction = reactions != null && reactions > 0
+                            ? CommentResponse.MyReaction.builder()
+                            .up(Boolean.TRUE.equals(row.get("my_up", Boolean.class)))
+                            .down(Boolean.TRUE.equals(row.get("my_down", Boolean.class)))
+                            .emoji(myEmoji != null ? Set.copyOf(Arrays.asList(myEmoji)) : Set.of())
+                            .build()
+                            : null;
+                    return CommentEtags.readTag(row.get("id", Long.class),
+                            row.get("created_at", OffsetDateTime.class),
+                            row.get("edited_at", OffsetDateTime.class),
+                            row.get("deleted_at", OffsetDateTime.class),
+                            CommentStatus.fromValue(row.get("status", String.class)),
+                            row.get("toxicity_score", BigDecimal.class),
+                            orZero(row.get("up_count", Integer.class)),
+                            orZero(row.get("down_count", Integer.class)),
+                            orZero(row.get("reply_count", Integer.class)),
+                            best != null ? best.doubleValue() : null,
+                            hot != null ? hot.doubleValue() : null,
+                            myReaction);
+                })
+                .one()
+                .switchIfEmpty(Mono.error(() -> notFound("Comment not found for id %s".formatted(commentId))));
     }
 
     @Override
@@ -116,6 +273,14 @@ public class DefaultCommentService implements CommentService {
         Assert.notNull(subjectId, "subjectId must not be null");
         Assert.notNull(request, "request must not be null");
 
+        Mono<CommentResponse> write = Mono.defer(() -> insertComment(subjectId, request, actor));
+        if (!StringUtils.hasText(idempotencyKey) || actor == null || actor.actorId() == null) {
+            return write;
+        }
+        return idempotencyStore.execute(actor.actorId(), idempotencyKey.trim(), createRequestHash(subjectId, request), () -> write);
+    }
+
+    private Mono<CommentResponse> insertComment(UUID subjectId, CommentCreateRequest request, ActorContext actor) {
         return ensureSubjectExists(subjectId)
                 .then(requireParent(subjectId, request.getParentId()))
                 .flatMap(parent -> {
@@ -138,10 +303,21 @@ public class DefaultCommentService implements CommentService {
                             .build();
 
                     return commentRepository.save(entity)
+                            .doOnSuccess(saved -> pageCache.invalidateSubject(subjectId))
                             .flatMap(saved -> getComment(saved.getId(), actor));
                 });
     }
 
+    private static String createRequestHash(UUID subjectId, CommentCreateRequest request) {
+        String payload = String.join("\u0000",
+                subjectId.toString(),
+                String.valueOf(request.getParentId()),
+                String.valueOf(request.getBodyMd()),
+                String.valueOf(request.getBodyHtml()),
+                String.valueOf(request.getStatus()));
+        return DigestUtils.md5DigestAsHex(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
     @Override
     public Mono<CommentResponse> update(Long commentId, CommentUpdateRequest request, ActorContext actor, String ifMatch) {
         Assert.notNull(commentId, "commentId must not be null");
@@ -174,11 +350,12 @@ public class DefaultCommentService implements CommentService {
                         throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "hard_delete is not supported via PATCH; use DELETE instead");
                     }
                     if (!mutated) {
-                        return enrichSingle(existing, true, true, 0, actor);
+                        return getComment(existing.getId(), actor);
                     }
 
                     existing.setEditedAt(OffsetDateTime.now(ZoneOffset.UTC));
                     return commentRepository.save(existing)
+                            .doOnSuccess(saved -> pageCache.invalidateSubject(existing.getSubjectId()))
                             .flatMap(saved -> getComment(saved.getId(), actor));
                 });
     }
@@ -197,9 +374,11 @@ public class DefaultCommentService implements CommentService {
                         existing.setStatus(CommentStatus.DELETED);
                         existing.setDeletedAt(OffsetDateTime.now(ZoneOffset.UTC));
                         existing.setEditedAt(OffsetDateTime.now(ZoneOffset.UTC));
-                        return commentRepository.save(existing).then();
+                        return commentRepository.save(existing)
+                                .then(Mono.<Void>fromRunnable(() -> pageCache.invalidateSubject(existing.getSubjectId())));
                     }
-                    return commentRepository.delete(existing);
+                    return commentRepository.delete(existing)
+                            .then(Mono.<Void>fromRunnable(() -> pageCache.invalidateSubject(existing.getSubjectId())));
                 });
     }
 
@@ -232,27 +411,14 @@ public class DefaultCommentService implements CommentService {
                                         StatusFilter statusFilter,
                                         PageCursor cursor,
                                         int limit) {
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT c.id FROM comment c ");
-        if (viewMode.requiresRank()) {
-            sql.append("JOIN comment_rank_mv r ON r.id = c.id ");
-        }
-        sql.append("WHERE c.subject_id = :subjectId ");
-        sql.append("AND (c.parent_id IS NULL OR c.depth = 0)");
-
-        Map<String, Object> params = new LinkedHashMap<>();
-        params.put("subjectId", subjectId);
-        applyStatusFilter(sql, params, statusFilter, "c");
-        appendCursorClause(sql, params, cursor, viewMode.isAscending());
-        sql.append(" ORDER BY ").append(viewMode.orderClause());
-        sql.append(" LIMIT :limit");
-        params.put("limit", limit);
-
-        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
-        for (Map.Entry<String, Object> entry : params.entrySet()) {
-            spec = spec.bind(entry.getKey(), entry.getValue());
-        }
-        return spec.map((row, metadata) -> row.get("id", Long.class))
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(queryRegistry.sql(topLevelStatement(viewMode, statusFilter, cursor != null)))
+                .bind("subjectId", subjectId)
+                .bind("limit", limit);
+        if (statusFilter.bindsValue()) {
+            spec = spec.bind("statusFilter", statusFilter.value());
+        }
+        return bindCursor(spec, cursor, viewMode)
+                .map((row, metadata) -> row.get("id", Long.class))
                 .all();
     }
 
@@ -260,75 +426,172 @@ public class DefaultCommentService implements CommentService {
                                      ReplyOrder order,
                                      PageCursor cursor,
                                      int limit) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(queryRegistry.sql(replyStatement(order, cursor != null)))
+                .bind("parentId", commentId)
+                .bind("limit", limit);
+        return bindCursor(spec, cursor, null)
+                .map((row, metadata) -> row.get("id", Long.class))
+                .all();
+    }
+
+    /**
+     * Registers every shape the id queries can take; requests then only pick a template and bind values.
+     */
+    @PostConstruct
+    void registerStatements() {
+        queryRegistry.register(SUBJECT_VERSION_STATEMENT, SUBJECT_VERSION_SQL);
+        queryRegistry.register(COMMENT_VERSION_STATEMENT, COMMENT_VERSION_SQL);
+        for (boolean withCursor : new boolean[]{false, true}) {
+            for (ViewMode viewMode : ViewMode.values()) {
+                for (StatusFilter statusFilter : StatusFilter.values()) {
+                    queryRegistry.register(topLevelStatement(viewMode, statusFilter, withCursor),
+                            topLevelSql(viewMode, statusFilter, withCursor));
+                }
+            }
+            for (ReplyOrder order : ReplyOrder.values()) {
+                queryRegistry.register(replyStatement(order, withCursor), replySql(order, withCursor));
+            }
+        }
+    }
+
+    private static String topLevelStatement(ViewMode viewMode, StatusFilter statusFilter, boolean withCursor) {
+        return "comment.top-level." + viewMode.value + "." + statusFilter.shape() + (withCursor ? ".cursor" : "");
+    }
+
+    private static String replyStatement(ReplyOrder order, boolean withCursor) {
+        return "comment.replies." + order.value + (withCursor ? ".cursor" : "");
+    }
+
+    private static String topLevelSql(ViewMode viewMode, StatusFilter statusFilter, boolean withCursor) {
+        // rank views are answered from comment_rank alone so the seek stays on idx_cmt_rank_*
+        String alias = viewMode.alias();
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT ").append(alias).append(".id FROM ");
+        sql.append(viewMode.requiresRank() ? "comment_rank r " : "comment c ");
+        sql.append("WHERE ").append(alias).append(".subject_id = :subjectId ");
+        sql.append("AND ").append(alias).append(".parent_id IS NULL");
+        appendStatusFilter(sql, statusFilter, alias, !viewMode.requiresRank());
+        if (withCursor) {
+            appendCursorClause(sql, viewMode);
+        }
+        sql.append(" ORDER BY ").append(viewMode.orderClause());
+        sql.append(" LIMIT :limit");
+        return sql.toString();
+    }
+
+    private static String replySql(ReplyOrder order, boolean withCursor) {
         StringBuilder sql = new StringBuilder();
         sql.append("SELECT c.id FROM comment c WHERE c.parent_id = :parentId");
-        Map<String, Object> params = new LinkedHashMap<>();
-        params.put("parentId", commentId);
         sql.append(" AND c.status <> 'deleted'");
-        appendCursorClause(sql, params, cursor, true);
+        if (withCursor) {
+            appendCursorClause(sql, null);
+        }
         sql.append(" ORDER BY ").append(order.orderClause());
         sql.append(" LIMIT :limit");
-        params.put("limit", limit);
-
-        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
-        for (Map.Entry<String, Object> entry : params.entrySet()) {
-            spec = spec.bind(entry.getKey(), entry.getValue());
-        }
-        return spec.map((row, metadata) -> row.get("id", Long.class))
-                .all();
+        return sql.toString();
     }
 
-    private Mono<CommentPageResponse> buildPageResponse(List<CommentEntity> entities,
+    private Mono<CommentPageResponse> buildPageResponse(List<Long> ids,
                                                         int pageSize,
                                                         boolean includeCounts,
                                                         boolean includeMyReaction,
                                                         double collapseBelow,
-                                                        ActorContext actor) {
-        if (entities.isEmpty()) {
+                                                        ActorContext actor,
+                                                        Function<CommentHydrator.HydratedComment, String> cursorEncoder) {
+        if (ids.isEmpty()) {
             return Mono.just(CommentPageResponse.builder()
                     .items(List.of())
                     .nextCursor(null)
                     .build());
         }
 
-        boolean hasNext = entities.size() > pageSize;
-        List<CommentEntity> pageItems = hasNext ? entities.subList(0, pageSize) : entities;
-        List<Long> commentIds = pageItems.stream()
-                .map(CommentEntity::getId)
-                .filter(Objects::nonNull)
-                .toList();
+        boolean hasNext = ids.size() > pageSize;
+        List<Long> pageIds = hasNext ? ids.subList(0, pageSize) : ids;
 
-        Mono<Map<Long, CommentResponse.MyReaction>> reactionsMono = fetchMyReactions(commentIds, actor, includeMyReaction);
-        Mono<Map<Long, CommentResponse.Quality>> qualityMono = fetchQuality(commentIds);
+        return Mono.zip(commentHydrator.loadRows(pageIds), commentHydrator.loadMyReactions(pageIds, actor, includeMyReaction))
+                .map(tuple -> toPageResponse(tuple, includeCounts, collapseBelow, hasNext, cursorEncoder));
+    }
 
-        return Mono.zip(reactionsMono.defaultIfEmpty(Map.of()), qualityMono.defaultIfEmpty(Map.of()))
-                .map(tuple -> toPageResponse(tuple, pageItems, includeCounts, collapseBelow, hasNext));
+    /**
+     * Hydrates the page in chunks of {@value #STREAM_CHUNK_SIZE} ids, one chunk at a time, so the first
+     * comments can be written while later rows are still being loaded. Only the last chunk carries the
+     * cursor.
+     */
+    private Flux<CommentPageResponse> streamPage(List<Long> ids,
+                                                 int pageSize,
+                                                 boolean includeCounts,
+                                                 boolean includeMyReaction,
+                                                 double collapseBelow,
+                                                 ActorContext actor,
+                                                 Function<CommentHydrator.HydratedComment, String> cursorEncoder) {
+        boolean hasNext = ids.size() > pageSize;
+        List<Long> pageIds = hasNext ? ids.subList(0, pageSize) : ids;
+        int chunks = (pageIds.size() + STREAM_CHUNK_SIZE - 1) / STREAM_CHUNK_SIZE;
+
+        return Flux.range(0, chunks)
+                .concatMap(index -> {
+                    List<Long> chunk = pageIds.subList(index * STREAM_CHUNK_SIZE,
+                            Math.min(pageIds.size(), (index + 1) * STREAM_CHUNK_SIZE));
+                    boolean last = index == chunks - 1;
+                    return Mono.zip(commentHydrator.loadRows(chunk), commentHydrator.loadMyReactions(chunk, actor, includeMyReaction))
+                            .map(tuple -> toPageResponse(tuple, includeCounts, collapseBelow, hasNext && last, cursorEncoder));
+                });
     }
 
-    private CommentPageResponse toPageResponse(Tuple2<Map<Long, CommentResponse.MyReaction>, Map<Long, CommentResponse.Quality>> tuple,
-                                               List<CommentEntity> pageItems,
+    /**
+     * Applies the per-request parts to a shared page: drops counters when not requested and
+     * overlays the viewer's own reactions.
+     */
+    private Mono<CommentPageResponse> overlayViewer(CommentPageResponse page,
+                                                    boolean includeCounts,
+                                                    boolean includeMyReaction,
+                                                    ActorContext actor) {
+        List<CommentResponse> items = page.items();
+        List<Long> ids = items.stream()
+                .map(CommentResponse::id)
+                .toList();
+        return commentHydrator.loadMyReactions(ids, actor, includeMyReaction)
+                .map(reactions -> {
+                    if (includeCounts && reactions.isEmpty()) {
+                        return page;
+                    }
+                    List<CommentResponse> overlaid = new ArrayList<>(items.size());
+                    for (CommentResponse item : items) {
+                        overlaid.add(item.toBuilder()
+                                .counters(includeCounts ? item.counters() : null)
+                                .myReaction(reactions.get(item.id()))
+                                .build());
+                    }
+                    return CommentPageResponse.builder()
+                            .items(overlaid)
+                            .nextCursor(page.nextCursor())
+                            .build();
+                });
+    }
+
+    private CommentPageResponse toPageResponse(Tuple2<List<CommentHydrator.HydratedComment>, Map<Long, CommentResponse.MyReaction>> tuple,
                                                boolean includeCounts,
                                                double collapseBelow,
-                                               boolean hasNext) {
-        Map<Long, CommentResponse.MyReaction> reactions = tuple.getT1();
-        Map<Long, CommentResponse.Quality> quality = tuple.getT2();
-
-        List<CommentResponse> responses = new ArrayList<>(pageItems.size());
-        for (CommentEntity entity : pageItems) {
-            Long id = entity.getId();
-            CommentResponse.Quality q = quality.get(id);
-            CommentResponse.Collapse collapse = computeCollapse(q, collapseBelow);
+                                               boolean hasNext,
+                                               Function<CommentHydrator.HydratedComment, String> cursorEncoder) {
+        List<CommentHydrator.HydratedComment> rows = tuple.getT1();
+        Map<Long, CommentResponse.MyReaction> reactions = tuple.getT2();
+
+        List<CommentResponse> responses = new ArrayList<>(rows.size());
+        for (CommentHydrator.HydratedComment row : rows) {
+            CommentEntity entity = row.entity();
+            CommentResponse.Collapse collapse = computeCollapse(row.quality(), collapseBelow);
             responses.add(commentMapper.toResponse(
                     entity,
                     includeCounts,
-                    reactions.get(id),
-                    q,
+                    reactions.get(entity.getId()),
+                    row.quality(),
                     collapse
             ));
         }
 
-        String nextCursor = hasNext && !pageItems.isEmpty()
-                ? encodeCursor(pageItems.get(pageItems.size() - 1))
+        String nextCursor = hasNext && !rows.isEmpty()
+                ? cursorEncoder.apply(rows.get(rows.size() - 1))
                 : null;
 
         return CommentPageResponse.builder()
@@ -337,87 +600,6 @@ public class DefaultCommentService implements CommentService {
                 .build();
     }
 
-    private Mono<CommentResponse> enrichSingle(CommentEntity entity,
-                                               boolean includeCounts,
-                                               boolean includeMyReaction,
-                                               double collapseBelow,
-                                               ActorContext actor) {
-        if (entity.getId() == null) {
-            return Mono.just(commentMapper.toResponse(entity, includeCounts, null, null, null));
-        }
-        List<Long> ids = List.of(entity.getId());
-        Mono<Map<Long, CommentResponse.MyReaction>> reactions = fetchMyReactions(ids, actor, includeMyReaction);
-        Mono<Map<Long, CommentResponse.Quality>> quality = fetchQuality(ids);
-
-        return Mono.zip(reactions.defaultIfEmpty(Map.of()), quality.defaultIfEmpty(Map.of()))
-                .map(tuple -> {
-                    CommentResponse.MyReaction myReaction = tuple.getT1().get(entity.getId());
-                    CommentResponse.Quality qualityValue = tuple.getT2().get(entity.getId());
-                    CommentResponse.Collapse collapse = computeCollapse(qualityValue, collapseBelow);
-                    return commentMapper.toResponse(entity, includeCounts, myReaction, qualityValue, collapse);
-                });
-    }
-
-    private Mono<Map<Long, CommentResponse.MyReaction>> fetchMyReactions(List<Long> commentIds,
-                                                                         ActorContext actor,
-                                                                         boolean include) {
-        if (!include || actor == null || actor.actorId() == null || commentIds.isEmpty()) {
-            return Mono.just(Map.of());
-        }
-        return reactionRepository.findByCommentIdInAndActorId(commentIds, actor.actorId())
-                .collectList()
-                .map(entities -> {
-                    Map<Long, ReactionAccumulator> accumulators = new LinkedHashMap<>();
-                    for (CommentReactionEntity reaction : entities) {
-                        ReactionAccumulator accumulator = accumulators.computeIfAbsent(
-                                reaction.getCommentId(),
-                                key -> new ReactionAccumulator()
-                        );
-                        if (reaction.getType() == ReactionType.UP) {
-                            accumulator.up = true;
-                        } else if (reaction.getType() == ReactionType.DOWN) {
-                            accumulator.down = true;
-                        } else if (reaction.getType() == ReactionType.EMOJI && StringUtils.hasText(reaction.getEmojiCode())) {
-                            accumulator.emoji.add(reaction.getEmojiCode().trim());
-                        }
-                    }
-                    Map<Long, CommentResponse.MyReaction> result = new LinkedHashMap<>();
-                    accumulators.forEach((commentId, accumulator) -> result.put(commentId, accumulator.toResponse()));
-                    return result;
-                });
-    }
-
-    private Mono<Map<Long, CommentResponse.Quality>> fetchQuality(List<Long> commentIds) {
-        if (commentIds.isEmpty()) {
-            return Mono.just(Map.of());
-        }
-
-        StringBuilder sql = new StringBuilder("SELECT id, best_score, hot_score FROM comment_rank_mv WHERE id IN (");
-        StringJoiner joiner = new StringJoiner(", ");
-        for (int i = 0; i < commentIds.size(); i++) {
-            joiner.add(":q" + i);
-        }
-        sql.append(joiner).append(")");
-
-        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
-        for (int i = 0; i < commentIds.size(); i++) {
-            spec = spec.bind("q" + i, commentIds.get(i));
-        }
-
-        return spec.map((row, metadata) -> {
-                    Long id = row.get("id", Long.class);
-                    Number best = row.get("best_score", Number.class);
-                    Number hot = row.get("hot_score", Number.class);
-                    CommentResponse.Quality quality = CommentResponse.Quality.builder()
-                            .bestScore(best != null ? BigDecimal.valueOf(best.doubleValue()) : null)
-                            .hotScore(hot != null ? BigDecimal.valueOf(hot.doubleValue()) : null)
-                            .build();
-                    return Map.entry(id, quality);
-                })
-                .all()
-                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
-    }
-
     private CommentResponse.Collapse computeCollapse(CommentResponse.Quality quality, double threshold) {
         if (threshold <= 0 || quality == null || quality.bestScore() == null) {
             return null;
@@ -453,8 +635,11 @@ public class DefaultCommentService implements CommentService {
         if (!StringUtils.hasText(ifMatch)) {
             return;
         }
+        // read tags from GET carry counters as well; only their content part has to match
         String expected = computeEtag(entity);
-        if (!expected.equals(ifMatch.trim())) {
+        String contentKey = CommentEtags.contentKey(entity.getId(), entity.getCreatedAt(), entity.getEditedAt(), entity.getDeletedAt(),
+                entity.getStatus(), entity.getToxicityScore());
+        if (!expected.equals(ifMatch.trim()) && !contentKey.equals(CommentEtags.contentKeyOf(ifMatch))) {
             throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Stale comment representation");
         }
     }
@@ -480,92 +665,152 @@ public class DefaultCommentService implements CommentService {
         return Math.min(resolved, maximum);
     }
 
-    private void applyStatusFilter(StringBuilder sql, Map<String, Object> params, StatusFilter filter, String alias) {
+    private static void appendStatusFilter(StringBuilder sql,
+                                           StatusFilter filter,
+                                           String alias,
+                                           boolean checkDeletedAt) {
         if (filter == StatusFilter.ALL) {
             return;
         }
         if (filter == StatusFilter.PUBLISHED) {
-            sql.append(" AND ").append(alias).append(".status = 'published' AND ").append(alias).append(".deleted_at IS NULL");
+            sql.append(" AND ").append(alias).append(".status = 'published'");
+            if (checkDeletedAt) {
+                sql.append(" AND ").append(alias).append(".deleted_at IS NULL");
+            }
             return;
         }
         sql.append(" AND ").append(alias).append(".status = :statusFilter");
-        params.put("statusFilter", filter.value());
     }
 
-    private void appendCursorClause(StringBuilder sql, Map<String, Object> params, PageCursor cursor, boolean ascending) {
+    /**
+     * Seeks past the cursor on the full sort key of the view, so rank views page on
+     * {@code (score, created_at, id)} and can walk the matching rank index.
+     */
+    private static void appendCursorClause(StringBuilder sql, ViewMode viewMode) {
+        boolean ascending = viewMode != null && viewMode.isAscending();
+        String alias = viewMode != null ? viewMode.alias() : "c";
+        if (viewMode != null && viewMode.requiresRank()) {
+            sql.append(" AND (").append(viewMode.scoreExpression()).append(", ")
+                    .append(alias).append(".created_at, ").append(alias).append(".id) ");
+            sql.append(ascending ? ">" : "<");
+            sql.append(" (:cursorScore, :cursorCreatedAt, :cursorId)");
+        } else {
+            sql.append(" AND (c.created_at, c.id) ");
+            sql.append(ascending ? ">" : "<");
+            sql.append(" (:cursorCreatedAt, :cursorId)");
+        }
+    }
+
+    private DatabaseClient.GenericExecuteSpec bindCursor(DatabaseClient.GenericExecuteSpec spec, PageCursor cursor, ViewMode viewMode) {
         if (cursor == null) {
-            return;
+            return spec;
+        }
+        if (viewMode != null && viewMode.requiresRank()) {
+            spec = spec.bind("cursorScore", cursor.score());
         }
-        sql.append(" AND (c.created_at, c.id) ");
-        sql.append(ascending ? ">" : "<");
-        sql.append(" (:cursorCreatedAt, :cursorId)");
-        params.put("cursorCreatedAt", cursor.createdAt());
-        params.put("cursorId", cursor.id());
+        return spec.bind("cursorCreatedAt", cursor.createdAt())
+                .bind("cursorId", cursor.id());
     }
 
-    private PageCursor decodeCursor(String cursor) {
+    static PageCursor decodeCursor(String cursor, String expectedKey) {
         if (!StringUtils.hasText(cursor)) {
             return null;
         }
+        PageCursor decoded;
         try {
-            byte[] decoded = Base64.getUrlDecoder().decode(cursor);
-            String payload = new String(decoded, StandardCharsets.UTF_8);
-            String[] parts = payload.split(":", 2);
-            if (parts.length != 2) {
+            byte[] raw = Base64.getUrlDecoder().decode(cursor);
+            String payload = new String(raw, StandardCharsets.UTF_8);
+            String[] parts = payload.split(":", -1);
+            if (parts.length == 2) {
+                // legacy cursor: <epoch millis>:<id>
+                OffsetDateTime createdAt = OffsetDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(parts[0])), ZoneOffset.UTC);
+                decoded = new PageCursor(TIME_CURSOR_KEY, null, createdAt, Long.parseLong(parts[1]));
+            } else if (parts.length == 4) {
+                // <sort key>:<score>:<epoch micros>:<id>
+                Double score = parts[1].isEmpty() ? null : Double.parseDouble(parts[1]);
+                if (score != null && !Double.isFinite(score)) {
+                    throw new IllegalArgumentException("Cursor score invalid");
+                }
+                Instant instant = Instant.EPOCH.plus(Long.parseLong(parts[2]), ChronoUnit.MICROS);
+                decoded = new PageCursor(parts[0], score, OffsetDateTime.ofInstant(instant, ZoneOffset.UTC), Long.parseLong(parts[3]));
+            } else {
                 throw new IllegalArgumentException("Cursor format invalid");
             }
-            long epochMillis = Long.parseLong(parts[0]);
-            long id = Long.parseLong(parts[1]);
-            OffsetDateTime createdAt = OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
-            return new PageCursor(createdAt, id);
-        } catch (IllegalArgumentException ex) {
+        } catch (IllegalArgumentException | ArithmeticException ex) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", ex);
         }
+        if (!expectedKey.equals(decoded.sortKey()) || (!TIME_CURSOR_KEY.equals(expectedKey) && decoded.score() == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor does not match the requested ordering");
+        }
+        return decoded;
     }
 
-    private String encodeCursor(CommentEntity entity) {
+    static String encodeCursor(ViewMode viewMode, CommentHydrator.HydratedComment row) {
+        CommentEntity entity = row.entity();
         OffsetDateTime createdAt = entity.getCreatedAt() != null
                 ? entity.getCreatedAt()
                 : OffsetDateTime.now(ZoneOffset.UTC);
-        long epochMillis = createdAt.toInstant().toEpochMilli();
-        String payload = epochMillis + ":" + entity.getId();
+        String key = viewMode != null ? viewMode.cursorKey() : TIME_CURSOR_KEY;
+        Double score = viewMode != null ? sortScore(viewMode, row) : null;
+        return encodeCursor(key, score, createdAt, entity.getId());
+    }
+
+    static String encodeCursor(String sortKey, Double score, OffsetDateTime createdAt, long id) {
+        long epochMicros = ChronoUnit.MICROS.between(Instant.EPOCH, createdAt.toInstant());
+        String payload = sortKey + ":" + (score != null ? score : "") + ":" + epochMicros + ":" + id;
         return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
     }
 
-    private String computeEtag(CommentEntity entity) {
-        OffsetDateTime baseline = entity.getEditedAt();
-        if (baseline == null) {
-            baseline = entity.getDeletedAt();
-        }
-        if (baseline == null) {
-            baseline = entity.getCreatedAt();
-        }
-        long version = baseline != null ? baseline.toInstant().toEpochMilli() : 0L;
-        String token = entity.getId() + ":" + version;
-        return "W/\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8)) + "\"";
+    private static Double sortScore(ViewMode viewMode, CommentHydrator.HydratedComment row) {
+        CommentResponse.Quality quality = row.quality();
+        CommentEntity entity = row.entity();
+        return switch (viewMode) {
+            case BEST -> quality != null && quality.bestScore() != null ? quality.bestScore().doubleValue() : 0d;
+            case HOT -> quality != null && quality.hotScore() != null ? quality.hotScore().doubleValue() : 0d;
+            case CONTROVERSIAL -> row.controversyScore() != null
+                    ? row.controversyScore()
+                    : (double) Math.min(
+                    entity.getUpCount() == null ? 0 : entity.getUpCount(),
+                    entity.getDownCount() == null ? 0 : entity.getDownCount());
+            case NEW, OLD -> null;
+        };
+    }
+
+    static String computeEtag(CommentEntity entity) {
+        return CommentEtags.contentTag(entity.getId(), entity.getCreatedAt(), entity.getEditedAt(), entity.getDeletedAt(),
+                entity.getStatus(), entity.getToxicityScore());
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
     }
 
     private ResponseStatusException notFound(String message) {
         return new ResponseStatusException(HttpStatus.NOT_FOUND, message);
     }
 
-    private enum ViewMode {
-        BEST("best", false, true, "r.best_score DESC NULLS LAST, c.created_at DESC, c.id DESC"),
-        HOT("hot", false, true, "r.hot_score DESC NULLS LAST, c.created_at DESC, c.id DESC"),
-        NEW("new", false, false, "c.created_at DESC, c.id DESC"),
-        OLD("old", true, false, "c.created_at ASC, c.id ASC"),
-        CONTROVERSIAL("controversial", false, false, "LEAST(c.up_count, c.down_count) DESC, c.created_at DESC, c.id DESC");
+    enum ViewMode {
+        BEST("best", false, "best_score"),
+        HOT("hot", false, "hot_score"),
+        NEW("new", false, null),
+        OLD("old", true, null),
+        CONTROVERSIAL("controversial", false, "controversy_score");
 
         private final String value;
         private final boolean ascending;
-        private final boolean requiresRank;
+        private final String scoreColumn;
         private final String orderClause;
 
-        ViewMode(String value, boolean ascending, boolean requiresRank, String orderClause) {
+        ViewMode(String value, boolean ascending, String scoreColumn) {
             this.value = value;
             this.ascending = ascending;
-            this.requiresRank = requiresRank;
-            this.orderClause = orderClause;
+            this.scoreColumn = scoreColumn;
+            String alias = scoreColumn != null ? "r" : "c";
+            String direction = ascending ? "ASC" : "DESC";
+            String timeOrder = alias + ".created_at " + direction + ", " + alias + ".id " + direction;
+            this.orderClause = scoreColumn != null
+                    ? alias + "." + scoreColumn + " " + direction + ", " + timeOrder
+                    : timeOrder;
         }
 
         static ViewMode from(String raw) {
@@ -586,12 +831,24 @@ public class DefaultCommentService implements CommentService {
         }
 
         boolean requiresRank() {
-            return requiresRank;
+            return scoreColumn != null;
+        }
+
+        String alias() {
+            return requiresRank() ? "r" : "c";
+        }
+
+        String scoreExpression() {
+            return scoreColumn != null ? "r." + scoreColumn : null;
         }
 
         String orderClause() {
             return orderClause;
         }
+
+        String cursorKey() {
+            return scoreColumn != null ? value : TIME_CURSOR_KEY;
+        }
     }
 
     private enum StatusFilter {
@@ -624,6 +881,17 @@ public class DefaultCommentService implements CommentService {
         String value() {
             return value;
         }
+
+        boolean bindsValue() {
+            return this != ALL && this != PUBLISHED;
+        }
+
+        /**
+         * Filters that only differ in the bound status share one statement template.
+         */
+        String shape() {
+            return bindsValue() ? "status" : value;
+        }
     }
 
     private enum ReplyOrder {
@@ -656,7 +924,7 @@ public class DefaultCommentService implements CommentService {
         }
     }
 
-    private record PageCursor(OffsetDateTime createdAt, long id) {
+    record PageCursor(String sortKey, Double score, OffsetDateTime createdAt, long id) {
     }
 
     private record ParentContext(Long parentId) {
@@ -665,20 +933,4 @@ public class DefaultCommentService implements CommentService {
             return new ParentContext(null);
         }
     }
-
-    private static final class ReactionAccumulator {
-
-        private boolean up;
-        private boolean down;
-        private final Set<String> emoji = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
-
-        CommentResponse.MyReaction toResponse() {
-            Set<String> codes = emoji.isEmpty() ? Set.of() : new LinkedHashSet<>(emoji);
-            return CommentResponse.MyReaction.builder()
-                    .up(up)
-                    .down(down)
-                    .emoji(codes)
-                    .build();
-        }
-    }
 }
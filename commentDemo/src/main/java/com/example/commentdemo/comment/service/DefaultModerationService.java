@@ -0,0 +1,391 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentPageResponse;
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.example.commentdemo.comment.api.dto.ModerationActionRequest;
+import com.example.commentdemo.comment.api.dto.ModerationActionResponse;
+import com.example.commentdemo.comment.api.dto.ModerationClaimResponse;
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.example.commentdemo.comment.model.ModerationActionType;
+import com.example.commentdemo.comment.security.ActorContext;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Moderation queue and actions.
+ * <p>
+ * {@code comment_moderation_queue} holds only open items. Claims take the oldest unleased or expired rows with
+ * {@code FOR UPDATE SKIP LOCKED} and stamp a lease in the same statement, so moderators working in parallel
+ * each get disjoint batches without waiting on each other; expired leases are also released on a schedule.
+ * Actions update the comments, drop them from the queue, resolve their open reports and append to
+ * {@code moderation_action} in one statement per batch. A queued comment can only be acted on under the
+ * caller's own live lease; if any comment in the batch lacks one, nothing is applied and the call fails with
+ * 409. Comments that are not queued need no lease.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DefaultModerationService implements ModerationService {
+
+    private static final String ROLE_MODERATOR = "comment:moderator";
+    private static final String ROLE_ADMIN = "comment:admin";
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_CLAIM_SIZE = 100;
+    private static final String LIST_STATEMENT = "moderation.list";
+    private static final String LIST_CURSOR_STATEMENT = "moderation.list.cursor";
+    private static final String CLAIM_STATEMENT = "moderation.claim";
+    private static final String APPLY_STATEMENT = "moderation.apply";
+
+    private static final String LIST_SQL = """
+            SELECT id
+            FROM comment
+            WHERE status <> 'published'
+              AND status = ANY(:statuses)
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+            """;
+
+    private static final String LIST_CURSOR_SQL = """
+            SELECT id
+            FROM comment
+            WHERE status <> 'published'
+              AND status = ANY(:statuses)
+              AND (created_at, id) < (:cursorCreatedAt, :cursorId)
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+            """;
+
+    private static final String CLAIM_SQL = """
+            WITH picked AS (
+                SELECT comment_id
+                FROM comment_moderation_queue
+                WHERE lease_until IS NULL
+                   OR lease_until < now()
+                ORDER BY enqueued_at, comment_id
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            )
+            UPDATE comment_moderation_queue q
+            SET claimed_by = :operatorId,
+                lease_until = now() + make_interval(secs => :leaseSeconds)
+            FROM picked
+            WHERE q.comment_id = picked.comment_id
+            RETURNING q.comment_id, q.enqueued_at, q.lease_until
+            """;
+
+    private static final String APPLY_SQL = """
+            WITH input AS (
+                SELECT *
+                FROM unnest(CAST(:commentIds AS bigint[]), CAST(:actions AS text[]),
+                            CAST(:newStatuses AS text[]), CAST(:reasons AS text[]))
+                         WITH ORDINALITY AS t(comment_id, action, new_status, reason, ord)
+            ),
+            queued AS (
+                SELECT q.comment_id, q.claimed_by = :operatorId AND q.lease_until > now() AS leased
+                FROM comment_moderation_queue q
+                JOIN input i ON i.comment_id = q.comment_id
+                FOR UPDATE OF q
+            ),
+            target AS (
+                SELECT i.ord, i.comment_id, i.action, i.new_status, i.reason,
+                       c.subject_id, c.status AS prev_status
+                FROM input i
+                JOIN comment c ON c.id = i.comment_id
+                -- the batch is all or nothing: one queued comment without the caller's lease blocks it
+                WHERE NOT EXISTS (SELECT 1 FROM queued WHERE leased IS NOT TRUE)
+                FOR UPDATE OF c
+            ),
+            changed AS (
+                UPDATE comment c
+                SET status = t.new_status,
+                    deleted_at = CASE WHEN t.new_status = 'deleted' THEN COALESCE(c.deleted_at, now()) END
+                FROM target t
+                WHERE c.id = t.comment_id
+                  AND c.status <> t.new_status
+            ),
+            dequeued AS (
+                DELETE FROM comment_moderation_queue q
+                USING target t
+                WHERE q.comment_id = t.comment_id
+            ),
+            resolved AS (
+                UPDATE comment_report r
+                SET status = CASE WHEN t.action IN ('approve', 'restore') THEN 'rejected' ELSE 'accepted' END
+                FROM target t
+                WHERE r.comment_id = t.comment_id
+                  AND r.status = 'open'
+            ),
+            stats_reset AS (
+                UPDATE comment_report_stats s
+                SET open_count = 0,
+                    reason_counts = '{}'::jsonb
+                FROM target t
+                WHERE s.comment_id = t.comment_id
+                  AND s.open_count > 0
+            ),
+            recorded AS (
+                INSERT INTO moderation_action (comment_id, operator_id, operator_urn, action, reason, prev_status, new_status)
+                SELECT comment_id, :operatorId, :operatorUrn, action, reason, prev_status, new_status
+                FROM target
+                ORDER BY ord
+                RETURNING id, comment_id, operator_id, action, reason, prev_status, new_status, created_at
+            )
+            SELECT 'applied' AS kind, r.id, r.comment_id, r.operator_id, r.action, r.reason,
+                   r.prev_status, r.new_status, r.created_at, t.subject_id
+            FROM recorded r
+            JOIN target t ON t.comment_id = r.comment_id
+            UNION ALL
+            SELECT 'unleased', NULL, comment_id, NULL, NULL, NULL, NULL, NULL, NULL, NULL
+            FROM queued
+            WHERE leased IS NOT TRUE
+            ORDER BY kind, id, comment_id
+            """;
+
+    /**
+     * Same per-comment lock as {@code CommentReportAggregator} takes before folding, so a fold that created the
+     * totals row is committed, and visible, by the time the action statement resets it.
+     */
+    private static final String LOCK_REPORT_STATS_SQL = """
+            SELECT pg_advisory_xact_lock(hashtext('comment_report_stats'), hashint8(id))
+            FROM unnest(CAST(:commentIds AS bigint[])) AS t(id)
+            ORDER BY id
+            """;
+
+    private static final String RELEASE_SQL = """
+            UPDATE comment_moderation_queue
+            SET claimed_by = NULL,
+                lease_until = NULL
+            WHERE lease_until < now()
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final CommentQueryRegistry queryRegistry;
+    private final CommentHydrator commentHydrator;
+    private final CommentMapper commentMapper;
+    private final CommentPageCache pageCache;
+
+    @Value("${comment.moderation.lease:PT5M}")
+    private Duration lease;
+
+    @PostConstruct
+    void registerStatements() {
+        queryRegistry.register(LIST_STATEMENT, LIST_SQL);
+        queryRegistry.register(LIST_CURSOR_STATEMENT, LIST_CURSOR_SQL);
+        queryRegistry.register(CLAIM_STATEMENT, CLAIM_SQL);
+        queryRegistry.register(APPLY_STATEMENT, APPLY_SQL);
+    }
+
+    @Override
+    public Mono<CommentPageResponse> listComments(String status, int limit, String cursor, ActorContext actor) {
+        requireModerator(actor);
+        String[] statuses = statusFilter(status);
+        DefaultCommentService.PageCursor pageCursor = DefaultCommentService.decodeCursor(cursor, DefaultCommentService.TIME_CURSOR_KEY);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(queryRegistry.sql(pageCursor != null ? LIST_CURSOR_STATEMENT : LIST_STATEMENT))
+                .bind("statuses", statuses)
+                .bind("limit", pageSize + 1);
+        if (pageCursor != null) {
+            spec = spec.bind("cursorCreatedAt", pageCursor.createdAt())
+                    .bind("cursorId", pageCursor.id());
+        }
+        return spec.map((row, metadata) -> row.get("id", Long.class))
+                .all()
+                .collectList()
+                .flatMap(ids -> {
+                    boolean hasNext = ids.size() > pageSize;
+                    List<Long> pageIds = hasNext ? ids.subList(0, pageSize) : ids;
+                    return commentHydrator.loadRows(pageIds)
+                            .map(rows -> CommentPageResponse.builder()
+                                    .items(rows.stream().map(this::toResponse).toList())
+                                    .nextCursor(hasNext && !rows.isEmpty()
+                                            ? DefaultCommentService.encodeCursor(null, rows.get(rows.size() - 1))
+                                            : null)
+                                    .build());
+                });
+    }
+
+    @Override
+    public Mono<ModerationClaimResponse> claim(int limit, ActorContext actor) {
+        requireModerator(actor);
+        int batchSize = Math.max(1, Math.min(limit, MAX_CLAIM_SIZE));
+
+        return databaseClient.sql(queryRegistry.sql(CLAIM_STATEMENT))
+                .bind("limit", batchSize)
+                .bind("operatorId", actor.actorId())
+                .bind("leaseSeconds", lease.toSeconds())
+                .map((row, metadata) -> new ClaimedItem(
+                        row.get("comment_id", Long.class),
+                        row.get("enqueued_at", OffsetDateTime.class),
+                        row.get("lease_until", OffsetDateTime.class)))
+                .all()
+                .collectList()
+                .flatMap(claimed -> {
+                    if (claimed.isEmpty()) {
+                        return Mono.just(ModerationClaimResponse.builder().items(List.of()).build());
+                    }
+                    List<ClaimedItem> ordered = new ArrayList<>(claimed);
+                    ordered.sort(Comparator.comparing(ClaimedItem::enqueuedAt).thenComparing(ClaimedItem::commentId));
+                    List<Long> ids = ordered.stream().map(ClaimedItem::commentId).toList();
+                    return commentHydrator.loadRows(ids)
+                            .map(rows -> ModerationClaimResponse.builder()
+                                    .items(rows.stream().map(this::toResponse).toList())
+                                    .leaseExpiresAt(ordered.get(0).leaseUntil())
+                                    .build());
+                });
+    }
+
+    @Override
+    public Mono<ModerationActionResponse> applyAction(Long commentId, ModerationActionRequest request, ActorContext actor) {
+        Assert.notNull(commentId, "commentId must not be null");
+        Assert.notNull(request, "request must not be null");
+        ModerationActionRequest single = request.toBuilder().commentId(commentId).build();
+        return applyActions(List.of(single), actor)
+                .next()
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Comment not found for id %s".formatted(commentId))));
+    }
+
+    @Override
+    public Flux<ModerationActionResponse> applyActions(List<ModerationActionRequest> requests, ActorContext actor) {
+        Assert.notEmpty(requests, "requests must not be empty");
+        requireModerator(actor);
+
+        int size = requests.size();
+        Long[] commentIds = new Long[size];
+        String[] actions = new String[size];
+        String[] newStatuses = new String[size];
+        String[] reasons = new String[size];
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            ModerationActionRequest request = requests.get(i);
+            if (request.getCommentId() == null || request.getAction() == null) {
+                return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "comment_id and action are required"));
+            }
+            if (request.getAction() == ModerationActionType.HOLD) {
+                return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "hold is recorded by automatic moderation only"));
+            }
+            if (!seen.add(request.getCommentId())) {
+                return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Comment %s appears more than once in the batch".formatted(request.getCommentId())));
+            }
+            commentIds[i] = request.getCommentId();
+            actions[i] = request.getAction().getValue();
+            newStatuses[i] = request.getAction().getTargetStatus().getValue();
+            reasons[i] = request.getReason();
+        }
+
+        Mono<List<AppliedAction>> applied = databaseClient.sql(queryRegistry.sql(APPLY_STATEMENT))
+                .bind("commentIds", commentIds)
+                .bind("actions", actions)
+                .bind("newStatuses", newStatuses)
+                .bind("reasons", reasons)
+                .bind("operatorId", actor.actorId())
+                .bind("operatorUrn", actor.actorUrn() != null ? actor.actorUrn() : "")
+                .map((row, metadata) -> "unleased".equals(row.get("kind", String.class))
+                        ? new AppliedAction(null, row.get("comment_id", Long.class), null)
+                        : new AppliedAction(
+                        row.get("subject_id", UUID.class),
+                        row.get("comment_id", Long.class),
+                        ModerationActionResponse.builder()
+                                .id(row.get("id", Long.class))
+                                .commentId(row.get("comment_id", Long.class))
+                                .operatorId(row.get("operator_id", Long.class))
+                                .action(ModerationActionType.fromValue(row.get("action", String.class)))
+                                .reason(row.get("reason", String.class))
+                                .prevStatus(CommentStatus.fromValue(row.get("prev_status", String.class)))
+                                .newStatus(CommentStatus.fromValue(row.get("new_status", String.class)))
+                                .createdAt(row.get("created_at", OffsetDateTime.class))
+                                .build()))
+                .all()
+                .collectList();
+        Mono<Void> locked = databaseClient.sql(LOCK_REPORT_STATS_SQL)
+                .bind("commentIds", commentIds)
+                .then();
+        return transactionalOperator.transactional(locked.then(applied))
+                .flatMapMany(rows -> {
+                    List<Long> unleased = rows.stream()
+                            .filter(row -> row.response() == null)
+                            .map(AppliedAction::commentId)
+                            .toList();
+                    if (!unleased.isEmpty()) {
+                        return Flux.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                                "No live lease held on queued comments %s; claim them first".formatted(unleased)));
+                    }
+                    // data-modifying CTEs run to completion even though only the audit rows are selected
+                    rows.forEach(row -> pageCache.invalidateSubject(row.subjectId()));
+                    return Flux.fromIterable(rows).map(AppliedAction::response);
+                });
+    }
+
+    @Scheduled(initialDelayString = "${comment.moderation.release-interval:PT30S}",
+            fixedDelayString = "${comment.moderation.release-interval:PT30S}")
+    public void releaseExpiredLeases() {
+        databaseClient.sql(RELEASE_SQL)
+                .fetch()
+                .rowsUpdated()
+                .doOnNext(released -> {
+                    if (released > 0) {
+                        log.debug("Released {} expired moderation leases", released);
+                    }
+                })
+                .onErrorResume(ex -> {
+                    log.warn("Moderation lease release failed", ex);
+                    return Mono.empty();
+                })
+                .block(Duration.ofMinutes(1));
+    }
+
+    private CommentResponse toResponse(CommentHydrator.HydratedComment row) {
+        return commentMapper.toResponse(row.entity(), true, null, row.quality(), null);
+    }
+
+    private static String[] statusFilter(String status) {
+        String normalized = status == null ? "pending" : status.toLowerCase(Locale.ROOT);
+        return switch (normalized) {
+            case "pending", "hidden", "spam", "deleted" -> new String[]{normalized};
+            case "all" -> new String[]{"pending", "hidden", "spam", "deleted"};
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported status filter " + status);
+        };
+    }
+
+    private static void requireModerator(ActorContext actor) {
+        if (actor == null || actor.actorId() == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Actor id required for moderation");
+        }
+        if (!actor.hasRole(ROLE_MODERATOR) && !actor.hasRole(ROLE_ADMIN)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Moderation requires the moderator role");
+        }
+    }
+
+    private record ClaimedItem(Long commentId, OffsetDateTime enqueuedAt, OffsetDateTime leaseUntil) {
+    }
+
+    /**
+     * @param response {@code null} for a queued comment the caller holds no live lease on
+     */
+    private record AppliedAction(UUID subjectId, Long commentId, ModerationActionResponse response) {
+    }
+}
@@ -5,30 +5,185 @@ import com.example.commentdemo.comment.api.dto.ReactionToggleRequest;
 import com.example.commentdemo.comment.api.dto.ReactionSummaryResponse.EmojiSummary;
 import com.example.commentdemo.comment.api.dto.ReactionSummaryResponse.MyReaction;
 import com.example.commentdemo.comment.api.dto.ReactionSummaryResponse.Summary;
-import com.example.commentdemo.comment.domain.entity.CommentReactionEntity;
 import com.example.commentdemo.comment.model.ReactionType;
-import com.example.commentdemo.comment.repository.CommentReactionRepository;
 import com.example.commentdemo.comment.security.ActorContext;
+import io.r2dbc.spi.Row;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
-import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class DefaultReactionService implements ReactionService {
 
-    private final CommentReactionRepository reactionRepository;
+    private static final String TOGGLE_STATEMENT = "reaction.toggle";
+    private static final String SUMMARY_STATEMENT = "reaction.summary";
+
+    /**
+     * Applies a toggle, including up/down exclusivity, and reads back the resulting summary in one round trip.
+     * <p>
+     * Votes go through {@code uq_actor_vote_idx}, which allows one up/down row per actor: a vote inserts it,
+     * or flips its type in place through {@code ON CONFLICT DO UPDATE}, so concurrent opposite votes serialize
+     * on that index entry instead of each inserting a row. Emoji resolve duplicates through
+     * {@code uq_actor_reaction_idx}. The returned counters are the flushed counters plus the deltas still
+     * waiting in {@code comment_counter_delta} for this comment, read through
+     * {@code idx_cmt_counter_delta_comment}, plus this statement's own change. The trigger-written delta of
+     * this statement is not visible to its own snapshot, so nothing is counted twice.
+     */
+    private static final String TOGGLE_SQL = """
+            WITH params AS (
+                SELECT :commentId::bigint AS comment_id,
+                       :actorId::bigint   AS actor_id,
+                       NULLIF(:actorUrn::text, '') AS actor_urn,
+                       :type::text        AS type,
+                       :emojiCode::text   AS emoji_key,
+                       :active::boolean   AS active
+            ),
+            target AS (
+                SELECT c.id, c.subject_id, c.parent_id, c.up_count, c.down_count
+                FROM comment c, params p
+                WHERE c.id = p.comment_id
+            ),
+            pending AS (
+                SELECT d.up_delta, d.down_delta, d.emoji_code, d.emoji_delta
+                FROM comment_counter_delta d, target t
+                WHERE d.comment_id = t.id
+            ),
+            removed AS (
+                DELETE FROM comment_reaction r
+                USING params p, target t
+                WHERE NOT p.active
+                  AND r.comment_id = t.id
+                  AND r.actor_id = p.actor_id
+                  AND r.type = p.type
+                  AND COALESCE(r.emoji_code, '') = p.emoji_key
+                RETURNING r.id, r.type, r.emoji_code
+            ),
+            voted AS (
+                INSERT INTO comment_reaction (comment_id, actor_id, actor_urn, type)
+                SELECT t.id, p.actor_id, p.actor_urn, p.type
+                FROM params p, target t
+                WHERE p.active AND p.type IN ('up', 'down')
+                ON CONFLICT (comment_id, actor_id) WHERE type IN ('up', 'down')
+                    DO UPDATE SET type = EXCLUDED.type,
+                                  actor_urn = EXCLUDED.actor_urn,
+                                  created_at = now()
+                    WHERE comment_reaction.type <> EXCLUDED.type
+                -- xmax is set on the row version written by the DO UPDATE branch
+                RETURNING id, type, emoji_code, xmax <> 0 AS flipped
+            ),
+            reacted AS (
+                INSERT INTO comment_reaction (comment_id, actor_id, actor_urn, type, emoji_code)
+                SELECT t.id, p.actor_id, p.actor_urn, p.type, p.emoji_key
+                FROM params p, target t
+                WHERE p.active AND p.type = 'emoji'
+                ON CONFLICT (comment_id, actor_id, type, COALESCE(emoji_code, '')) DO NOTHING
+                RETURNING id, type, emoji_code
+            ),
+            added AS (
+                SELECT id, type, emoji_code FROM voted
+                UNION ALL
+                SELECT id, type, emoji_code FROM reacted
+            ),
+            change AS (
+                SELECT type, emoji_code, 1 AS sign FROM added
+                UNION ALL
+                SELECT CASE type WHEN 'up' THEN 'down' ELSE 'up' END, NULL, -1 FROM voted WHERE flipped
+                UNION ALL
+                SELECT type, emoji_code, -1 FROM removed
+            ),
+            emoji AS (
+                SELECT emoji_code, SUM(n)::int AS n
+                FROM (SELECT e.emoji_code, e.count AS n
+                      FROM comment_emoji_count e, target t
+                      WHERE e.comment_id = t.id
+                      UNION ALL
+                      SELECT emoji_code, emoji_delta FROM pending WHERE emoji_code IS NOT NULL
+                      UNION ALL
+                      SELECT emoji_code, sign FROM change WHERE type = 'emoji') x
+                GROUP BY emoji_code
+                HAVING SUM(n) > 0
+            ),
+            mine AS (
+                SELECT r.type, r.emoji_code
+                FROM comment_reaction r, params p
+                WHERE r.comment_id = p.comment_id
+                  AND r.actor_id = p.actor_id
+                  AND r.id NOT IN (SELECT id FROM removed UNION ALL SELECT id FROM added)
+                UNION
+                SELECT type, emoji_code FROM added
+            )
+            SELECT t.subject_id,
+                   t.parent_id,
+                   GREATEST(t.up_count
+                                + COALESCE((SELECT SUM(up_delta) FROM pending), 0)
+                                + COALESCE((SELECT SUM(sign) FROM change WHERE type = 'up'), 0), 0)::int   AS up,
+                   GREATEST(t.down_count
+                                + COALESCE((SELECT SUM(down_delta) FROM pending), 0)
+                                + COALESCE((SELECT SUM(sign) FROM change WHERE type = 'down'), 0), 0)::int AS down,
+                   (SELECT array_agg(emoji_code ORDER BY emoji_code) FROM emoji)               AS emoji_codes,
+                   (SELECT array_agg(n ORDER BY emoji_code) FROM emoji)                        AS emoji_counts,
+                   EXISTS (SELECT 1 FROM mine WHERE type = 'up')                               AS my_up,
+                   EXISTS (SELECT 1 FROM mine WHERE type = 'down')                             AS my_down,
+                   (SELECT array_agg(DISTINCT emoji_code) FROM mine WHERE type = 'emoji')      AS my_emoji
+            FROM target t
+            """;
+
+    /**
+     * Reads a summary from the denormalized counters and the per-emoji rows of {@code comment_emoji_count} only;
+     * unflushed deltas become visible once {@code ReactionCounterAggregator} folds them. The viewer's own
+     * reactions come from a probe on the {@code (comment_id, actor_id)} prefix of {@code uq_actor_reaction_idx}.
+     * Cost grows with the number of distinct emoji on the comment, not with reaction volume or the flush backlog.
+     */
+    private static final String SUMMARY_SQL = """
+            WITH target AS (
+                SELECT id, up_count, down_count
+                FROM comment
+                WHERE id = :commentId
+            ),
+            emoji AS (
+                SELECT e.emoji_code, e.count AS n
+                FROM comment_emoji_count e, target t
+                WHERE e.comment_id = t.id
+                  AND e.count > 0
+            ),
+            mine AS (
+                SELECT r.type, r.emoji_code
+                FROM comment_reaction r, target t
+                WHERE r.comment_id = t.id
+                  AND r.actor_id = :actorId::bigint
+            )
+            SELECT t.up_count::int                                                        AS up,
+                   t.down_count::int                                                      AS down,
+                   (SELECT array_agg(emoji_code ORDER BY emoji_code) FROM emoji)          AS emoji_codes,
+                   (SELECT array_agg(n ORDER BY emoji_code) FROM emoji)                   AS emoji_counts,
+                   EXISTS (SELECT 1 FROM mine WHERE type = 'up')                          AS my_up,
+                   EXISTS (SELECT 1 FROM mine WHERE type = 'down')                        AS my_down,
+                   (SELECT array_agg(DISTINCT emoji_code) FROM mine WHERE type = 'emoji') AS my_emoji
+            FROM target t
+            """;
+
+    private final CommentPageCache pageCache;
+    private final DatabaseClient databaseClient;
+    private final CommentQueryRegistry queryRegistry;
+
+    @PostConstruct
+    void registerStatements() {
+        queryRegistry.register(TOGGLE_STATEMENT, TOGGLE_SQL);
+        queryRegistry.register(SUMMARY_STATEMENT, SUMMARY_SQL);
+    }
 
     @Override
     public Mono<ReactionSummaryResponse> toggleReaction(Long commentId, ReactionType type, ReactionToggleRequest request, ActorContext actor) {
@@ -44,33 +199,26 @@ public class DefaultReactionService implements ReactionService {
             boolean activate = Boolean.TRUE.equals(request.getActive());
             String emojiCode = resolveEmojiCode(type, request);
 
-            Mono<Void> exclusivity = Mono.empty();
-            if (activate && (type == ReactionType.UP || type == ReactionType.DOWN)) {
-                ReactionType opposite = type == ReactionType.UP ? ReactionType.DOWN : ReactionType.UP;
-                exclusivity = reactionRepository.findByCommentIdAndActorIdAndTypeAndEmojiCode(commentId, actor.actorId(), opposite, null)
-                        .flatMap(reactionRepository::delete)
-                        .then();
-            }
-
-            Mono<CommentReactionEntity> upsertMono = reactionRepository.findByCommentIdAndActorIdAndTypeAndEmojiCode(commentId, actor.actorId(), type, emojiCode)
-                    .flatMap(existing -> activate
-                            ? Mono.just(existing)
-                            : reactionRepository.delete(existing).then(Mono.<CommentReactionEntity>empty()))
-                    .switchIfEmpty(Mono.defer(() -> {
-                        if (!activate) {
-                            return Mono.empty();
+            return databaseClient.sql(queryRegistry.sql(TOGGLE_STATEMENT))
+                    .bind("commentId", commentId)
+                    .bind("actorId", actor.actorId())
+                    .bind("actorUrn", actor.actorUrn() != null ? actor.actorUrn() : "")
+                    .bind("type", type.getValue())
+                    .bind("emojiCode", emojiCode != null ? emojiCode : "")
+                    .bind("active", activate)
+                    .map((row, metadata) -> new ToggleResult(
+                            row.get("subject_id", UUID.class),
+                            row.get("parent_id", Long.class),
+                            toSummaryResponse(row)))
+                    .one()
+                    .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Comment not found for id %s".formatted(commentId))))
+                    .map(result -> {
+                        // replies never appear on cached top-level pages
+                        if (result.parentId() == null) {
+                            pageCache.invalidateSubject(result.subjectId());
                         }
-                        var entity = CommentReactionEntity.builder()
-                                .commentId(commentId)
-                                .actorId(actor.actorId())
-                                .actorUrn(actor.actorUrn())
-                                .type(type)
-                                .emojiCode(emojiCode)
-                                .createdAt(OffsetDateTime.now())
-                                .build();
-                        return reactionRepository.save(entity);
-                    }));
-            return exclusivity.then(upsertMono).then(getReactions(commentId, actor));
+                        return result.response();
+                    });
         });
     }
 
@@ -78,9 +226,12 @@ public class DefaultReactionService implements ReactionService {
     public Mono<ReactionSummaryResponse> getReactions(Long commentId, ActorContext actor) {
         Assert.notNull(commentId, "commentId must not be null");
         Long actorId = actor != null ? actor.actorId() : null;
-        return reactionRepository.findByCommentId(commentId)
-                .collectList()
-                .map(entities -> toSummaryResponse(entities, actorId));
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(queryRegistry.sql(SUMMARY_STATEMENT))
+                .bind("commentId", commentId);
+        spec = actorId != null ? spec.bind("actorId", actorId) : spec.bindNull("actorId", Long.class);
+        return spec.map((row, metadata) -> toSummaryResponse(row))
+                .one()
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Comment not found for id %s".formatted(commentId))));
     }
 
     private String resolveEmojiCode(ReactionType type, ReactionToggleRequest request) {
@@ -97,55 +248,34 @@ public class DefaultReactionService implements ReactionService {
         return null;
     }
 
-    private ReactionSummaryResponse toSummaryResponse(List<CommentReactionEntity> entities, Long actorId) {
-        int upCount = (int) entities.stream()
-                .filter(entity -> entity.getType() == ReactionType.UP)
-                .count();
-        int downCount = (int) entities.stream()
-                .filter(entity -> entity.getType() == ReactionType.DOWN)
-                .count();
-
-        Map<String, Long> emojiCounts = entities.stream()
-                .filter(entity -> entity.getType() == ReactionType.EMOJI && StringUtils.hasText(entity.getEmojiCode()))
-                .collect(Collectors.groupingBy(entity -> entity.getEmojiCode().trim(), Collectors.counting()));
-
-        List<EmojiSummary> emojiSummary = emojiCounts.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey(Comparator.naturalOrder()))
-                .map(entry -> EmojiSummary.builder()
-                        .code(entry.getKey())
-                        .count(entry.getValue().intValue())
-                        .build())
-                .toList();
-
-        boolean myUp = actorId != null && entities.stream()
-                .anyMatch(entity -> entity.getType() == ReactionType.UP && Objects.equals(actorId, entity.getActorId()));
-        boolean myDown = actorId != null && entities.stream()
-                .anyMatch(entity -> entity.getType() == ReactionType.DOWN && Objects.equals(actorId, entity.getActorId()));
-        List<String> myEmoji = actorId != null
-                ? entities.stream()
-                .filter(entity -> entity.getType() == ReactionType.EMOJI && Objects.equals(actorId, entity.getActorId()))
-                .map(entity -> entity.getEmojiCode() != null ? entity.getEmojiCode().trim() : null)
-                .filter(StringUtils::hasText)
-                .distinct()
-                .sorted()
-                .toList()
-                : List.of();
+    static ReactionSummaryResponse toSummaryResponse(Row row) {
+        String[] codes = row.get("emoji_codes", String[].class);
+        Integer[] counts = row.get("emoji_counts", Integer[].class);
+        List<EmojiSummary> emoji = new ArrayList<>();
+        if (codes != null && counts != null) {
+            for (int i = 0; i < codes.length; i++) {
+                emoji.add(EmojiSummary.builder().code(codes[i]).count(counts[i]).build());
+            }
+            emoji.sort(Comparator.comparing(EmojiSummary::code));
+        }
+        String[] myEmoji = row.get("my_emoji", String[].class);
 
         var summary = Summary.builder()
-                .up(upCount)
-                .down(downCount)
-                .emoji(emojiSummary)
+                .up(row.get("up", Integer.class))
+                .down(row.get("down", Integer.class))
+                .emoji(emoji)
                 .build();
-
         var myReaction = MyReaction.builder()
-                .up(myUp)
-                .down(myDown)
-                .emoji(myEmoji)
+                .up(Boolean.TRUE.equals(row.get("my_up", Boolean.class)))
+                .down(Boolean.TRUE.equals(row.get("my_down", Boolean.class)))
+                .emoji(myEmoji != null ? Arrays.stream(myEmoji).sorted().toList() : List.of())
                 .build();
-
         return ReactionSummaryResponse.builder()
                 .summary(summary)
                 .myReaction(myReaction)
                 .build();
     }
+
+    private record ToggleResult(UUID subjectId, Long parentId, ReactionSummaryResponse response) {
+    }
 }
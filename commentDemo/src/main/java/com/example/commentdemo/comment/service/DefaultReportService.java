@@ -0,0 +1,109 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.ReportCreateRequest;
+import com.example.commentdemo.comment.api.dto.ReportReceiptResponse;
+import com.example.commentdemo.comment.security.ActorContext;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.Locale;
+
+/**
+ * Report intake. Each report is a single insert guarded by {@code uq_cmt_report_reporter}; per-comment
+ * totals are folded in batches by {@code CommentReportAggregator}, so a brigaded comment never turns into
+ * a hot row on the request path.
+ */
+@Service
+@RequiredArgsConstructor
+public class DefaultReportService implements ReportService {
+
+    private static final int MAX_METADATA_LENGTH = 4096;
+    private static final String INSERT_STATEMENT = "report.insert";
+    private static final String LOOKUP_STATEMENT = "report.lookup";
+
+    private static final String INSERT_SQL = """
+            INSERT INTO comment_report (comment_id, reporter_id, reporter_urn, reason, metadata)
+            SELECT c.id, :reporterId, NULLIF(:reporterUrn, ''), :reason, CAST(NULLIF(:metadata, '') AS jsonb)
+            FROM comment c
+            WHERE c.id = :commentId
+              AND c.status <> 'deleted'
+            ON CONFLICT (comment_id, reporter_id) DO NOTHING
+            RETURNING id
+            """;
+
+    private static final String LOOKUP_SQL = """
+            SELECT id
+            FROM comment_report
+            WHERE comment_id = :commentId
+              AND reporter_id = :reporterId
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final CommentQueryRegistry queryRegistry;
+    private final ObjectMapper objectMapper;
+
+    @PostConstruct
+    void registerStatements() {
+        queryRegistry.register(INSERT_STATEMENT, INSERT_SQL);
+        queryRegistry.register(LOOKUP_STATEMENT, LOOKUP_SQL);
+    }
+
+    @Override
+    public Mono<ReportReceiptResponse> report(Long commentId, ReportCreateRequest request, ActorContext actor) {
+        Assert.notNull(commentId, "commentId must not be null");
+        Assert.notNull(request, "request must not be null");
+        if (actor == null || actor.actorId() == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Actor id required to report"));
+        }
+        String metadata = metadataJson(request);
+
+        return databaseClient.sql(queryRegistry.sql(INSERT_STATEMENT))
+                .bind("commentId", commentId)
+                .bind("reporterId", actor.actorId())
+                .bind("reporterUrn", actor.actorUrn() != null ? actor.actorUrn() : "")
+                .bind("reason", request.getReason().toLowerCase(Locale.ROOT))
+                .bind("metadata", metadata)
+                .map((row, rowMetadata) -> new ReportReceiptResponse(row.get("id", Long.class), true))
+                .one()
+                // a conflict, or a missing comment; the lookup runs on a fresh snapshot and sees concurrent winners
+                .switchIfEmpty(Mono.defer(() -> lookup(commentId, actor.actorId())))
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Comment not found for id %s".formatted(commentId))));
+    }
+
+    private Mono<ReportReceiptResponse> lookup(Long commentId, Long reporterId) {
+        return databaseClient.sql(queryRegistry.sql(LOOKUP_STATEMENT))
+                .bind("commentId", commentId)
+                .bind("reporterId", reporterId)
+                .map((row, metadata) -> new ReportReceiptResponse(row.get("id", Long.class), false))
+                .one();
+    }
+
+    private String metadataJson(ReportCreateRequest request) {
+        if (request.getMetadata() == null || request.getMetadata().isNull()) {
+            return "";
+        }
+        if (!request.getMetadata().isObject()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "metadata must be a JSON object");
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(request.getMetadata());
+        } catch (JsonProcessingException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "metadata is not valid JSON", ex);
+        }
+        if (json.length() > MAX_METADATA_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "metadata must be at most %d characters".formatted(MAX_METADATA_LENGTH));
+        }
+        return json;
+    }
+}
@@ -166,14 +166,13 @@ public class DefaultSubjectService implements SubjectService {
     }
 
     private Flux<SubjectMetricsResponse.TopContributor> computeTopContributors(UUID subjectId) {
+        // folded from fn_subject_metrics deltas by SubjectMetricsAggregator; the top rows come straight off idx_cmt_contributor_top
         var sql = """
-                SELECT author_id AS actor_id, COUNT(*) AS contribution_count
-                FROM comment
+                SELECT author_id AS actor_id, visible_count AS contribution_count
+                FROM comment_contributor_stat
                 WHERE subject_id = :subjectId
-                  AND status = 'published'
-                  AND deleted_at IS NULL
-                GROUP BY author_id
-                ORDER BY contribution_count DESC, actor_id ASC
+                  AND visible_count > 0
+                ORDER BY visible_count DESC, author_id ASC
                 LIMIT %d
                 """.formatted(TOP_CONTRIBUTOR_LIMIT);
         return databaseClient.sql(sql)
@@ -190,19 +189,21 @@ public class DefaultSubjectService implements SubjectService {
     }
 
     private Mono<Integer> computeP95Latency(UUID subjectId) {
+        // walks the subject's log-bucketed latency histogram; the result is within about 2.5% of the exact value
         var sql = """
                 SELECT COALESCE(
-                    PERCENTILE_DISC(0.95) WITHIN GROUP (ORDER BY latency_ms),
+                    (SELECT latency_bucket_value(bucket)
+                     FROM (SELECT bucket,
+                                  SUM(count) OVER (ORDER BY bucket) AS cumulative,
+                                  SUM(count) OVER () AS total
+                           FROM comment_latency_histogram
+                           WHERE subject_id = :subjectId
+                             AND count > 0) histogram
+                     WHERE cumulative >= 0.95 * total
+                     ORDER BY bucket
+                     LIMIT 1),
                     0
                 ) AS latency_ms
-                FROM (
-                    SELECT EXTRACT(EPOCH FROM (c.created_at - cs.created_at)) * 1000 AS latency_ms
-                    FROM comment c
-                    JOIN comment_subject cs ON cs.subject_id = c.subject_id
-                    WHERE c.subject_id = :subjectId
-                      AND c.status = 'published'
-                      AND c.deleted_at IS NULL
-                ) metrics
                 """;
         return databaseClient.sql(sql)
                 .bind("subjectId", subjectId)
@@ -0,0 +1,32 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.CommentPageResponse;
+import com.example.commentdemo.comment.api.dto.ModerationActionRequest;
+import com.example.commentdemo.comment.api.dto.ModerationActionResponse;
+import com.example.commentdemo.comment.api.dto.ModerationClaimResponse;
+import com.example.commentdemo.comment.security.ActorContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface ModerationService {
+
+    /**
+     * Browses non-published comments newest first. Read-only; does not claim anything.
+     */
+    Mono<CommentPageResponse> listComments(String status, int limit, String cursor, ActorContext actor);
+
+    /**
+     * Leases up to {@code limit} unclaimed queue items to the calling moderator, oldest first. Items locked or
+     * leased by other moderators are skipped, so concurrent claims never return the same comment.
+     */
+    Mono<ModerationClaimResponse> claim(int limit, ActorContext actor);
+
+    Mono<ModerationActionResponse> applyAction(Long commentId, ModerationActionRequest request, ActorContext actor);
+
+    /**
+     * Applies all actions and records them in one statement; unknown comments are skipped.
+     */
+    Flux<ModerationActionResponse> applyActions(List<ModerationActionRequest> requests, ActorContext actor);
+}
@@ -0,0 +1,14 @@
+package com.example.commentdemo.comment.service;
+
+import com.example.commentdemo.comment.api.dto.ReportCreateRequest;
+import com.example.commentdemo.comment.api.dto.ReportReceiptResponse;
+import com.example.commentdemo.comment.security.ActorContext;
+import reactor.core.publisher.Mono;
+
+public interface ReportService {
+
+    /**
+     * Records a report once per (comment, reporter); repeats return the existing report.
+     */
+    Mono<ReportReceiptResponse> report(Long commentId, ReportCreateRequest request, ActorContext actor);
+}
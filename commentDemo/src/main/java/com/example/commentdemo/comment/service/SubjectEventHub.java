@@ -0,0 +1,174 @@
+package com.example.commentdemo.comment.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.postgresql.api.Notification;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node-local fan-out of subject events.
+ * <p>
+ * A single dedicated connection LISTENs on {@code comment_events}; every notification is dispatched to one
+ * shared multicast sink per subject that currently has subscribers. Each subscriber gets a bounded buffer and
+ * is dropped with an overflow error when it falls behind, so a slow client never holds up the others.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SubjectEventHub {
+
+    static final String CHANNEL = "comment_events";
+
+    private final ConnectionFactory connectionFactory;
+    private final ObjectMapper objectMapper;
+    private final CommentPageCache pageCache;
+    private final DatabaseClient databaseClient;
+    private final Map<UUID, SubjectChannel> channels = new ConcurrentHashMap<>();
+
+    @Value("${comment.events.subscriber-buffer:256}")
+    private int subscriberBuffer;
+
+    @Value("${comment.events.retention:PT24H}")
+    private Duration retention;
+
+    private volatile Disposable listener;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        listener = listen()
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Lost {} listener, reconnecting", CHANNEL, signal.failure())))
+                .subscribe(this::dispatch);
+    }
+
+    @PreDestroy
+    public void stop() {
+        Disposable current = listener;
+        if (current != null) {
+            current.dispose();
+        }
+        channels.values().forEach(channel -> channel.sink.tryEmitComplete());
+    }
+
+    /**
+     * Hot stream of events for the subject, starting from the moment of subscription.
+     */
+    public Flux<CommentEvent> subscribe(UUID subjectId) {
+        return Flux.defer(() -> {
+            SubjectChannel channel = channels.compute(subjectId, (id, existing) -> {
+                SubjectChannel resolved = existing != null ? existing : new SubjectChannel();
+                resolved.subscribers++;
+                return resolved;
+            });
+            return channel.sink.asFlux()
+                    .onBackpressureBuffer(subscriberBuffer, dropped -> {
+                    }, BufferOverflowStrategy.ERROR)
+                    .doFinally(signal -> release(subjectId));
+        });
+    }
+
+    @Scheduled(initialDelayString = "${comment.events.purge-interval:PT10M}",
+            fixedDelayString = "${comment.events.purge-interval:PT10M}")
+    public void purgeExpired() {
+        databaseClient.sql("DELETE FROM comment_event WHERE created_at < now() - make_interval(secs => :retentionSeconds)")
+                .bind("retentionSeconds", retention.toSeconds())
+                .fetch()
+                .rowsUpdated()
+                .doOnNext(purged -> log.debug("Purged {} expired comment events", purged))
+                .onErrorResume(ex -> {
+                    log.warn("Comment event purge failed", ex);
+                    return Mono.empty();
+                })
+                .block(Duration.ofMinutes(1));
+    }
+
+    private Flux<CommentEvent> listen() {
+        // LISTEN needs a long-lived session of its own; take it from the raw driver rather than the pool
+        return Flux.usingWhen(
+                Mono.from(unpooled(connectionFactory).create()),
+                connection -> {
+                    if (!(connection instanceof PostgresqlConnection postgres)) {
+                        return Flux.error(new IllegalStateException("Subject events require an r2dbc-postgresql connection"));
+                    }
+                    return postgres.createStatement("LISTEN " + CHANNEL)
+                            .execute()
+                            .flatMap(result -> result.getRowsUpdated())
+                            .thenMany(postgres.getNotifications())
+                            .map(Notification::getParameter)
+                            .mapNotNull(this::parse);
+                },
+                Connection::close);
+    }
+
+    private void dispatch(CommentEvent event) {
+        // writes handled by other nodes reach this node's page cache through the same channel
+        if (event.topLevel()) {
+            pageCache.invalidateSubject(event.subjectId());
+        }
+        SubjectChannel channel = channels.get(event.subjectId());
+        if (channel != null) {
+            channel.sink.tryEmitNext(event);
+        }
+    }
+
+    private void release(UUID subjectId) {
+        channels.computeIfPresent(subjectId, (id, channel) -> --channel.subscribers == 0 ? null : channel);
+    }
+
+    private CommentEvent parse(String payload) {
+        if (payload == null) {
+            return null;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(payload);
+            return new CommentEvent(
+                    node.path("id").asLong(),
+                    UUID.fromString(node.path("subject_id").asText()),
+                    node.path("type").asText(),
+                    node.path("top_level").asBoolean(),
+                    node.path("data").toString());
+        } catch (IOException | IllegalArgumentException ex) {
+            log.warn("Ignoring malformed {} payload: {}", CHANNEL, payload, ex);
+            return null;
+        }
+    }
+
+    private static ConnectionFactory unpooled(ConnectionFactory factory) {
+        ConnectionFactory current = factory;
+        while (current instanceof Wrapped<?> wrapped && wrapped.unwrap() instanceof ConnectionFactory inner && inner != current) {
+            current = inner;
+        }
+        return current;
+    }
+
+    private static final class SubjectChannel {
+
+        private final Sinks.Many<CommentEvent> sink = Sinks.many().multicast().directBestEffort();
+        private int subscribers;
+    }
+}
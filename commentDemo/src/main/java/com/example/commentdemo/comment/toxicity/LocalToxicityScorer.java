@@ -0,0 +1,65 @@
+package com.example.commentdemo.comment.toxicity;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Deterministic stand-in model: scores from a small insult lexicon plus shouting, with no I/O.
+ * <p>
+ * Meant for local runs and tests, where the same body must always get the same score. Active unless
+ * {@code comment.toxicity.scorer} names another implementation.
+ */
+@Component
+@ConditionalOnProperty(name = "comment.toxicity.scorer", havingValue = "local", matchIfMissing = true)
+public class LocalToxicityScorer implements ToxicityScorer {
+
+    private static final List<String> LEXICON = List.of(
+            "idiot", "stupid", "moron", "trash", "hate you", "shut up", "kill yourself",
+            // Chinese equivalents, escaped to keep sources ASCII
+            "\u767d\u75f4", "\u50bb\u903c", "\u5783\u573e", "\u5e9f\u7269", "\u53bb\u6b7b");
+
+    @Override
+    public Mono<List<Double>> score(List<String> texts) {
+        return Mono.fromSupplier(() -> texts.stream().map(LocalToxicityScorer::scoreOne).toList());
+    }
+
+    static double scoreOne(String text) {
+        if (text == null || text.isBlank()) {
+            return 0d;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int hits = 0;
+        for (String term : LEXICON) {
+            for (int at = lower.indexOf(term); at >= 0; at = lower.indexOf(term, at + term.length())) {
+                hits++;
+            }
+        }
+        double score = 1 - Math.exp(-0.8 * hits);
+        if (isShouting(text)) {
+            score += 0.1;
+        }
+        if (text.contains("!!!")) {
+            score += 0.05;
+        }
+        return Math.round(Math.min(1d, score) * 1000) / 1000d;
+    }
+
+    private static boolean isShouting(String text) {
+        int letters = 0;
+        int upper = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (Character.isLetter(ch) && ch < 128) {
+                letters++;
+                if (Character.isUpperCase(ch)) {
+                    upper++;
+                }
+            }
+        }
+        return letters >= 8 && upper * 10 >= letters * 7;
+    }
+}
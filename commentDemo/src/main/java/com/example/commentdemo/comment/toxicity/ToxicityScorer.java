@@ -0,0 +1,17 @@
+package com.example.commentdemo.comment.toxicity;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Model that rates comment bodies for toxicity. Implementations may call a remote service; the pipeline
+ * bounds how many calls are in flight and how long each may take.
+ */
+public interface ToxicityScorer {
+
+    /**
+     * Scores each text between 0 (benign) and 1 (toxic), returning one score per text in input order.
+     */
+    Mono<List<Double>> score(List<String> texts);
+}
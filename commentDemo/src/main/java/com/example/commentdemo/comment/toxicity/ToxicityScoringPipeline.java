@@ -0,0 +1,217 @@
+package com.example.commentdemo.comment.toxicity;
+
+import com.example.commentdemo.comment.service.CommentPageCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scores comments for toxicity in the background, so posting never waits on the model.
+ * <p>
+ * Each run walks unscored comments by id in batches and hands them to the {@link ToxicityScorer}. At most
+ * {@code comment.toxicity.concurrency} batches are with the scorer at once, and the next page is only read
+ * when one of them finishes, so a slow model slows the walk instead of piling up work. A batch that fails
+ * or exceeds {@code scorer-timeout} is left unscored for the next run. Scores are written back with one
+ * statement per batch. The write skips comments whose body changed since they were read; an edit clears the
+ * score through {@code trg_cmt_toxicity_reset}. The same statement applies the subject policy: a published
+ * comment scoring at least {@code toxicity.hide_at} is hidden, at least {@code toxicity.pending_at} is set to
+ * pending, which puts it on the moderation queue; both moves are audited. Bodies are hashed as
+ * {@code md5(COALESCE(body_md, ''))}, so a comment without a body is scored once like an empty one.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ToxicityScoringPipeline {
+
+    private static final String PAGE_SQL = """
+            SELECT id, body_md, md5(COALESCE(body_md, '')) AS body_hash
+            FROM comment
+            WHERE toxicity_score IS NULL
+              AND status <> 'deleted'
+              AND id > :afterId
+            ORDER BY id
+            LIMIT :batchSize
+            """;
+
+    private static final String WRITE_SQL = """
+            WITH input AS (
+                SELECT *
+                FROM unnest(CAST(:ids AS bigint[]), CAST(:scores AS float8[]), CAST(:hashes AS text[]))
+                         AS t(id, score, body_hash)
+            ),
+            target AS (
+                SELECT i.id, i.body_hash, round(i.score::numeric, 3) AS score, c.status AS prev_status,
+                       CASE WHEN jsonb_typeof(s.policy #> '{toxicity,hide_at}') = 'number'
+                            THEN (s.policy #>> '{toxicity,hide_at}')::numeric END AS hide_at,
+                       CASE WHEN jsonb_typeof(s.policy #> '{toxicity,pending_at}') = 'number'
+                            THEN (s.policy #>> '{toxicity,pending_at}')::numeric END AS pending_at
+                FROM input i
+                JOIN comment c ON c.id = i.id
+                JOIN comment_subject s ON s.subject_id = c.subject_id
+            ),
+            scored AS (
+                UPDATE comment c
+                SET toxicity_score = t.score,
+                    status = CASE WHEN c.status <> 'published' THEN c.status
+                                  WHEN t.score >= t.hide_at THEN 'hidden'
+                                  WHEN t.score >= t.pending_at THEN 'pending'
+                                  ELSE c.status END
+                FROM target t
+                WHERE c.id = t.id
+                  AND c.toxicity_score IS NULL
+                  AND md5(COALESCE(c.body_md, '')) = t.body_hash
+                RETURNING c.id, c.subject_id, c.status AS new_status, c.toxicity_score, t.prev_status
+            ),
+            audited AS (
+                -- operator 0 marks system actions
+                INSERT INTO moderation_action (comment_id, operator_id, operator_urn, action, reason, prev_status, new_status)
+                SELECT id, 0, 'system:toxicity', CASE new_status WHEN 'hidden' THEN 'hide' ELSE 'hold' END,
+                       format('toxicity score %s', toxicity_score), prev_status, new_status
+                FROM scored
+                WHERE new_status IN ('hidden', 'pending') AND new_status <> prev_status
+            )
+            SELECT subject_id,
+                   COUNT(*) AS scored,
+                   COUNT(*) FILTER (WHERE new_status <> prev_status) AS moved
+            FROM scored
+            GROUP BY subject_id
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final ToxicityScorer scorer;
+    private final CommentPageCache pageCache;
+
+    @Value("${comment.toxicity.enabled:true}")
+    private boolean enabled;
+
+    @Value("${comment.toxicity.batch-size:100}")
+    private int batchSize;
+
+    @Value("${comment.toxicity.max-batches:50}")
+    private int maxBatches;
+
+    @Value("${comment.toxicity.concurrency:2}")
+    private int concurrency;
+
+    @Value("${comment.toxicity.scorer-timeout:PT10S}")
+    private Duration scorerTimeout;
+
+    @Value("${comment.toxicity.timeout:PT2M}")
+    private Duration timeout;
+
+    @Scheduled(initialDelayString = "${comment.toxicity.interval:PT10S}",
+            fixedDelayString = "${comment.toxicity.interval:PT10S}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        Long scored = unscoredPages()
+                .flatMap(this::scoreBatch, concurrency)
+                .reduce(0L, Long::sum)
+                .timeout(timeout)
+                .onErrorResume(ex -> {
+                    log.warn("Toxicity scoring run failed", ex);
+                    return Mono.empty();
+                })
+                .block();
+        if (scored != null && scored > 0) {
+            log.debug("Scored {} comments for toxicity", scored);
+        }
+    }
+
+    /**
+     * Pages are read lazily: {@code repeat} only re-subscribes when the downstream asks for another batch.
+     */
+    private Flux<List<Unscored>> unscoredPages() {
+        AtomicLong cursor = new AtomicLong();
+        return Mono.defer(() -> fetchPage(cursor.get()))
+                .doOnNext(page -> {
+                    if (!page.isEmpty()) {
+                        cursor.set(page.get(page.size() - 1).id());
+                    }
+                })
+                .repeat(maxBatches - 1)
+                .takeUntil(page -> page.size() < batchSize)
+                .filter(page -> !page.isEmpty());
+    }
+
+    private Mono<List<Unscored>> fetchPage(long afterId) {
+        return databaseClient.sql(PAGE_SQL)
+                .bind("afterId", afterId)
+                .bind("batchSize", batchSize)
+                .map((row, metadata) -> new Unscored(
+                        row.get("id", Long.class),
+                        row.get("body_md", String.class),
+                        row.get("body_hash", String.class)))
+                .all()
+                .collectList();
+    }
+
+    private Mono<Long> scoreBatch(List<Unscored> batch) {
+        return scorer.score(batch.stream().map(Unscored::body).toList())
+                .timeout(scorerTimeout)
+                .flatMap(scores -> {
+                    if (scores.size() != batch.size()) {
+                        return Mono.error(new IllegalStateException(
+                                "Scorer returned %d scores for %d comments".formatted(scores.size(), batch.size())));
+                    }
+                    return write(batch, scores);
+                })
+                .onErrorResume(ex -> {
+                    log.warn("Toxicity scoring failed for {} comments from id {}; retrying next run",
+                            batch.size(), batch.get(0).id(), ex);
+                    return Mono.just(0L);
+                });
+    }
+
+    private Mono<Long> write(List<Unscored> batch, List<Double> scores) {
+        int size = batch.size();
+        Long[] ids = new Long[size];
+        Double[] clamped = new Double[size];
+        String[] hashes = new String[size];
+        for (int i = 0; i < size; i++) {
+            Unscored comment = batch.get(i);
+            Double score = scores.get(i);
+            if (score == null || score.isNaN()) {
+                throw new IllegalStateException("Scorer returned no score for comment " + comment.id());
+            }
+            ids[i] = comment.id();
+            clamped[i] = Math.max(0d, Math.min(1d, score));
+            hashes[i] = comment.bodyHash();
+        }
+        return databaseClient.sql(WRITE_SQL)
+                .bind("ids", ids)
+                .bind("scores", clamped)
+                .bind("hashes", hashes)
+                .map((row, metadata) -> new WriteResult(
+                        row.get("subject_id", UUID.class),
+                        row.get("scored", Long.class),
+                        row.get("moved", Long.class)))
+                .all()
+                .doOnNext(result -> {
+                    // cached pages carry toxicity_score, and moved comments leave them entirely
+                    pageCache.invalidateSubject(result.subjectId());
+                    if (result.moved() != null && result.moved() > 0) {
+                        log.info("Toxicity policy moved {} comments on subject {}", result.moved(), result.subjectId());
+                    }
+                })
+                .map(result -> result.scored() != null ? result.scored() : 0L)
+                .reduce(0L, Long::sum);
+    }
+
+    private record Unscored(Long id, String body, String bodyHash) {
+    }
+
+    private record WriteResult(UUID subjectId, Long scored, Long moved) {
+    }
+}
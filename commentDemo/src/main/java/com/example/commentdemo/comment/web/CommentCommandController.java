@@ -1,9 +1,12 @@
 package com.example.commentdemo.comment.web;
 
 import com.example.commentdemo.comment.api.dto.CommentCreateRequest;
+import com.example.commentdemo.comment.api.dto.CommentImportResponse;
 import com.example.commentdemo.comment.api.dto.CommentResponse;
 import com.example.commentdemo.comment.api.dto.CommentUpdateRequest;
 import com.example.commentdemo.comment.security.ActorContextResolver;
+import com.example.commentdemo.comment.service.CommentEtags;
+import com.example.commentdemo.comment.service.CommentImportService;
 import com.example.commentdemo.comment.service.CommentService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -20,11 +23,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
-import java.time.OffsetDateTime;
-import java.util.Base64;
 import java.util.UUID;
 
 @RestController
@@ -33,6 +35,7 @@ import java.util.UUID;
 public class CommentCommandController {
 
     private final CommentService commentService;
+    private final CommentImportService commentImportService;
     private final ActorContextResolver actorContextResolver;
 
     @PostMapping("/subjects/id/{subject_id}/comments")
@@ -47,6 +50,15 @@ public class CommentCommandController {
                         .body(response));
     }
 
+    @PostMapping(path = "/subjects/id/{subject_id}/comments/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<CommentImportResponse> importComments(@PathVariable("subject_id") UUID subjectId,
+                                                      @RequestBody Flux<String> lines,
+                                                      ServerWebExchange exchange) {
+        // decoded line by line in the service, so one malformed line is rejected instead of failing the body
+        return actorContextResolver.resolve(exchange)
+                .flatMap(actor -> commentImportService.importComments(subjectId, lines, actor));
+    }
+
     @PatchMapping("/comments/{comment_id}")
     public Mono<ResponseEntity<CommentResponse>> updateComment(@PathVariable("comment_id") Long commentId,
                                                                @Valid @RequestBody CommentUpdateRequest request,
@@ -73,16 +85,6 @@ public class CommentCommandController {
     }
 
     private String generateEtag(CommentResponse response) {
-        OffsetDateTime baseline = response.editedAt();
-        if (baseline == null) {
-            baseline = response.deletedAt();
-        }
-        if (baseline == null) {
-            baseline = response.createdAt();
-        }
-        long version = baseline != null ? baseline.toInstant().toEpochMilli() : 0L;
-        String token = response.id() + ":" + version;
-        String encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes());
-        return "W/\"" + encoded + "\"";
+        return CommentEtags.contentTag(response);
     }
 }
@@ -0,0 +1,59 @@
+package com.example.commentdemo.comment.web;
+
+import com.example.commentdemo.comment.api.dto.CommentPageResponse;
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes page slices as newline-delimited JSON, one line per comment, a chunk per slice.
+ * <p>
+ * The stream always ends with a {@code {"next_cursor":...}} line taken from the last slice, {@code null}
+ * when there is no further page, so clients can tell a complete page from a cut connection.
+ */
+final class CommentPageNdjsonWriter {
+
+    private CommentPageNdjsonWriter() {
+    }
+
+    static Flux<DataBuffer> write(Flux<CommentPageResponse> slices,
+                                  ObjectMapper objectMapper,
+                                  DataBufferFactory bufferFactory) {
+        return Flux.defer(() -> {
+            AtomicReference<String> nextCursor = new AtomicReference<>();
+            return slices.<DataBuffer>handle((slice, sink) -> {
+                        nextCursor.set(slice.nextCursor());
+                        if (slice.items() == null || slice.items().isEmpty()) {
+                            return;
+                        }
+                        StringBuilder chunk = new StringBuilder();
+                        for (CommentResponse comment : slice.items()) {
+                            chunk.append(toJson(objectMapper, comment)).append('\n');
+                        }
+                        sink.next(encode(bufferFactory, chunk.toString()));
+                    })
+                    .concatWith(Mono.fromSupplier(() -> encode(bufferFactory,
+                            toJson(objectMapper, Collections.singletonMap("next_cursor", nextCursor.get())) + "\n")));
+        });
+    }
+
+    private static String toJson(ObjectMapper objectMapper, Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to serialize page record", ex);
+        }
+    }
+
+    private static DataBuffer encode(DataBufferFactory bufferFactory, String chunk) {
+        return bufferFactory.wrap(chunk.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -3,25 +3,32 @@ package com.example.commentdemo.comment.web;
 import com.example.commentdemo.comment.api.dto.CommentPageResponse;
 import com.example.commentdemo.comment.api.dto.CommentResponse;
 import com.example.commentdemo.comment.security.ActorContextResolver;
+import com.example.commentdemo.comment.service.CommentEtags;
+import com.example.commentdemo.comment.service.CommentSearchService;
 import com.example.commentdemo.comment.service.CommentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.OffsetDateTime;
-import java.util.Base64;
 import java.util.UUID;
 
 @RestController
@@ -31,27 +38,67 @@ import java.util.UUID;
 public class CommentQueryController {
 
     private final CommentService commentService;
+    private final CommentSearchService commentSearchService;
     private final ActorContextResolver actorContextResolver;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * Checks the page's ETag before building it, so a poll with a current {@code If-None-Match} costs one
+     * subject lookup and returns 304 without hydrating any comments.
+     */
     @GetMapping("/subjects/id/{subject_id}/comments")
-    public Mono<CommentPageResponse> listTopLevel(@PathVariable("subject_id") UUID subjectId,
-                                                  @RequestParam(name = "view", defaultValue = "best") String view,
-                                                  @RequestParam(name = "limit", defaultValue = "20") @Min(1) @Max(100) int limit,
-                                                  @RequestParam(name = "cursor", required = false) String cursor,
-                                                  @RequestParam(name = "status", defaultValue = "published") String status,
-                                                  @RequestParam(name = "with_counts", defaultValue = "true") boolean withCounts,
-                                                  @RequestParam(name = "with_my_reaction", defaultValue = "true") boolean withMyReaction,
-                                                  ServerWebExchange exchange) {
+    public Mono<ResponseEntity<CommentPageResponse>> listTopLevel(@PathVariable("subject_id") UUID subjectId,
+                                                                  @RequestParam(name = "view", defaultValue = "best") String view,
+                                                                  @RequestParam(name = "limit", defaultValue = "20") @Min(1) @Max(100) int limit,
+                                                                  @RequestParam(name = "cursor", required = false) String cursor,
+                                                                  @RequestParam(name = "status", defaultValue = "published") String status,
+                                                                  @RequestParam(name = "with_counts", defaultValue = "true") boolean withCounts,
+                                                                  @RequestParam(name = "with_my_reaction", defaultValue = "true") boolean withMyReaction,
+                                                                  @RequestHeader(name = "If-None-Match", required = false) String ifNoneMatch,
+                                                                  ServerWebExchange exchange) {
         return actorContextResolver.resolve(exchange)
-                .flatMap(actor -> commentService.listTopLevel(subjectId, view, limit, cursor, status, withCounts, withMyReaction, actor));
+                .flatMap(actor -> commentService.topLevelEtag(subjectId, view, limit, cursor, status, withCounts, withMyReaction, actor)
+                        .flatMap(etag -> isNotModified(ifNoneMatch, etag)
+                                ? Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).<CommentPageResponse>build())
+                                : commentService.listTopLevel(subjectId, view, limit, cursor, status, withCounts, withMyReaction, actor)
+                                .map(page -> ResponseEntity.ok().eTag(etag).body(page))));
     }
 
+    /**
+     * NDJSON form of {@link #listTopLevel}: one comment per line, then a {@code next_cursor} line.
+     */
+    @GetMapping(path = "/subjects/id/{subject_id}/comments", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DataBuffer> streamTopLevel(@PathVariable("subject_id") UUID subjectId,
+                                           @RequestParam(name = "view", defaultValue = "best") String view,
+                                           @RequestParam(name = "limit", defaultValue = "20") @Min(1) @Max(100) int limit,
+                                           @RequestParam(name = "cursor", required = false) String cursor,
+                                           @RequestParam(name = "status", defaultValue = "published") String status,
+                                           @RequestParam(name = "with_counts", defaultValue = "true") boolean withCounts,
+                                           @RequestParam(name = "with_my_reaction", defaultValue = "true") boolean withMyReaction,
+                                           ServerWebExchange exchange) {
+        Flux<CommentPageResponse> page = actorContextResolver.resolve(exchange)
+                .flatMap(actor -> commentService.listTopLevel(subjectId, view, limit, cursor, status, withCounts, withMyReaction, actor))
+                .flux();
+        return CommentPageNdjsonWriter.write(page, objectMapper, exchange.getResponse().bufferFactory());
+    }
+
+    /**
+     * With {@code If-None-Match}, probes the comment's version first and answers 304 without loading it.
+     */
     @GetMapping("/comments/{comment_id}")
     public Mono<ResponseEntity<CommentResponse>> getComment(@PathVariable("comment_id") Long commentId,
+                                                            @RequestHeader(name = "If-None-Match", required = false) String ifNoneMatch,
                                                             ServerWebExchange exchange) {
         return actorContextResolver.resolve(exchange)
-                .flatMap(actor -> commentService.getComment(commentId, actor))
-                .map(this::toOkResponse);
+                .flatMap(actor -> {
+                    if (!StringUtils.hasText(ifNoneMatch)) {
+                        return commentService.getComment(commentId, actor).map(this::toOkResponse);
+                    }
+                    return commentService.commentEtag(commentId, actor)
+                            .flatMap(etag -> isNotModified(ifNoneMatch, etag)
+                                    ? Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).<CommentResponse>build())
+                                    : commentService.getComment(commentId, actor).map(this::toOkResponse));
+                });
     }
 
     @GetMapping("/comments/{comment_id}/replies")
@@ -67,24 +114,61 @@ public class CommentQueryController {
                 .flatMap(actor -> commentService.listReplies(commentId, order, limit, cursor, collapseBelow, withCounts, withMyReaction, actor));
     }
 
+    /**
+     * NDJSON form of {@link #listReplies}: comments are written slice by slice as they are hydrated, then a
+     * {@code next_cursor} line closes the page.
+     */
+    @GetMapping(path = "/comments/{comment_id}/replies", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DataBuffer> streamReplies(@PathVariable("comment_id") Long commentId,
+                                          @RequestParam(name = "order", defaultValue = "structure") String order,
+                                          @RequestParam(name = "limit", defaultValue = "50") @Min(1) @Max(200) int limit,
+                                          @RequestParam(name = "cursor", required = false) String cursor,
+                                          @RequestParam(name = "collapse_below", defaultValue = "0") @DecimalMin("0.0") @DecimalMax("1.0") double collapseBelow,
+                                          @RequestParam(name = "with_counts", defaultValue = "true") boolean withCounts,
+                                          @RequestParam(name = "with_my_reaction", defaultValue = "true") boolean withMyReaction,
+                                          ServerWebExchange exchange) {
+        Flux<CommentPageResponse> slices = actorContextResolver.resolve(exchange)
+                .flatMapMany(actor -> commentService.streamReplies(commentId, order, limit, cursor, collapseBelow, withCounts, withMyReaction, actor));
+        return CommentPageNdjsonWriter.write(slices, objectMapper, exchange.getResponse().bufferFactory());
+    }
+
+    @GetMapping(path = "/comments/{comment_id}/thread", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DataBuffer> streamThread(@PathVariable("comment_id") Long commentId,
+                                         @RequestParam(name = "max_depth", defaultValue = "8") @Min(0) @Max(20) int maxDepth,
+                                         @RequestParam(name = "limit", defaultValue = "500") @Min(1) @Max(2000) int limit,
+                                         @RequestParam(name = "with_counts", defaultValue = "true") boolean withCounts,
+                                         @RequestParam(name = "with_my_reaction", defaultValue = "true") boolean withMyReaction,
+                                         ServerWebExchange exchange) {
+        Flux<CommentResponse> comments = actorContextResolver.resolve(exchange)
+                .flatMapMany(actor -> commentService.streamThread(commentId, maxDepth, limit, withCounts, withMyReaction, actor));
+        return CommentThreadJsonWriter.write(comments, objectMapper, exchange.getResponse().bufferFactory(), limit);
+    }
+
+    @GetMapping("/search/comments")
+    public Mono<CommentPageResponse> search(@RequestParam(name = "q") String query,
+                                            @RequestParam(name = "subject_id", required = false) UUID subjectId,
+                                            @RequestParam(name = "author_id", required = false) Long authorId,
+                                            @RequestParam(name = "status", defaultValue = "published") String status,
+                                            @RequestParam(name = "limit", defaultValue = "20") @Min(1) @Max(100) int limit,
+                                            @RequestParam(name = "cursor", required = false) String cursor,
+                                            ServerWebExchange exchange) {
+        return actorContextResolver.resolve(exchange)
+                .flatMap(actor -> commentSearchService.search(query, subjectId, authorId, status, limit, cursor, actor));
+    }
+
     private ResponseEntity<CommentResponse> toOkResponse(CommentResponse response) {
         return ResponseEntity.ok()
-                .eTag(generateEtag(response))
+                .eTag(CommentEtags.readTag(response))
                 .body(response);
     }
 
-    private String generateEtag(CommentResponse response) {
-        OffsetDateTime baseline = response.editedAt();
-        if (baseline == null) {
-            baseline = response.deletedAt();
-        }
-        if (baseline == null) {
-            baseline = response.createdAt();
+    private static boolean isNotModified(String ifNoneMatch, String etag) {
+        if (!StringUtils.hasText(ifNoneMatch)) {
+            return false;
         }
-        long version = baseline != null ? baseline.toInstant().toEpochMilli() : 0L;
-        String token = response.id() + ":" + version;
-        String encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes());
-        return "W/\"" + encoded + "\"";
+        ETag current = ETag.create(etag);
+        return ETag.parse(ifNoneMatch).stream()
+                .anyMatch(candidate -> candidate.isWildcard() || candidate.compare(current, false));
     }
 
 }
@@ -0,0 +1,129 @@
+package com.example.commentdemo.comment.web;
+
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+
+/**
+ * Writes a path-ordered comment stream as one nested JSON document, a chunk per comment.
+ * <p>
+ * Only the chain of currently open ancestors is kept: each comment first closes the open nodes that are
+ * not its parent, then opens its own {@code replies} array. Comments whose parent was filtered out of the
+ * stream are dropped together with their subtree. The document is
+ * {@code {"thread":{"comment":{...},"replies":[...]},"truncated":false}}.
+ */
+final class CommentThreadJsonWriter {
+
+    private final ObjectMapper objectMapper;
+    private final DataBufferFactory bufferFactory;
+    private final int limit;
+    private final Deque<OpenNode> open = new ArrayDeque<>();
+    private int written;
+    private boolean truncated;
+
+    private CommentThreadJsonWriter(ObjectMapper objectMapper, DataBufferFactory bufferFactory, int limit) {
+        this.objectMapper = objectMapper;
+        this.bufferFactory = bufferFactory;
+        this.limit = limit;
+    }
+
+    /**
+     * @param comments thread in path order, root first, with at most one comment beyond {@code limit}
+     */
+    static Flux<DataBuffer> write(Flux<CommentResponse> comments,
+                                  ObjectMapper objectMapper,
+                                  DataBufferFactory bufferFactory,
+                                  int limit) {
+        return Flux.defer(() -> {
+            CommentThreadJsonWriter writer = new CommentThreadJsonWriter(objectMapper, bufferFactory, limit);
+            return comments.<DataBuffer>handle((comment, sink) -> {
+                        String chunk = writer.append(comment);
+                        if (chunk != null) {
+                            sink.next(writer.encode(chunk));
+                        }
+                    })
+                    .concatWith(Mono.fromSupplier(() -> writer.encode(writer.finish())));
+        });
+    }
+
+    private String append(CommentResponse comment) {
+        if (written >= limit) {
+            truncated = true;
+            return null;
+        }
+        StringBuilder chunk = new StringBuilder();
+        if (written == 0) {
+            chunk.append("{\"thread\":");
+        } else {
+            if (!isOpen(comment.parentId())) {
+                // an ancestor was filtered out; none of this subtree can be attached
+                return null;
+            }
+            while (!Objects.equals(open.peek().id, comment.parentId())) {
+                open.pop();
+                chunk.append("]}");
+            }
+            OpenNode parent = open.peek();
+            if (parent.hasReplies) {
+                chunk.append(',');
+            }
+            parent.hasReplies = true;
+        }
+        chunk.append("{\"comment\":").append(toJson(comment)).append(",\"replies\":[");
+        open.push(new OpenNode(comment.id()));
+        written++;
+        return chunk.toString();
+    }
+
+    private boolean isOpen(Long commentId) {
+        for (OpenNode node : open) {
+            if (Objects.equals(node.id, commentId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String finish() {
+        if (written == 0) {
+            return "";
+        }
+        StringBuilder chunk = new StringBuilder();
+        while (!open.isEmpty()) {
+            open.pop();
+            chunk.append("]}");
+        }
+        return chunk.append(",\"truncated\":").append(truncated).append('}').toString();
+    }
+
+    private String toJson(CommentResponse comment) {
+        try {
+            return objectMapper.writeValueAsString(comment);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to serialize comment " + comment.id(), ex);
+        }
+    }
+
+    private DataBuffer encode(String chunk) {
+        return bufferFactory.wrap(chunk.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class OpenNode {
+
+        private final Long id;
+        private boolean hasReplies;
+
+        private OpenNode(Long id) {
+            this.id = id;
+        }
+    }
+}
@@ -28,7 +28,7 @@ public class EventStreamController {
     private final CommentEventService eventService;
     private final ActorContextResolver actorContextResolver;
 
-    @GetMapping(value = "/subjects/{subjectId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @GetMapping(value = {"/subjects/id/{subjectId}/events", "/subjects/{subjectId}/events"}, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ServerSentEvent<String>> streamEvents(@PathVariable("subjectId") UUID subjectId,
                                                       @RequestParam(name = "since", required = false)
                                                       @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime since,
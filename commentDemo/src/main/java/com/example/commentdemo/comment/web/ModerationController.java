@@ -0,0 +1,63 @@
+package com.example.commentdemo.comment.web;
+
+import com.example.commentdemo.comment.api.dto.CommentPageResponse;
+import com.example.commentdemo.comment.api.dto.ModerationActionRequest;
+import com.example.commentdemo.comment.api.dto.ModerationActionResponse;
+import com.example.commentdemo.comment.api.dto.ModerationBatchRequest;
+import com.example.commentdemo.comment.api.dto.ModerationClaimResponse;
+import com.example.commentdemo.comment.security.ActorContextResolver;
+import com.example.commentdemo.comment.service.ModerationService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@RequestMapping(path = "/api/comments/v1/moderation", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequiredArgsConstructor
+public class ModerationController {
+
+    private final ModerationService moderationService;
+    private final ActorContextResolver actorContextResolver;
+
+    @GetMapping("/comments")
+    public Mono<CommentPageResponse> listComments(@RequestParam(name = "status", defaultValue = "pending") String status,
+                                                  @RequestParam(name = "limit", defaultValue = "20") int limit,
+                                                  @RequestParam(name = "cursor", required = false) String cursor,
+                                                  ServerWebExchange exchange) {
+        return actorContextResolver.resolve(exchange)
+                .flatMap(actor -> moderationService.listComments(status, limit, cursor, actor));
+    }
+
+    @PostMapping("/comments/claims")
+    public Mono<ModerationClaimResponse> claim(@RequestParam(name = "limit", defaultValue = "20") int limit,
+                                               ServerWebExchange exchange) {
+        return actorContextResolver.resolve(exchange)
+                .flatMap(actor -> moderationService.claim(limit, actor));
+    }
+
+    @PostMapping("/comments/{comment_id}/actions")
+    public Mono<ModerationActionResponse> applyAction(@PathVariable("comment_id") Long commentId,
+                                                      @Valid @RequestBody ModerationActionRequest request,
+                                                      ServerWebExchange exchange) {
+        return actorContextResolver.resolve(exchange)
+                .flatMap(actor -> moderationService.applyAction(commentId, request, actor));
+    }
+
+    @PostMapping("/comments/actions")
+    public Mono<List<ModerationActionResponse>> applyActions(@Valid @RequestBody ModerationBatchRequest request,
+                                                             ServerWebExchange exchange) {
+        return actorContextResolver.resolve(exchange)
+                .flatMap(actor -> moderationService.applyActions(request.getActions(), actor).collectList());
+    }
+}
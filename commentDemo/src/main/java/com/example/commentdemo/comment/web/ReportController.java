@@ -0,0 +1,37 @@
+package com.example.commentdemo.comment.web;
+
+import com.example.commentdemo.comment.api.dto.ReportCreateRequest;
+import com.example.commentdemo.comment.api.dto.ReportReceiptResponse;
+import com.example.commentdemo.comment.security.ActorContextResolver;
+import com.example.commentdemo.comment.service.ReportService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping(path = "/api/comments/v1", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequiredArgsConstructor
+public class ReportController {
+
+    private final ReportService reportService;
+    private final ActorContextResolver actorContextResolver;
+
+    @PostMapping("/comments/{comment_id}/reports")
+    public Mono<ResponseEntity<ReportReceiptResponse>> report(@PathVariable("comment_id") Long commentId,
+                                                              @Valid @RequestBody ReportCreateRequest request,
+                                                              ServerWebExchange exchange) {
+        return actorContextResolver.resolve(exchange)
+                .flatMap(actor -> reportService.report(commentId, request, actor))
+                .map(receipt -> ResponseEntity.status(receipt.created() ? HttpStatus.CREATED : HttpStatus.OK)
+                        .body(receipt));
+    }
+}
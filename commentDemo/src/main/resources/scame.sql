@@ -22,11 +22,68 @@ CREATE TABLE comment_subject (
                                              comment_count      INT     NOT NULL DEFAULT 0,   -- 总评论数（含软删）
                                              visible_count      INT     NOT NULL DEFAULT 0,   -- 可见评论数（published）
                                              last_commented_at  TIMESTAMPTZ,
+                                             write_version      BIGINT  NOT NULL DEFAULT 0,   -- 评论写入版本（新增/编辑/状态变化/删除递增）
+                                             reaction_epoch     BIGINT  NOT NULL DEFAULT 0,   -- 顶层评论计数/热度批量更新版本
                                              created_at         TIMESTAMPTZ NOT NULL DEFAULT now()
 );
 
 CREATE INDEX ON comment_subject (last_commented_at DESC);
 
+-- ================== 主体计数分片（避免热门主体单行锁排队） ==================
+-- 评论写入不再直接 UPDATE comment_subject，而是按后端进程哈希选 16 个槽位之一累加增量；
+-- comment_subject 上的计数列只是已压实的基数，读取走 comment_subject_totals（基数 + 各槽位之和），
+-- 服务端定期把槽位合并回基数。write_version 只增不减，合并前后总和不变
+CREATE TABLE comment_subject_counter (
+                                             subject_id        UUID     NOT NULL REFERENCES comment_subject(subject_id) ON DELETE CASCADE,
+                                             slot              SMALLINT NOT NULL,
+                                             comment_count     INT      NOT NULL DEFAULT 0,
+                                             visible_count     INT      NOT NULL DEFAULT 0,
+                                             write_version     BIGINT   NOT NULL DEFAULT 0,
+                                             last_commented_at TIMESTAMPTZ,
+                                             PRIMARY KEY (subject_id, slot)
+);
+CREATE INDEX idx_cmt_subject_counter_commented ON comment_subject_counter (last_commented_at DESC);
+
+CREATE OR REPLACE FUNCTION fn_subject_counter_add(p_subject UUID, p_comments INT, p_visible INT, p_commented BOOLEAN)
+    RETURNS VOID AS $$
+BEGIN
+    -- 主体级联删除中，分片随之删除
+    PERFORM 1 FROM comment_subject WHERE subject_id = p_subject;
+    IF NOT FOUND THEN
+        RETURN;
+    END IF;
+
+    INSERT INTO comment_subject_counter AS sc (subject_id, slot, comment_count, visible_count, write_version, last_commented_at)
+    VALUES (p_subject, (hashint4(pg_backend_pid()) & 15)::smallint, p_comments, p_visible, 1,
+            CASE WHEN p_commented THEN now() END)
+    ON CONFLICT (subject_id, slot) DO UPDATE
+        SET comment_count     = sc.comment_count + EXCLUDED.comment_count,
+            visible_count     = sc.visible_count + EXCLUDED.visible_count,
+            write_version     = sc.write_version + 1,
+            last_commented_at = GREATEST(sc.last_commented_at, EXCLUDED.last_commented_at);
+END
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE VIEW comment_subject_totals AS
+SELECT s.subject_id,
+       s.subject_key,
+       s.is_locked,
+       s.is_archived,
+       s.policy,
+       GREATEST(s.comment_count + COALESCE(c.comment_count, 0), 0)::int AS comment_count,
+       GREATEST(s.visible_count + COALESCE(c.visible_count, 0), 0)::int AS visible_count,
+       GREATEST(s.last_commented_at, c.last_commented_at)              AS last_commented_at,
+       s.write_version + COALESCE(c.write_version, 0)                  AS write_version,
+       s.reaction_epoch,
+       s.created_at
+FROM comment_subject s
+         LEFT JOIN LATERAL (SELECT SUM(sc.comment_count)  AS comment_count,
+                                   SUM(sc.visible_count)  AS visible_count,
+                                   SUM(sc.write_version)  AS write_version,
+                                   MAX(sc.last_commented_at) AS last_commented_at
+                            FROM comment_subject_counter sc
+                            WHERE sc.subject_id = s.subject_id) c ON TRUE;
+
 -- ================== 评论表（ltree 物化路径 + 模块内自洽） ==================
 CREATE TABLE comment (
                                      id              BIGSERIAL PRIMARY KEY,
@@ -78,6 +135,27 @@ CREATE INDEX idx_cmt_path_gist                  ON comment USING GIST (path);
 -- 面向业务常用列表：仅取可见
 CREATE INDEX idx_cmt_subject_visible_desc ON comment (subject_id, created_at DESC)
     WHERE status='published' AND deleted_at IS NULL;
+-- 正文检索：三元组 GIN 索引支持任意子串 ILIKE（中文无需分词），相关度用 similarity() 排序
+-- 注意：pg_trgm 只有在数据库 LC_CTYPE 不是 C/POSIX（如 en_US.UTF-8、zh_CN.UTF-8）时才为中文等非 ASCII 字符生成三元组，
+-- 建库时需指定 LC_CTYPE；应用启动时会检查并告警
+CREATE INDEX idx_cmt_body_trgm ON comment USING GIN (body_md gin_trgm_ops);
+-- 毒性评分：后台按 id 批量扫描未评分评论，部分索引只含待评分行，评完即移出
+CREATE INDEX idx_cmt_toxicity_unscored ON comment (id)
+    WHERE toxicity_score IS NULL AND status <> 'deleted';
+
+-- 正文修改后清空旧评分，由评分任务重新评估
+CREATE OR REPLACE FUNCTION fn_toxicity_reset() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.toxicity_score := NULL;
+    RETURN NEW;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_cmt_toxicity_reset
+    BEFORE UPDATE OF body_md ON comment
+    FOR EACH ROW
+    WHEN (OLD.body_md IS DISTINCT FROM NEW.body_md)
+EXECUTE FUNCTION fn_toxicity_reset();
 
 -- ================== 反应（点赞/点踩/表情），完全模块内 ==================
 CREATE TABLE comment_reaction (
@@ -93,6 +171,33 @@ CREATE TABLE comment_reaction (
 );
 CREATE UNIQUE INDEX uq_actor_reaction_idx
     ON comment_reaction (comment_id, actor_id, type, COALESCE(emoji_code,''));
+-- 赞/踩互斥：同一用户对同一评论最多一条 up/down，切换方向走 ON CONFLICT DO UPDATE，并发反向投票不会各插一行
+CREATE UNIQUE INDEX uq_actor_vote_idx
+    ON comment_reaction (comment_id, actor_id)
+    WHERE type IN ('up','down');
+
+-- ================== 批量导入映射（旧系统 ID → 评论 ID） ==================
+-- 用于解析 NDJSON 中的父引用，并使重复导入幂等（已导入的 external_id 会被跳过）
+CREATE TABLE comment_import_key (
+                                                subject_id  UUID   NOT NULL REFERENCES comment_subject(subject_id) ON DELETE CASCADE,
+                                                external_id TEXT   NOT NULL,
+                                                comment_id  BIGINT NOT NULL REFERENCES comment(id) ON DELETE CASCADE,
+                                                PRIMARY KEY (subject_id, external_id)
+);
+-- ================== 幂等键（客户端重试去重） ==================
+-- 首次请求在写评论的同一事务内插入本行；并发重试阻塞在主键上直到首个请求提交，随后重放 response。
+-- 过期行可被同键新请求接管，并由服务端定期清理
+CREATE TABLE comment_idempotency_key (
+                                                actor_id     BIGINT       NOT NULL,
+                                                idem_key     VARCHAR(128) NOT NULL,
+                                                request_hash CHAR(32)     NOT NULL,  -- 请求体摘要，同键不同请求返回 422
+                                                comment_id   BIGINT REFERENCES comment(id) ON DELETE SET NULL,
+                                                response     JSONB,                  -- 首次成功的响应，提交前为 NULL
+                                                created_at   TIMESTAMPTZ  NOT NULL DEFAULT now(),
+                                                expires_at   TIMESTAMPTZ  NOT NULL,
+                                                PRIMARY KEY (actor_id, idem_key)
+);
+CREATE INDEX idx_cmt_idempotency_expires ON comment_idempotency_key (expires_at);
 -- ================== 举报与审核动作（模块内治理） ==================
 CREATE TABLE comment_report (
                                             id          BIGSERIAL PRIMARY KEY,
@@ -101,29 +206,89 @@ CREATE TABLE comment_report (
                                             reporter_urn CITEXT,
                                             reason      TEXT,
                                             status      TEXT NOT NULL DEFAULT 'open' CHECK (status IN ('open','reviewed','rejected','accepted')),
+                                            metadata    JSONB,
+                                            folded      BOOLEAN NOT NULL DEFAULT false,  -- 是否已合并进 comment_report_stats
                                             created_at  TIMESTAMPTZ NOT NULL DEFAULT now()
 );
+-- 同一举报人对同一评论只记一次；重复举报直接返回已有记录
+CREATE UNIQUE INDEX uq_cmt_report_reporter ON comment_report (comment_id, reporter_id);
+CREATE INDEX idx_cmt_report_unfolded ON comment_report (id) WHERE NOT folded;
+
+-- 举报聚合：接收举报只插入 comment_report，不触碰热点行；由应用定时批量合并为每条评论的
+-- 未处理举报数与原因分布，自动隐藏/入审核队列的阈值只看这里，不再逐次 COUNT comment_report
+CREATE TABLE comment_report_stats (
+                                                  comment_id       BIGINT PRIMARY KEY REFERENCES comment(id) ON DELETE CASCADE,
+                                                  open_count       INT         NOT NULL DEFAULT 0,
+                                                  reason_counts    JSONB       NOT NULL DEFAULT '{}'::jsonb,  -- {"spam": 12, "abuse": 3}
+                                                  last_reported_at TIMESTAMPTZ,
+                                                  auto_hidden_at   TIMESTAMPTZ
+);
 
 CREATE TABLE moderation_action (
                                                id            BIGSERIAL PRIMARY KEY,
                                                comment_id    BIGINT REFERENCES comment(id) ON DELETE SET NULL,
                                                operator_id   BIGINT NOT NULL,
                                                operator_urn  CITEXT,
-                                               action        TEXT NOT NULL CHECK (action IN ('hide','delete','approve','shadow_ban','restore','spam')),
+                                               action        TEXT NOT NULL CHECK (action IN ('hide','delete','approve','shadow_ban','restore','spam','hold')),  -- hold：自动审核转入待审
                                                reason        TEXT,
-                                               prev_status   comment_status,
-                                               new_status    comment_status,
+                                               prev_status   VARCHAR(20) CHECK (prev_status IN ('published','pending','hidden','deleted','spam')),
+                                               new_status    VARCHAR(20) CHECK (new_status IN ('published','pending','hidden','deleted','spam')),
                                                created_at    TIMESTAMPTZ NOT NULL DEFAULT now()
 );
+CREATE INDEX idx_moderation_action_comment ON moderation_action (comment_id, created_at DESC);
+
+-- 审核浏览：只索引非 published 的评论，按时间倒序键集翻页
+CREATE INDEX idx_cmt_moderation_status ON comment (status, created_at DESC, id DESC)
+    WHERE status <> 'published';
+
+-- 审核队列：只含待处理项（pending 评论 / 被举报评论）。审核员以 FOR UPDATE SKIP LOCKED 批量认领并写入租约，
+-- 互不争抢同一行；租约到期由服务端定期释放。部分索引只覆盖未认领项，积压数万条时认领仍走索引前缀
+CREATE TABLE comment_moderation_queue (
+                                               comment_id   BIGINT PRIMARY KEY REFERENCES comment(id) ON DELETE CASCADE,
+                                               subject_id   UUID        NOT NULL,
+                                               reason       VARCHAR(16) NOT NULL CHECK (reason IN ('pending','reported')),
+                                               enqueued_at  TIMESTAMPTZ NOT NULL DEFAULT now(),
+                                               claimed_by   BIGINT,
+                                               lease_until  TIMESTAMPTZ
+);
+-- 认领取未租出或租约已过期的项；持有中的租约数量有限，按序扫描时直接跳过
+CREATE INDEX idx_cmt_modq_ready ON comment_moderation_queue (enqueued_at, comment_id);
+CREATE INDEX idx_cmt_modq_lease ON comment_moderation_queue (lease_until)
+    WHERE lease_until IS NOT NULL;
+
+-- 进入 pending 即入队；离开 pending 时移除因 pending 入队的项（举报项由审核动作处理）
+CREATE OR REPLACE FUNCTION fn_moderation_enqueue() RETURNS TRIGGER AS $$
+BEGIN
+    IF NEW.status = 'pending' THEN
+        INSERT INTO comment_moderation_queue (comment_id, subject_id, reason)
+        VALUES (NEW.id, NEW.subject_id, 'pending')
+        ON CONFLICT (comment_id) DO NOTHING;
+    ELSIF TG_OP = 'UPDATE' AND OLD.status = 'pending' THEN
+        DELETE FROM comment_moderation_queue WHERE comment_id = NEW.id AND reason = 'pending';
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_cmt_moderation_enqueue
+    AFTER INSERT OR UPDATE OF status ON comment
+    FOR EACH ROW
+EXECUTE FUNCTION fn_moderation_enqueue();
 
 -- ================== 触发器：维护 path/root 与计数（模块内自洽） ==================
 
 -- 顶层：path='c{id}' 且 root_id=id；子层：path=parent.path||'c{id}'，root_id继承
 CREATE OR REPLACE FUNCTION fn_set_path_and_root() RETURNS TRIGGER AS $$
 DECLARE
-    p_path  ltree;
-    p_root  BIGINT;
+    p_path    ltree;
+    p_root    BIGINT;
+    p_subject UUID;
 BEGIN
+    -- 批量导入：应用已预先计算 id/path/root_id，主体计数在导入结束时统一重算
+    IF NEW.path IS NOT NULL AND current_setting('comment.bulk_import', true) = 'on' THEN
+        RETURN NEW;
+    END IF;
+
     -- 注意：在 BEFORE INSERT 中，BIGSERIAL/IDENTITY 的 NEW.id 已经可用
     IF NEW.parent_id IS NULL THEN
         -- 顶层评论：root 指向自身，path 为 c{id}
@@ -131,7 +296,7 @@ BEGIN
         NEW.path    := ('c' || NEW.id::text)::ltree;
     ELSE
         -- 子评论：继承父的 root/path，并把自己拼到 path 后
-        SELECT path, root_id INTO p_path, p_root
+        SELECT path, root_id, subject_id INTO p_path, p_root, p_subject
         FROM comment
         WHERE id = NEW.parent_id
             FOR SHARE;
@@ -139,17 +304,19 @@ BEGIN
         IF p_path IS NULL OR p_root IS NULL THEN
             RAISE EXCEPTION 'Parent comment(%) not found or invalid', NEW.parent_id;
         END IF;
+        -- 父子必须同属一个 subject（CHECK 约束不能引用其他行，在此校验）
+        IF p_subject <> NEW.subject_id THEN
+            RAISE EXCEPTION 'Parent comment(%) belongs to a different subject', NEW.parent_id;
+        END IF;
 
         NEW.root_id := p_root;
         NEW.path    := p_path || ('c' || NEW.id::text)::ltree;
     END IF;
 
-    -- 同步主体计数与最近评论时间（这部分放 BEFORE 也没问题，失败会整体回滚）
-    UPDATE comment_subject
-    SET comment_count = comment_count + 1,
-        visible_count = visible_count + CASE WHEN NEW.status='published' AND NEW.deleted_at IS NULL THEN 1 ELSE 0 END,
-        last_commented_at = now()
-    WHERE subject_id = NEW.subject_id;
+    -- 同步主体计数与最近评论时间（写入分片槽位，不锁主体行；失败会整体回滚）
+    PERFORM fn_subject_counter_add(NEW.subject_id, 1,
+                                   CASE WHEN NEW.status='published' AND NEW.deleted_at IS NULL THEN 1 ELSE 0 END,
+                                   TRUE);
 
     RETURN NEW;
 END
@@ -168,7 +335,8 @@ COMMIT;
 CREATE OR REPLACE FUNCTION fn_reply_count_adjust() RETURNS TRIGGER AS $$
 BEGIN
     IF TG_OP = 'INSERT' THEN
-        IF NEW.parent_id IS NOT NULL THEN
+        -- 批量导入时 reply_count 在导入结束时统一重算
+        IF NEW.parent_id IS NOT NULL AND current_setting('comment.bulk_import', true) IS DISTINCT FROM 'on' THEN
             UPDATE comment SET reply_count = reply_count + 1 WHERE id = NEW.parent_id;
         END IF;
         RETURN NEW;
@@ -176,11 +344,10 @@ BEGIN
         IF OLD.parent_id IS NOT NULL THEN
             UPDATE comment SET reply_count = reply_count - 1 WHERE id = OLD.parent_id;
         END IF;
-        -- 删除时同步主体总数与可见数
-        UPDATE comment_subject
-        SET comment_count = GREATEST(comment_count - 1, 0),
-            visible_count = GREATEST(visible_count - CASE WHEN OLD.status='published' AND OLD.deleted_at IS NULL THEN 1 ELSE 0 END, 0)
-        WHERE subject_id = OLD.subject_id;
+        -- 删除时同步主体总数与可见数（分片槽位，读取时下限为 0）
+        PERFORM fn_subject_counter_add(OLD.subject_id, -1,
+                                       -CASE WHEN OLD.status='published' AND OLD.deleted_at IS NULL THEN 1 ELSE 0 END,
+                                       FALSE);
         RETURN OLD;
     END IF;
     RETURN NULL;
@@ -195,28 +362,84 @@ CREATE TRIGGER trg_cmt_reply_count_dec
     AFTER DELETE ON comment
     FOR EACH ROW EXECUTE FUNCTION fn_reply_count_adjust();
 
--- 反应计数（仅 up/down 冗余到评论表）
+-- 列表 ETag 版本：编辑/状态变化/毒性评分推进主体写版本；新增与物理删除已在上面的触发器中递增，
+-- 计数列变化由 reaction_epoch 覆盖。软删、隐藏与恢复同时调整可见数
+CREATE OR REPLACE FUNCTION fn_subject_write_version() RETURNS TRIGGER AS $$
+DECLARE
+    old_visible INT := CASE WHEN OLD.status='published' AND OLD.deleted_at IS NULL THEN 1 ELSE 0 END;
+    new_visible INT := CASE WHEN NEW.status='published' AND NEW.deleted_at IS NULL THEN 1 ELSE 0 END;
+BEGIN
+    PERFORM fn_subject_counter_add(NEW.subject_id, 0, new_visible - old_visible, FALSE);
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_cmt_subject_write_version
+    AFTER UPDATE OF body_md, body_html, status, toxicity_score, deleted_at, edited_at ON comment
+    FOR EACH ROW
+    WHEN (OLD.body_md IS DISTINCT FROM NEW.body_md
+        OR OLD.body_html IS DISTINCT FROM NEW.body_html
+        OR OLD.status IS DISTINCT FROM NEW.status
+        OR OLD.toxicity_score IS DISTINCT FROM NEW.toxicity_score
+        OR OLD.deleted_at IS DISTINCT FROM NEW.deleted_at
+        OR OLD.edited_at IS DISTINCT FROM NEW.edited_at)
+EXECUTE FUNCTION fn_subject_write_version();
+
+-- 反应计数：写后聚合。触发器只追加增量行，不再逐条 UPDATE 热点评论行；
+-- 由应用定时批量合并到 comment.up_count/down_count 与 comment_emoji_count，并定期对账修复漂移
+CREATE TABLE comment_counter_delta (
+                                                   id          BIGSERIAL PRIMARY KEY,
+                                                   comment_id  BIGINT   NOT NULL,              -- 不加外键：评论删除后残留增量在合并时自然丢弃
+                                                   up_delta    SMALLINT NOT NULL DEFAULT 0,
+                                                   down_delta  SMALLINT NOT NULL DEFAULT 0,
+                                                   emoji_code  TEXT,
+                                                   emoji_delta SMALLINT NOT NULL DEFAULT 0,
+                                                   created_at  TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+CREATE INDEX idx_cmt_counter_delta_comment ON comment_counter_delta (comment_id);
+
+-- 表情计数（按评论+表情聚合）
+CREATE TABLE comment_emoji_count (
+                                                 comment_id  BIGINT NOT NULL REFERENCES comment(id) ON DELETE CASCADE,
+                                                 emoji_code  TEXT   NOT NULL,
+                                                 count       INT    NOT NULL DEFAULT 0,
+                                                 PRIMARY KEY (comment_id, emoji_code)
+);
+INSERT INTO comment_emoji_count (comment_id, emoji_code, count)
+SELECT comment_id, emoji_code, COUNT(*)
+FROM comment_reaction
+WHERE type = 'emoji'
+GROUP BY comment_id, emoji_code
+ON CONFLICT DO NOTHING;
+
+CREATE OR REPLACE FUNCTION fn_reaction_delta(p_comment BIGINT, p_type TEXT, p_emoji TEXT, p_sign SMALLINT) RETURNS VOID AS $$
+BEGIN
+    INSERT INTO comment_counter_delta (comment_id, up_delta, down_delta, emoji_code, emoji_delta)
+    VALUES (p_comment,
+            CASE WHEN p_type = 'up'    THEN p_sign ELSE 0 END,
+            CASE WHEN p_type = 'down'  THEN p_sign ELSE 0 END,
+            CASE WHEN p_type = 'emoji' THEN p_emoji END,
+            CASE WHEN p_type = 'emoji' THEN p_sign ELSE 0 END);
+END
+$$ LANGUAGE plpgsql;
+
 CREATE OR REPLACE FUNCTION fn_reaction_counter() RETURNS TRIGGER AS $$
 BEGIN
     IF TG_OP = 'INSERT' THEN
-        IF NEW.type = 'up'   THEN UPDATE comment SET up_count   = up_count   + 1 WHERE id = NEW.comment_id; END IF;
-        IF NEW.type = 'down' THEN UPDATE comment SET down_count = down_count + 1 WHERE id = NEW.comment_id; END IF;
+        PERFORM fn_reaction_delta(NEW.comment_id, NEW.type, NEW.emoji_code, 1::SMALLINT);
         RETURN NEW;
 
     ELSIF TG_OP = 'DELETE' THEN
-        IF OLD.type = 'up'   THEN UPDATE comment SET up_count   = up_count   - 1 WHERE id = OLD.comment_id; END IF;
-        IF OLD.type = 'down' THEN UPDATE comment SET down_count = down_count - 1 WHERE id = OLD.comment_id; END IF;
+        PERFORM fn_reaction_delta(OLD.comment_id, OLD.type, OLD.emoji_code, -1::SMALLINT);
         RETURN OLD;
 
     ELSIF TG_OP = 'UPDATE' THEN
         IF OLD.comment_id <> NEW.comment_id THEN
             RAISE EXCEPTION 'comment_id is immutable for reactions';
         END IF;
-        IF OLD.type IS DISTINCT FROM NEW.type THEN
-            IF OLD.type = 'up'   THEN UPDATE comment SET up_count   = up_count   - 1 WHERE id = NEW.comment_id; END IF;
-            IF OLD.type = 'down' THEN UPDATE comment SET down_count = down_count - 1 WHERE id = NEW.comment_id; END IF;
-            IF NEW.type = 'up'   THEN UPDATE comment SET up_count   = up_count   + 1 WHERE id = NEW.comment_id; END IF;
-            IF NEW.type = 'down' THEN UPDATE comment SET down_count = down_count + 1 WHERE id = NEW.comment_id; END IF;
+        IF OLD.type IS DISTINCT FROM NEW.type OR OLD.emoji_code IS DISTINCT FROM NEW.emoji_code THEN
+            PERFORM fn_reaction_delta(OLD.comment_id, OLD.type, OLD.emoji_code, -1::SMALLINT);
+            PERFORM fn_reaction_delta(NEW.comment_id, NEW.type, NEW.emoji_code, 1::SMALLINT);
         END IF;
         RETURN NEW;
     END IF;
@@ -227,7 +450,7 @@ CREATE TRIGGER trg_cmt_reaction_counter
     AFTER INSERT OR UPDATE OR DELETE ON comment_reaction
     FOR EACH ROW EXECUTE FUNCTION fn_reaction_counter();
 
--- ================== 排序函数与物化视图（模块内） ==================
+-- ================== 排序函数与排名表（模块内） ==================
 CREATE OR REPLACE FUNCTION wilson_lower_bound(up INT, down INT, z FLOAT8 DEFAULT 1.96)
     RETURNS FLOAT8 AS $$
 DECLARE
@@ -250,30 +473,352 @@ BEGIN
 END
 $$ LANGUAGE plpgsql STABLE;
 
-CREATE MATERIALIZED VIEW IF NOT EXISTS comment_rank_mv AS
-SELECT
-    c.id,
-    c.subject_id,
-    wilson_lower_bound(c.up_count, c.down_count, 1.96) AS best_score,
-    hn_hot_score(c.up_count, c.down_count, c.created_at, 1.8) AS hot_score,
-    c.created_at,
-    c.status
-FROM comment c;
+-- 争议度：赞踩中较少的一方（与旧版 LEAST(up_count, down_count) 排序一致）
+CREATE OR REPLACE FUNCTION controversy_score(up INT, down INT)
+    RETURNS FLOAT8 AS $$
+    SELECT LEAST(up, down)::FLOAT8
+$$ LANGUAGE sql IMMUTABLE;
+
+-- 旧版物化视图从未刷新且只能全量 REFRESH，改为由触发器增量维护的排名表
+DROP MATERIALIZED VIEW IF EXISTS comment_rank_mv;
+
+CREATE TABLE IF NOT EXISTS comment_rank (
+                                            id                 BIGINT PRIMARY KEY REFERENCES comment(id) ON DELETE CASCADE,
+                                            subject_id         UUID        NOT NULL,
+                                            parent_id          BIGINT,
+                                            status             VARCHAR(20) NOT NULL,
+                                            up_count           INT         NOT NULL DEFAULT 0,
+                                            down_count         INT         NOT NULL DEFAULT 0,
+                                            best_score         FLOAT8      NOT NULL DEFAULT 0,   -- Wilson 下界，投票时增量更新
+                                            hot_score          FLOAT8      NOT NULL DEFAULT 0,   -- 时间衰减，由后台任务按活跃 subject 重算
+                                            controversy_score  FLOAT8      NOT NULL DEFAULT 0,
+                                            created_at         TIMESTAMPTZ NOT NULL,
+                                            hot_decayed_at     TIMESTAMPTZ NOT NULL DEFAULT now()
+);
 
+-- 索引列与游标排序键 (score, created_at, id) 一致，翻页走索引范围扫描
 CREATE INDEX IF NOT EXISTS idx_cmt_rank_best
-    ON comment_rank_mv (subject_id, best_score DESC, created_at DESC)
-    WHERE status='published';
+    ON comment_rank (subject_id, best_score DESC, created_at DESC, id DESC)
+    WHERE parent_id IS NULL AND status='published';
 
 CREATE INDEX IF NOT EXISTS idx_cmt_rank_hot
-    ON comment_rank_mv (subject_id, hot_score DESC, created_at DESC)
-    WHERE status='published';
+    ON comment_rank (subject_id, hot_score DESC, created_at DESC, id DESC)
+    WHERE parent_id IS NULL AND status='published';
 
+CREATE INDEX IF NOT EXISTS idx_cmt_rank_controversial
+    ON comment_rank (subject_id, controversy_score DESC, created_at DESC, id DESC)
+    WHERE parent_id IS NULL AND status='published';
+
+-- 热度衰减任务按 id 分批遍历主体的顶层已发布评论
+CREATE INDEX IF NOT EXISTS idx_cmt_rank_decay
+    ON comment_rank (subject_id, id)
+    WHERE parent_id IS NULL AND status='published';
+
+-- 评论写入/计数或状态变化时同步排名行（反应计数触发器更新 comment 后级联到这里）
+CREATE OR REPLACE FUNCTION fn_comment_rank_sync() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO comment_rank (id, subject_id, parent_id, status, up_count, down_count,
+                                  best_score, hot_score, controversy_score, created_at)
+        VALUES (NEW.id, NEW.subject_id, NEW.parent_id, NEW.status, NEW.up_count, NEW.down_count,
+                wilson_lower_bound(NEW.up_count, NEW.down_count, 1.96),
+                hn_hot_score(NEW.up_count, NEW.down_count, NEW.created_at, 1.8),
+                controversy_score(NEW.up_count, NEW.down_count),
+                NEW.created_at);
+    ELSE
+        UPDATE comment_rank
+        SET status            = NEW.status,
+            up_count          = NEW.up_count,
+            down_count        = NEW.down_count,
+            best_score        = wilson_lower_bound(NEW.up_count, NEW.down_count, 1.96),
+            hot_score         = hn_hot_score(NEW.up_count, NEW.down_count, NEW.created_at, 1.8),
+            controversy_score = controversy_score(NEW.up_count, NEW.down_count),
+            hot_decayed_at    = now()
+        WHERE id = NEW.id;
+    END IF;
+    RETURN NEW;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_cmt_rank_insert
+    AFTER INSERT ON comment
+    FOR EACH ROW EXECUTE FUNCTION fn_comment_rank_sync();
+
+CREATE TRIGGER trg_cmt_rank_update
+    AFTER UPDATE OF up_count, down_count, status ON comment
+    FOR EACH ROW
+    WHEN (OLD.up_count IS DISTINCT FROM NEW.up_count
+        OR OLD.down_count IS DISTINCT FROM NEW.down_count
+        OR OLD.status IS DISTINCT FROM NEW.status)
+EXECUTE FUNCTION fn_comment_rank_sync();
+
+-- 已有数据回填（新库为空操作）
+INSERT INTO comment_rank (id, subject_id, parent_id, status, up_count, down_count,
+                          best_score, hot_score, controversy_score, created_at)
+SELECT c.id, c.subject_id, c.parent_id, c.status, c.up_count, c.down_count,
+       wilson_lower_bound(c.up_count, c.down_count, 1.96),
+       hn_hot_score(c.up_count, c.down_count, c.created_at, 1.8),
+       controversy_score(c.up_count, c.down_count),
+       c.created_at
+FROM comment c
+ON CONFLICT (id) DO NOTHING;
+
+
+-- ================== 事件外发（outbox + LISTEN/NOTIFY） ==================
+-- 评论与反应写入时由触发器追加事件行并 pg_notify；各节点 LISTEN 后按 subject 扇出到 SSE 订阅者，
+-- 事件行用于 since 重放，超出保留期由服务端定期清理。
+CREATE TABLE IF NOT EXISTS comment_event (
+                                             id          BIGSERIAL PRIMARY KEY,
+                                             subject_id  UUID        NOT NULL,
+                                             event_type  VARCHAR(32) NOT NULL,      -- comment.created / comment.updated / comment.deleted / reaction.changed
+                                             comment_id  BIGINT,
+                                             payload     JSONB       NOT NULL DEFAULT '{}'::jsonb,
+                                             created_at  TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_cmt_event_subject_created ON comment_event (subject_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_cmt_event_created ON comment_event (created_at);
+-- 断线重放按 id 分页
+CREATE INDEX IF NOT EXISTS idx_cmt_event_subject_id ON comment_event (subject_id, id);
+
+-- NOTIFY 负载上限 8000 字节，只携带 id/状态/计数，不带正文
+CREATE OR REPLACE FUNCTION fn_publish_comment_event(p_subject UUID, p_type TEXT, p_comment BIGINT,
+                                                    p_top_level BOOLEAN, p_data JSONB) RETURNS VOID AS $$
+DECLARE
+    e_id BIGINT;
+BEGIN
+    INSERT INTO comment_event (subject_id, event_type, comment_id, payload)
+    VALUES (p_subject, p_type, p_comment, p_data)
+    RETURNING id INTO e_id;
+
+    PERFORM pg_notify('comment_events', json_build_object(
+            'id', e_id,
+            'subject_id', p_subject,
+            'type', p_type,
+            'top_level', p_top_level,
+            'data', p_data)::text);
+END
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION fn_comment_event() RETURNS TRIGGER AS $$
+DECLARE
+    c      comment%ROWTYPE;
+    e_type TEXT;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        c := OLD;
+        e_type := 'comment.deleted';
+    ELSE
+        c := NEW;
+        IF TG_OP = 'INSERT' THEN
+            -- 批量导入的历史评论不外发事件
+            IF current_setting('comment.bulk_import', true) = 'on' THEN
+                RETURN NULL;
+            END IF;
+            e_type := 'comment.created';
+        ELSIF NEW.status = 'deleted' AND OLD.status IS DISTINCT FROM 'deleted' THEN
+            e_type := 'comment.deleted';
+        ELSE
+            e_type := 'comment.updated';
+        END IF;
+    END IF;
+
+    PERFORM fn_publish_comment_event(c.subject_id, e_type, c.id, c.parent_id IS NULL,
+            jsonb_build_object(
+                    'subject_id', c.subject_id,
+                    'comment', jsonb_build_object(
+                            'id', c.id,
+                            'parent_id', c.parent_id,
+                            'root_id', c.root_id,
+                            'status', c.status,
+                            'author_id', c.author_id,
+                            'edited_at', c.edited_at)));
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_cmt_event_insert
+    AFTER INSERT ON comment
+    FOR EACH ROW EXECUTE FUNCTION fn_comment_event();
+
+-- 计数列变化（投票、回复数）不算评论更新
+CREATE TRIGGER trg_cmt_event_update
+    AFTER UPDATE OF body_md, body_html, status, deleted_at ON comment
+    FOR EACH ROW
+    WHEN (OLD.body_md IS DISTINCT FROM NEW.body_md
+        OR OLD.body_html IS DISTINCT FROM NEW.body_html
+        OR OLD.status IS DISTINCT FROM NEW.status
+        OR OLD.deleted_at IS DISTINCT FROM NEW.deleted_at)
+EXECUTE FUNCTION fn_comment_event();
+
+CREATE TRIGGER trg_cmt_event_delete
+    AFTER DELETE ON comment
+    FOR EACH ROW EXECUTE FUNCTION fn_comment_event();
+
+-- 反应事件；负载只携带本行的增量。已合并值加本行增量并不等于真实计数（其他写入者的积压尚未合并），
+-- 权威计数由合并任务在写回评论行时以 reaction.counters 事件发布
+CREATE OR REPLACE FUNCTION fn_reaction_event() RETURNS TRIGGER AS $$
+DECLARE
+    r       comment_reaction%ROWTYPE;
+    c       RECORD;
+    d_up    INT := 0;
+    d_down  INT := 0;
+    prev    TEXT;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        r := OLD;
+    ELSE
+        r := NEW;
+    END IF;
+    IF TG_OP <> 'INSERT' THEN
+        prev := OLD.type;
+        d_up := d_up - (OLD.type = 'up')::int;
+        d_down := d_down - (OLD.type = 'down')::int;
+    END IF;
+    IF TG_OP <> 'DELETE' THEN
+        d_up := d_up + (NEW.type = 'up')::int;
+        d_down := d_down + (NEW.type = 'down')::int;
+    END IF;
+
+    SELECT cm.subject_id, cm.parent_id
+    INTO c
+    FROM comment cm
+    WHERE cm.id = r.comment_id;
+    IF NOT FOUND THEN
+        RETURN NULL;  -- 评论级联删除时不再单独发反应事件
+    END IF;
+
+    PERFORM fn_publish_comment_event(c.subject_id, 'reaction.changed', r.comment_id, c.parent_id IS NULL,
+            jsonb_build_object(
+                    'subject_id', c.subject_id,
+                    'comment_id', r.comment_id,
+                    'type', r.type,
+                    'previous_type', prev,
+                    'emoji_code', r.emoji_code,
+                    'active', TG_OP <> 'DELETE',
+                    'delta', jsonb_build_object('up', d_up, 'down', d_down)));
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+-- 赞踩切换走 UPDATE OF type（见 uq_actor_vote_idx），同样外发事件
+CREATE TRIGGER trg_cmt_reaction_event
+    AFTER INSERT OR DELETE OR UPDATE OF type ON comment_reaction
+    FOR EACH ROW EXECUTE FUNCTION fn_reaction_event();
+
+
+-- ================== 主体指标（增量维护，替代全量扫描） ==================
+-- 只统计可见评论（published 且未软删）；可见性变化时由触发器追加 ±1 增量行，
+-- 不直接 upsert 热门主体的统计行，由应用定时批量合并（写后聚合，指标最多滞后一个周期）
+-- 贡献者计数：按 (subject, author) 累计，Top-K 走索引取前几行
+CREATE TABLE comment_contributor_stat (
+                                                      subject_id    UUID   NOT NULL REFERENCES comment_subject(subject_id) ON DELETE CASCADE,
+                                                      author_id     BIGINT NOT NULL,
+                                                      visible_count INT    NOT NULL DEFAULT 0,
+                                                      PRIMARY KEY (subject_id, author_id)
+);
+CREATE INDEX idx_cmt_contributor_top
+    ON comment_contributor_stat (subject_id, visible_count DESC, author_id);
+
+-- 评论延迟（评论时间 - 主体创建时间）对数分桶直方图：桶宽 5%，可合并，分位数误差约 ±2.5%
+CREATE TABLE comment_latency_histogram (
+                                                       subject_id UUID     NOT NULL REFERENCES comment_subject(subject_id) ON DELETE CASCADE,
+                                                       bucket     SMALLINT NOT NULL,
+                                                       count      INT      NOT NULL DEFAULT 0,
+                                                       PRIMARY KEY (subject_id, bucket)
+);
+
+-- 桶 0：< 1ms（含负值）；桶 b>=1：[1.05^(b-1), 1.05^b) 毫秒
+CREATE OR REPLACE FUNCTION latency_bucket(ms FLOAT8) RETURNS SMALLINT AS $$
+SELECT CASE WHEN ms < 1 THEN 0::SMALLINT ELSE (1 + floor(ln(ms) / ln(1.05::FLOAT8)))::SMALLINT END;
+$$ LANGUAGE sql IMMUTABLE;
+
+-- 桶的代表值取几何中点
+CREATE OR REPLACE FUNCTION latency_bucket_value(bucket SMALLINT) RETURNS FLOAT8 AS $$
+SELECT CASE WHEN bucket = 0 THEN 0::FLOAT8 ELSE power(1.05::FLOAT8, (bucket - 0.5)::FLOAT8) END;
+$$ LANGUAGE sql IMMUTABLE;
+
+-- 指标增量：只追加不更新，合并时按 (subject, author) 与 (subject, bucket) 聚合
+CREATE TABLE comment_metric_delta (
+                                                  id         BIGSERIAL PRIMARY KEY,
+                                                  subject_id UUID     NOT NULL,              -- 不加外键：主体删除后残留增量在合并时自然丢弃
+                                                  author_id  BIGINT   NOT NULL,
+                                                  bucket     SMALLINT NOT NULL,
+                                                  delta      SMALLINT NOT NULL
+);
+CREATE INDEX idx_cmt_metric_delta_subject ON comment_metric_delta (subject_id);
+
+CREATE OR REPLACE FUNCTION fn_subject_metrics() RETURNS TRIGGER AS $$
+DECLARE
+    old_visible BOOLEAN := FALSE;
+    new_visible BOOLEAN := FALSE;
+    r           comment%ROWTYPE;
+    delta       INT;
+    s_created   TIMESTAMPTZ;
+BEGIN
+    -- 批量导入结束时整体重建
+    IF current_setting('comment.bulk_import', true) = 'on' THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        old_visible := OLD.status = 'published' AND OLD.deleted_at IS NULL;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        new_visible := NEW.status = 'published' AND NEW.deleted_at IS NULL;
+    END IF;
+    IF old_visible = new_visible THEN
+        RETURN NULL;
+    END IF;
+
+    IF new_visible THEN
+        r := NEW;
+        delta := 1;
+    ELSE
+        r := OLD;
+        delta := -1;
+    END IF;
+
+    SELECT created_at INTO s_created FROM comment_subject WHERE subject_id = r.subject_id;
+    IF NOT FOUND THEN
+        RETURN NULL;  -- 主体级联删除中，统计随之删除
+    END IF;
+
+    INSERT INTO comment_metric_delta (subject_id, author_id, bucket, delta)
+    VALUES (r.subject_id, r.author_id, latency_bucket(EXTRACT(EPOCH FROM (r.created_at - s_created)) * 1000), delta);
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_cmt_subject_metrics
+    AFTER INSERT OR UPDATE OF status, deleted_at OR DELETE ON comment
+    FOR EACH ROW EXECUTE FUNCTION fn_subject_metrics();
+
+-- 全量重建单个主体的指标（回填、批量导入结束、人工修复）
+CREATE OR REPLACE FUNCTION fn_rebuild_subject_metrics(p_subject UUID) RETURNS VOID AS $$
+BEGIN
+    -- 重建已覆盖尚未合并的增量
+    DELETE FROM comment_metric_delta WHERE subject_id = p_subject;
+    DELETE FROM comment_contributor_stat WHERE subject_id = p_subject;
+    DELETE FROM comment_latency_histogram WHERE subject_id = p_subject;
+
+    INSERT INTO comment_contributor_stat (subject_id, author_id, visible_count)
+    SELECT c.subject_id, c.author_id, COUNT(*)
+    FROM comment c
+    WHERE c.subject_id = p_subject AND c.status = 'published' AND c.deleted_at IS NULL
+    GROUP BY c.subject_id, c.author_id;
+
+    INSERT INTO comment_latency_histogram (subject_id, bucket, count)
+    SELECT c.subject_id, latency_bucket(EXTRACT(EPOCH FROM (c.created_at - s.created_at)) * 1000), COUNT(*)
+    FROM comment c
+             JOIN comment_subject s ON s.subject_id = c.subject_id
+    WHERE c.subject_id = p_subject AND c.status = 'published' AND c.deleted_at IS NULL
+    GROUP BY 1, 2;
+END
+$$ LANGUAGE plpgsql;
+
+-- 已有数据回填（新库为空操作）
+SELECT fn_rebuild_subject_metrics(subject_id) FROM comment_subject;
 
-ALTER TABLE comment
-    ADD CONSTRAINT c_parent_same_subject CHECK (
-        parent_id IS NULL OR
-        subject_id = (SELECT subject_id FROM comment WHERE id = parent_id)
-        );
 
 ALTER TABLE comment
     ADD CONSTRAINT c_parent_not_self CHECK (parent_id IS NULL OR parent_id <> id);
@@ -285,11 +830,11 @@ ALTER TABLE comment
 
 -- ================== 常用查询（示例，部署时可删） ==================
 -- 1) 某 subject 的顶层评论（最佳）：
---   SELECT c.* FROM comment c
---   JOIN comment_rank_mv r ON r.id = c.id
---   WHERE c.subject_id = $1 AND c.depth = 0 AND c.status='published' AND c.deleted_at IS NULL
---   ORDER BY r.best_score DESC, c.created_at DESC
---   LIMIT $limit OFFSET $offset;
+--   SELECT r.id FROM comment_rank r
+--   WHERE r.subject_id = $1 AND r.parent_id IS NULL AND r.status='published'
+--     AND (r.best_score, r.created_at, r.id) < ($score, $created_at, $id)
+--   ORDER BY r.best_score DESC, r.created_at DESC, r.id DESC
+--   LIMIT $limit;
 --
 -- 2) 展开某楼层子树（按结构顺序）：
 --   SELECT * FROM comment
@@ -0,0 +1,54 @@
+package com.example.commentdemo.comment;
+
+import com.example.commentdemo.comment.api.dto.ModerationActionRequest;
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.example.commentdemo.comment.model.ModerationActionType;
+import com.example.commentdemo.comment.security.ActorContext;
+import com.example.commentdemo.comment.service.ModerationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.UUID;
+
+class CommentEtagTests extends PostgresBackedTest {
+
+    @Autowired
+    private ModerationService moderationService;
+
+    @Test
+    void conditionalGetSeesModerationStatusChanges() {
+        UUID subjectId = newSubject();
+        long commentId = comment(subjectId, newActor(), CommentStatus.PUBLISHED).id();
+        ActorContext moderator = newActor(ROLE_MODERATOR);
+
+        String etag = get(commentId, moderator, null)
+                .expectStatus().isOk()
+                .returnResult(String.class)
+                .getResponseHeaders()
+                .getETag();
+        get(commentId, moderator, etag).expectStatus().isNotModified();
+
+        // hiding changes neither edited_at nor the counters
+        moderationService.applyAction(commentId,
+                ModerationActionRequest.builder().action(ModerationActionType.HIDE).build(), moderator).block();
+
+        get(commentId, moderator, etag)
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.status").isEqualTo("hidden");
+    }
+
+    private WebTestClient.ResponseSpec get(long commentId, ActorContext actor, String ifNoneMatch) {
+        return webTestClient.get()
+                .uri("/api/comments/v1/comments/{id}", commentId)
+                .header("X-Actor-Id", actor.actorId().toString())
+                .header("X-Actor-Roles", String.join(",", actor.roles()))
+                .headers(headers -> {
+                    if (ifNoneMatch != null) {
+                        headers.set(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+                    }
+                })
+                .exchange();
+    }
+}
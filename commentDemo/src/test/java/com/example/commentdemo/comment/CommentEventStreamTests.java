@@ -0,0 +1,129 @@
+package com.example.commentdemo.comment;
+
+import com.example.commentdemo.comment.service.CommentEvent;
+import com.example.commentdemo.comment.service.CommentEventService;
+import com.example.commentdemo.comment.service.SubjectEventHub;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommentEventStreamTests extends PostgresBackedTest {
+
+    // more than one replay page
+    private static final int BACKLOG = 1500;
+    private static final int LIVE_BATCHES = 20;
+    private static final int LIVE_BATCH_SIZE = 10;
+
+    @Autowired
+    private CommentEventService eventService;
+
+    @Autowired
+    private SubjectEventHub eventHub;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    @Test
+    void replayHandsOverToLiveEventsWithoutGapsOrDuplicates() {
+        UUID subjectId = newSubject();
+        OffsetDateTime since = OffsetDateTime.now().minusMinutes(1);
+        publish(subjectId, BACKLOG).block();
+        // the backlog's own notifications must not reach the subscriber as live events
+        awaitListener();
+        int expected = BACKLOG + LIVE_BATCHES * LIVE_BATCH_SIZE;
+
+        // live events are published while the replay pages are still being read
+        Mono<List<Long>> received = eventService.streamSubjectEvents(subjectId, since, Set.of(), newActor())
+                .filter(event -> event.id() != null)
+                .map(event -> Long.parseLong(event.id()))
+                .take(expected)
+                .collectList()
+                .cache();
+        received.subscribe();
+        Flux.range(0, LIVE_BATCHES)
+                .concatMap(batch -> publish(subjectId, LIVE_BATCH_SIZE))
+                .blockLast();
+
+        List<Long> ids = received.block(Duration.ofSeconds(30));
+        assertThat(ids).hasSize(expected).isSorted().doesNotHaveDuplicates();
+        assertThat(ids).containsExactlyElementsOf(databaseClient
+                .sql("SELECT id FROM comment_event WHERE subject_id = :subjectId ORDER BY id")
+                .bind("subjectId", subjectId)
+                .map((row, metadata) -> row.get("id", Long.class))
+                .all()
+                .collectList()
+                .block());
+    }
+
+    @Test
+    void eventCommittedAfterAHigherIdIsStillDelivered() {
+        UUID subjectId = newSubject();
+        OffsetDateTime since = OffsetDateTime.now().minusMinutes(1);
+        Connection slow = Mono.from(connectionFactory.create()).block();
+        try {
+            // the slow transaction takes the lower id but commits last
+            Mono.from(slow.beginTransaction()).block();
+            Flux.from(slow.createStatement("SELECT fn_publish_comment_event($1, 'comment.created', NULL, false, '{}'::jsonb)")
+                            .bind("$1", subjectId)
+                            .execute())
+                    .flatMap(result -> result.map((row, metadata) -> 1))
+                    .blockLast();
+            publish(subjectId, 1).block();
+            awaitListener();
+
+            Mono<List<Long>> received = eventService.streamSubjectEvents(subjectId, since, Set.of(), newActor())
+                    .filter(event -> event.id() != null)
+                    .map(event -> Long.parseLong(event.id()))
+                    .take(2)
+                    .collectList()
+                    .cache();
+            received.subscribe();
+            // the replay has delivered the higher id before the lower one commits
+            received.timeout(Duration.ofSeconds(1)).onErrorResume(ex -> Mono.empty()).block();
+            Mono.from(slow.commitTransaction()).block();
+
+            List<Long> ids = received.block(Duration.ofSeconds(30));
+            assertThat(ids).hasSize(2).doesNotHaveDuplicates();
+            assertThat(ids.get(0)).isGreaterThan(ids.get(1));
+        } finally {
+            Mono.from(slow.close()).block();
+        }
+    }
+
+    private Mono<Void> publish(UUID subjectId, int count) {
+        return databaseClient.sql("""
+                        SELECT fn_publish_comment_event(:subjectId, 'comment.created', NULL, false, '{}'::jsonb)
+                        FROM generate_series(1, :count)
+                        """)
+                .bind("subjectId", subjectId)
+                .bind("count", count)
+                .then();
+    }
+
+    /**
+     * Probes until a notification makes it through the hub. Notifications arrive in commit order on one
+     * connection, so everything published before the probe has been dispatched by then.
+     */
+    private void awaitListener() {
+        UUID probe = UUID.randomUUID();
+        Mono<CommentEvent> delivered = eventHub.subscribe(probe).next().cache();
+        delivered.subscribe();
+        Flux.interval(Duration.ZERO, Duration.ofMillis(100))
+                // a slow publish skips ticks instead of overflowing the interval
+                .onBackpressureDrop()
+                .concatMap(tick -> publish(probe, 1))
+                .takeUntilOther(delivered)
+                .blockLast(Duration.ofSeconds(30));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.commentdemo.comment;
+
+import com.example.commentdemo.comment.api.dto.CommentCreateRequest;
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.example.commentdemo.comment.security.ActorContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommentIdempotencyTests extends PostgresBackedTest {
+
+    @Test
+    void retriesWithTheSameKeyCreateOneComment() {
+        UUID subjectId = newSubject();
+        ActorContext author = newActor();
+        CommentCreateRequest request = CommentCreateRequest.builder().bodyMd("posted once").build();
+
+        List<CommentResponse> responses = Flux.range(0, 8)
+                .flatMap(i -> commentService.create(subjectId, request, author, "retry-key"), 8)
+                .collectList()
+                .block();
+        CommentResponse replayed = commentService.create(subjectId, request, author, "retry-key").block();
+
+        assertThat(responses).extracting(CommentResponse::id).containsOnly(replayed.id());
+        assertThat(count("SELECT COUNT(*) FROM comment WHERE subject_id = $1", subjectId)).isEqualTo(1);
+        assertThat(count("SELECT comment_id FROM comment_idempotency_key WHERE actor_id = $1 AND idem_key = 'retry-key'",
+                author.actorId())).isEqualTo(replayed.id());
+    }
+
+    @Test
+    void keysArePerActorAndBoundToTheRequest() {
+        UUID subjectId = newSubject();
+        ActorContext author = newActor();
+        CommentCreateRequest request = CommentCreateRequest.builder().bodyMd("first body").build();
+
+        CommentResponse first = commentService.create(subjectId, request, author, "shared-key").block();
+        CommentResponse other = commentService.create(subjectId, request, newActor(), "shared-key").block();
+
+        assertThat(other.id()).isNotEqualTo(first.id());
+        assertThatThrownBy(() -> commentService.create(subjectId,
+                CommentCreateRequest.builder().bodyMd("second body").build(), author, "shared-key").block())
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        ex -> assertThat(ex.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+        assertThat(count("SELECT COUNT(*) FROM comment WHERE subject_id = $1", subjectId)).isEqualTo(2);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.commentdemo.comment;
+
+import com.example.commentdemo.comment.api.dto.CommentImportResponse;
+import com.example.commentdemo.comment.security.ActorContext;
+import com.example.commentdemo.comment.service.CommentImportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommentImportTests extends PostgresBackedTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    // a and b fill the first batch; c replies to a from the second batch, d replies to c within it
+    private static final List<String> THREAD = List.of(
+            line("a", null),
+            line("b", null),
+            line("c", "a"),
+            line("d", "c"));
+
+    @Autowired
+    private CommentImportService importService;
+
+    private Object defaultBatchSize;
+
+    @BeforeEach
+    void smallBatches() {
+        defaultBatchSize = ReflectionTestUtils.getField(importService, "batchSize");
+        ReflectionTestUtils.setField(importService, "batchSize", BATCH_SIZE);
+    }
+
+    @AfterEach
+    void restoreBatchSize() {
+        ReflectionTestUtils.setField(importService, "batchSize", defaultBatchSize);
+    }
+
+    @Test
+    void parentsResolveAcrossBatches() {
+        UUID subjectId = newSubject();
+
+        CommentImportResponse response = importService.importComments(subjectId, Flux.fromIterable(THREAD), admin()).block();
+
+        assertThat(response.imported()).isEqualTo(4);
+        assertThat(response.rejected()).isZero();
+        long a = importedId(subjectId, "a");
+        long c = importedId(subjectId, "c");
+        long d = importedId(subjectId, "d");
+        assertThat(count("SELECT root_id FROM comment WHERE id = $1", d)).isEqualTo(a);
+        assertThat(count("SELECT COUNT(*) FROM comment WHERE id = $1 AND path = ('c' || $2 || '.c' || $3 || '.c' || $1)::ltree", d, a, c))
+                .isEqualTo(1);
+        assertThat(count("SELECT reply_count::bigint FROM comment WHERE id = $1", a)).isEqualTo(1);
+        assertThat(subjectService.findById(subjectId).block().commentCount()).isEqualTo(4);
+    }
+
+    @Test
+    void reimportSkipsRecordsThatAreAlreadyImported() {
+        UUID subjectId = newSubject();
+        importService.importComments(subjectId, Flux.fromIterable(THREAD.subList(0, 3)), admin()).block();
+
+        CommentImportResponse again = importService.importComments(subjectId, Flux.fromIterable(THREAD), admin()).block();
+
+        assertThat(again.imported()).isEqualTo(1);
+        assertThat(again.skipped()).isEqualTo(3);
+        assertThat(count("SELECT COUNT(*) FROM comment WHERE subject_id = $1", subjectId)).isEqualTo(4);
+        assertThat(subjectService.findById(subjectId).block().commentCount()).isEqualTo(4);
+    }
+
+    @Test
+    void recountRunsWhenTheImportFails() {
+        UUID subjectId = newSubject();
+        // the upload breaks off once the first batch is in, while c is still buffered
+        Mono<Long> firstBatchCommitted = databaseClient.sql("SELECT COUNT(*) AS n FROM comment WHERE subject_id = :subjectId")
+                .bind("subjectId", subjectId)
+                .map((row, metadata) -> row.get("n", Long.class))
+                .one()
+                .filter(n -> n == BATCH_SIZE)
+                .repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(50)))
+                .timeout(Duration.ofSeconds(10));
+        Flux<String> broken = Flux.concat(Flux.fromIterable(THREAD.subList(0, 3)),
+                firstBatchCommitted.then(Mono.error(new IllegalStateException("upload interrupted"))));
+
+        assertThatThrownBy(() -> importService.importComments(subjectId, broken, admin()).block())
+                .hasMessageContaining("upload interrupted");
+
+        // the first batch was committed with counter maintenance switched off
+        assertThat(count("SELECT COUNT(*) FROM comment WHERE subject_id = $1", subjectId)).isEqualTo(2);
+        assertThat(subjectService.findById(subjectId).block().commentCount()).isEqualTo(2);
+    }
+
+    private long importedId(UUID subjectId, String externalId) {
+        return count("SELECT comment_id FROM comment_import_key WHERE subject_id = $1 AND external_id = $2", subjectId, externalId);
+    }
+
+    private static ActorContext admin() {
+        return newActor("comment:admin");
+    }
+
+    private static String line(String externalId, String parentExternalId) {
+        String parent = parentExternalId != null ? ",\"parent_external_id\":\"" + parentExternalId + "\"" : "";
+        return "{\"external_id\":\"" + externalId + "\"" + parent + ",\"author_id\":7,\"body_md\":\"legacy " + externalId + "\"}";
+    }
+}
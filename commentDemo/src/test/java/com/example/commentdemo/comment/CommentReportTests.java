@@ -0,0 +1,86 @@
+package com.example.commentdemo.comment;
+
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.example.commentdemo.comment.api.dto.ModerationActionRequest;
+import com.example.commentdemo.comment.api.dto.ReportCreateRequest;
+import com.example.commentdemo.comment.api.dto.ReportReceiptResponse;
+import com.example.commentdemo.comment.counter.CommentReportAggregator;
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.example.commentdemo.comment.model.ModerationActionType;
+import com.example.commentdemo.comment.security.ActorContext;
+import com.example.commentdemo.comment.service.ModerationService;
+import com.example.commentdemo.comment.service.ReportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommentReportTests extends PostgresBackedTest {
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private ModerationService moderationService;
+
+    @Autowired
+    private CommentReportAggregator reportAggregator;
+
+    @Test
+    void repeatedReportsCountOnceAndModerationResetsTheTotals() {
+        UUID subjectId = newSubject();
+        long commentId = comment(subjectId, newActor(), CommentStatus.PUBLISHED).id();
+        ActorContext reporter = newActor();
+
+        List<ReportReceiptResponse> receipts = Flux.range(0, 4)
+                .flatMap(i -> reportService.report(commentId, report("spam"), reporter), 4)
+                .collectList()
+                .block();
+        reportService.report(commentId, report("abuse"), newActor()).block();
+
+        assertThat(receipts).extracting(ReportReceiptResponse::reportId).containsOnly(receipts.get(0).reportId());
+        assertThat(receipts).filteredOn(ReportReceiptResponse::created).hasSize(1);
+
+        reportAggregator.fold();
+
+        assertThat(openCount(commentId)).isEqualTo(2);
+        assertThat(reasonCount(commentId, "spam")).isEqualTo(1);
+        assertThat(reasonCount(commentId, "abuse")).isEqualTo(1);
+
+        // past the queue threshold, so the approval needs a lease
+        ActorContext moderator = newActor(ROLE_MODERATOR);
+        assertThat(moderationService.claim(100, moderator).block().items())
+                .extracting(CommentResponse::id)
+                .contains(commentId);
+        moderationService.applyAction(commentId,
+                ModerationActionRequest.builder().action(ModerationActionType.APPROVE).build(), moderator).block();
+
+        assertThat(openCount(commentId)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM comment_report_stats WHERE comment_id = $1 AND reason_counts = '{}'", commentId))
+                .isEqualTo(1);
+        assertThat(count("SELECT COUNT(*) FROM comment_report WHERE comment_id = $1 AND status = 'rejected'", commentId))
+                .isEqualTo(2);
+
+        // reports after the reset start a fresh count; the resolved ones are not folded again
+        reportService.report(commentId, report("spam"), newActor()).block();
+        reportAggregator.fold();
+
+        assertThat(openCount(commentId)).isEqualTo(1);
+    }
+
+    private static ReportCreateRequest report(String reason) {
+        return ReportCreateRequest.builder().reason(reason).build();
+    }
+
+    private long openCount(long commentId) {
+        return count("SELECT open_count::bigint FROM comment_report_stats WHERE comment_id = $1", commentId);
+    }
+
+    private long reasonCount(long commentId, String reason) {
+        return count("SELECT (reason_counts ->> $2)::bigint FROM comment_report_stats WHERE comment_id = $1", commentId, reason);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.commentdemo.comment;
+
+import com.example.commentdemo.comment.api.dto.CommentCreateRequest;
+import com.example.commentdemo.comment.api.dto.CommentPageResponse;
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.example.commentdemo.comment.security.ActorContext;
+import com.example.commentdemo.comment.service.CommentSearchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommentSearchTests extends PostgresBackedTest {
+
+    private static final int MATCHES = 9;
+    private static final int MAX_CANDIDATES = 5;
+
+    @Autowired
+    private CommentSearchService searchService;
+
+    @Test
+    void pagesWalkTheNewestCandidatesInRankOrder() {
+        UUID subjectId = newSubject();
+        ActorContext author = newActor();
+        List<Long> matching = new ArrayList<>();
+        for (int i = 0; i < MATCHES; i++) {
+            // longer bodies rank lower, and the newest ones are not the best matches
+            matching.add(create(subjectId, author, "haystack needle" + " padding".repeat(MATCHES - i)));
+            create(subjectId, author, "nothing to see here " + i);
+        }
+        List<Long> newest = matching.subList(MATCHES - MAX_CANDIDATES, MATCHES);
+
+        Object defaultCandidates = ReflectionTestUtils.getField(searchService, "maxCandidates");
+        ReflectionTestUtils.setField(searchService, "maxCandidates", MAX_CANDIDATES);
+        List<Long> found = new ArrayList<>();
+        try {
+            String cursor = null;
+            int pages = 0;
+            do {
+                CommentPageResponse page = searchService.search("needle", subjectId, null, null, 2, cursor, author).block();
+                page.items().stream().map(CommentResponse::id).forEach(found::add);
+                cursor = page.nextCursor();
+                pages++;
+            } while (cursor != null && pages < 10);
+        } finally {
+            ReflectionTestUtils.setField(searchService, "maxCandidates", defaultCandidates);
+        }
+
+        // the shortest body is the best match; ties fall back to created_at, id descending
+        assertThat(found).containsExactlyElementsOf(newest.reversed());
+    }
+
+    @Test
+    void searchesPastTheConcurrencyLimitGetTooManyRequests() {
+        Semaphore permits = (Semaphore) ReflectionTestUtils.getField(searchService, "permits");
+        int held = permits.drainPermits();
+        try {
+            assertThatThrownBy(() -> searchService.search("needle", null, null, null, 10, null, newActor()).block())
+                    .isInstanceOfSatisfying(ResponseStatusException.class,
+                            ex -> assertThat(ex.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+        } finally {
+            permits.release(held);
+        }
+    }
+
+    private long create(UUID subjectId, ActorContext author, String body) {
+        return commentService.create(subjectId, CommentCreateRequest.builder().bodyMd(body).build(), author, null)
+                .block()
+                .id();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.commentdemo.comment;
+
+import com.example.commentdemo.comment.api.dto.CommentCreateRequest;
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.example.commentdemo.comment.ranking.HotScoreDecayScheduler;
+import com.example.commentdemo.comment.security.ActorContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotScoreDecayTests extends PostgresBackedTest {
+
+    @Autowired
+    private HotScoreDecayScheduler decayScheduler;
+
+    @Test
+    void decayRewritesListedTopLevelCommentsInBatches() {
+        UUID subjectId = newSubject();
+        ActorContext author = newActor();
+        long first = comment(subjectId, author, CommentStatus.PUBLISHED).id();
+        long second = comment(subjectId, author, CommentStatus.PUBLISHED).id();
+        long third = comment(subjectId, author, CommentStatus.PUBLISHED).id();
+        long pending = comment(subjectId, author, CommentStatus.PENDING).id();
+        long reply = commentService.create(subjectId, CommentCreateRequest.builder()
+                .bodyMd("reply")
+                .parentId(first)
+                .build(), author, null).block().id();
+        // net score 1 decays to exactly 0, so the row does not need a rewrite
+        databaseClient.sql("""
+                        UPDATE comment_rank
+                        SET hot_score = CASE WHEN id = :third THEN 0 ELSE 42 END,
+                            up_count = CASE WHEN id = :third THEN 1 ELSE up_count END,
+                            hot_decayed_at = '2000-01-01T00:00:00Z'
+                        WHERE subject_id = :subjectId
+                        """)
+                .bind("third", third)
+                .bind("subjectId", subjectId)
+                .then()
+                .block();
+        long epoch = reactionEpoch(subjectId);
+
+        Object batchSize = ReflectionTestUtils.getField(decayScheduler, "batchSize");
+        ReflectionTestUtils.setField(decayScheduler, "batchSize", 1);
+        try {
+            decayScheduler.decayActiveSubjects();
+        } finally {
+            ReflectionTestUtils.setField(decayScheduler, "batchSize", batchSize);
+        }
+
+        assertThat(decayed(first)).isTrue();
+        assertThat(decayed(second)).isTrue();
+        assertThat(decayed(third)).isFalse();
+        assertThat(decayed(pending)).isFalse();
+        assertThat(decayed(reply)).isFalse();
+        assertThat(reactionEpoch(subjectId)).isGreaterThan(epoch);
+    }
+
+    private boolean decayed(long commentId) {
+        return count("SELECT COUNT(*) FROM comment_rank WHERE id = $1 AND hot_decayed_at > '2000-01-01T00:00:00Z'", commentId) > 0;
+    }
+
+    private long reactionEpoch(UUID subjectId) {
+        return count("SELECT reaction_epoch FROM comment_subject WHERE subject_id = $1", subjectId);
+    }
+}
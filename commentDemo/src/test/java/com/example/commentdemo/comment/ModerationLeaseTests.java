@@ -0,0 +1,105 @@
+package com.example.commentdemo.comment;
+
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.example.commentdemo.comment.api.dto.ModerationActionRequest;
+import com.example.commentdemo.comment.api.dto.ModerationActionResponse;
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.example.commentdemo.comment.model.ModerationActionType;
+import com.example.commentdemo.comment.security.ActorContext;
+import com.example.commentdemo.comment.service.ModerationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ModerationLeaseTests extends PostgresBackedTest {
+
+    private static final ModerationActionRequest APPROVE = ModerationActionRequest.builder()
+            .action(ModerationActionType.APPROVE)
+            .build();
+
+    @Autowired
+    private ModerationService moderationService;
+
+    @Test
+    void onlyTheLeaseHolderCanActOnAClaimedComment() {
+        UUID subjectId = newSubject();
+        long commentId = comment(subjectId, newActor(), CommentStatus.PENDING).id();
+        ActorContext holder = newActor(ROLE_MODERATOR);
+        ActorContext other = newActor(ROLE_MODERATOR);
+
+        assertThat(claimedIds(holder)).contains(commentId);
+        assertThat(claimedIds(other)).doesNotContain(commentId);
+        assertConflict(() -> moderationService.applyAction(commentId, APPROVE, other).block());
+        assertThat(status(commentId)).isEqualTo("pending");
+
+        ModerationActionResponse applied = moderationService.applyAction(commentId, APPROVE, holder).block();
+
+        assertThat(applied.newStatus()).isEqualTo(CommentStatus.PUBLISHED);
+        assertThat(count("SELECT COUNT(*) FROM comment_moderation_queue WHERE comment_id = $1", commentId)).isZero();
+    }
+
+    @Test
+    void expiredLeasesCanBeReclaimed() {
+        UUID subjectId = newSubject();
+        long commentId = comment(subjectId, newActor(), CommentStatus.PENDING).id();
+        ActorContext lapsed = newActor(ROLE_MODERATOR);
+        ActorContext next = newActor(ROLE_MODERATOR);
+        assertThat(claimedIds(lapsed)).contains(commentId);
+
+        databaseClient.sql("UPDATE comment_moderation_queue SET lease_until = now() - interval '1 second' WHERE comment_id = :commentId")
+                .bind("commentId", commentId)
+                .then()
+                .block();
+
+        assertConflict(() -> moderationService.applyAction(commentId, APPROVE, lapsed).block());
+        assertThat(claimedIds(next)).contains(commentId);
+        assertThat(moderationService.applyAction(commentId, APPROVE, next).block().newStatus())
+                .isEqualTo(CommentStatus.PUBLISHED);
+    }
+
+    @Test
+    void batchWithOneUnleasedCommentAppliesNothing() {
+        UUID subjectId = newSubject();
+        CommentResponse published = comment(subjectId, newActor(), CommentStatus.PUBLISHED);
+        long queued = comment(subjectId, newActor(), CommentStatus.PENDING).id();
+        ActorContext moderator = newActor(ROLE_MODERATOR);
+
+        assertConflict(() -> moderationService.applyActions(List.of(
+                ModerationActionRequest.builder().commentId(published.id()).action(ModerationActionType.HIDE).build(),
+                APPROVE.toBuilder().commentId(queued).build()), moderator).collectList().block());
+
+        assertThat(status(published.id())).isEqualTo("published");
+        assertThat(status(queued)).isEqualTo("pending");
+        // comments that are not queued need no lease
+        assertThat(moderationService.applyAction(published.id(),
+                ModerationActionRequest.builder().action(ModerationActionType.HIDE).build(), moderator).block().newStatus())
+                .isEqualTo(CommentStatus.HIDDEN);
+    }
+
+    private List<Long> claimedIds(ActorContext moderator) {
+        return moderationService.claim(100, moderator)
+                .map(claim -> claim.items().stream().map(CommentResponse::id).toList())
+                .block();
+    }
+
+    private String status(long commentId) {
+        return databaseClient.sql("SELECT status FROM comment WHERE id = :commentId")
+                .bind("commentId", commentId)
+                .map((row, metadata) -> row.get("status", String.class))
+                .one()
+                .block();
+    }
+
+    private static void assertConflict(Runnable call) {
+        assertThatThrownBy(call::run)
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        ex -> assertThat(ex.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+    }
+}
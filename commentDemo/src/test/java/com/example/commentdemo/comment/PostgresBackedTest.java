@@ -0,0 +1,136 @@
+package com.example.commentdemo.comment;
+
+import com.example.commentdemo.comment.api.dto.CommentCreateRequest;
+import com.example.commentdemo.comment.api.dto.CommentResponse;
+import com.example.commentdemo.comment.api.dto.SubjectUpsertRequest;
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.example.commentdemo.comment.security.ActorContext;
+import com.example.commentdemo.comment.service.CommentService;
+import com.example.commentdemo.comment.service.SubjectService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the application against an embedded Postgres loaded with {@code scame.sql}, one server per test JVM.
+ * <p>
+ * Background jobs are pushed out of the way so tests drive them explicitly; every test works on subjects and
+ * actor ids of its own, so test classes share the server and the Spring context.
+ */
+@SpringBootTest(properties = {
+        "comment.counters.flush.interval=PT1H",
+        "comment.counters.reconcile.initial-delay=PT1H",
+        "comment.counters.subject.interval=PT1H",
+        "comment.counters.metrics.interval=PT1H",
+        "comment.reports.interval=PT1H",
+        "comment.moderation.release-interval=PT1H",
+        "comment.ranking.hot-decay.initial-delay=PT1H",
+        "comment.toxicity.enabled=false",
+        "logging.level.com.example.commentdemo=INFO"
+})
+@AutoConfigureWebTestClient
+abstract class PostgresBackedTest {
+
+    static final String ROLE_MODERATOR = "comment:moderator";
+
+    private static final EmbeddedPostgres POSTGRES = start();
+    private static final AtomicLong ACTOR_IDS = new AtomicLong(1_000);
+
+    @Autowired
+    protected DatabaseClient databaseClient;
+
+    @Autowired
+    protected WebTestClient webTestClient;
+
+    @Autowired
+    protected SubjectService subjectService;
+
+    @Autowired
+    protected CommentService commentService;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> "r2dbc:postgresql://localhost:%d/postgres".formatted(POSTGRES.getPort()));
+        registry.add("spring.r2dbc.username", () -> "postgres");
+        registry.add("spring.r2dbc.password", () -> "");
+    }
+
+    protected UUID newSubject() {
+        return subjectService.upsert("test:" + UUID.randomUUID(), new SubjectUpsertRequest())
+                .map(result -> result.subject().subjectId())
+                .block();
+    }
+
+    protected static ActorContext newActor(String... roles) {
+        long id = ACTOR_IDS.incrementAndGet();
+        return ActorContext.builder()
+                .actorId(id)
+                .actorUrn("user:" + id)
+                .roles(Set.of(roles))
+                .build();
+    }
+
+    protected CommentResponse comment(UUID subjectId, ActorContext author, CommentStatus status) {
+        CommentCreateRequest request = CommentCreateRequest.builder()
+                .bodyMd("comment by " + author.actorUrn())
+                .status(status)
+                .build();
+        return commentService.create(subjectId, request, author, null).block();
+    }
+
+    protected long count(String sql, Object... binds) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql);
+        for (int i = 0; i < binds.length; i++) {
+            spec = spec.bind(i, binds[i]);
+        }
+        return spec.map((row, metadata) -> row.get(0, Long.class)).one().block();
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+            try (Connection connection = postgres.getPostgresDatabase().getConnection();
+                 Statement statement = connection.createStatement()) {
+                // sent as one simple-protocol batch; the driver keeps dollar-quoted function bodies intact
+                statement.execute(readSchema());
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    postgres.close();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }));
+            return postgres;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Failed to apply scame.sql", ex);
+        }
+    }
+
+    private static String readSchema() throws IOException {
+        try (InputStream in = PostgresBackedTest.class.getResourceAsStream("/scame.sql")) {
+            if (in == null) {
+                throw new IllegalStateException("scame.sql not found on the classpath");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
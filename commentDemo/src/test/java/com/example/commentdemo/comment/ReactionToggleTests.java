@@ -0,0 +1,122 @@
+package com.example.commentdemo.comment;
+
+import com.example.commentdemo.comment.api.dto.ReactionSummaryResponse;
+import com.example.commentdemo.comment.api.dto.ReactionToggleRequest;
+import com.example.commentdemo.comment.counter.ReactionCounterAggregator;
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.example.commentdemo.comment.model.ReactionType;
+import com.example.commentdemo.comment.security.ActorContext;
+import com.example.commentdemo.comment.service.ReactionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactionToggleTests extends PostgresBackedTest {
+
+    private static final int VOTERS = 8;
+    private static final int TOGGLES_PER_VOTER = 20;
+
+    @Autowired
+    private ReactionService reactionService;
+
+    @Autowired
+    private ReactionCounterAggregator counterAggregator;
+
+    @Test
+    void concurrentOppositeVotesLeaveOneVotePerActor() {
+        UUID subjectId = newSubject();
+        long commentId = comment(subjectId, newActor(), CommentStatus.PUBLISHED).id();
+        List<ActorContext> voters = IntStream.range(0, VOTERS).mapToObj(i -> newActor()).toList();
+        ReactionToggleRequest activate = ReactionToggleRequest.builder().active(true).build();
+
+        Flux.range(0, VOTERS * TOGGLES_PER_VOTER)
+                .flatMap(i -> reactionService.toggleReaction(commentId,
+                        i / VOTERS % 2 == 0 ? ReactionType.UP : ReactionType.DOWN,
+                        activate,
+                        voters.get(i % VOTERS)), 16)
+                .blockLast();
+
+        for (ActorContext voter : voters) {
+            assertThat(count("SELECT COUNT(*) FROM comment_reaction WHERE comment_id = $1 AND actor_id = $2 AND type IN ('up', 'down')",
+                    commentId, voter.actorId()))
+                    .as("vote rows of actor %s", voter.actorId())
+                    .isEqualTo(1);
+        }
+
+        counterAggregator.flush();
+        long upRows = count("SELECT COUNT(*) FROM comment_reaction WHERE comment_id = $1 AND type = 'up'", commentId);
+        ReactionSummaryResponse summary = reactionService.getReactions(commentId, voters.get(0)).block();
+        assertThat(summary.summary().up()).isEqualTo(upRows);
+        assertThat(summary.summary().up() + summary.summary().down()).isEqualTo(VOTERS);
+        assertThat(summary.myReaction().up()).isNotEqualTo(summary.myReaction().down());
+    }
+
+    @Test
+    void voteFlipsInPlaceAndClears() {
+        UUID subjectId = newSubject();
+        long commentId = comment(subjectId, newActor(), CommentStatus.PUBLISHED).id();
+        ActorContext voter = newActor();
+
+        reactionService.toggleReaction(commentId, ReactionType.UP, ReactionToggleRequest.builder().active(true).build(), voter).block();
+        ReactionSummaryResponse flipped = reactionService.toggleReaction(commentId, ReactionType.DOWN,
+                ReactionToggleRequest.builder().active(true).build(), voter).block();
+
+        assertThat(flipped.summary().up()).isZero();
+        assertThat(flipped.summary().down()).isEqualTo(1);
+        assertThat(flipped.myReaction().up()).isFalse();
+        assertThat(flipped.myReaction().down()).isTrue();
+
+        ReactionSummaryResponse cleared = reactionService.toggleReaction(commentId, ReactionType.DOWN,
+                ReactionToggleRequest.builder().active(false).build(), voter).block();
+
+        assertThat(cleared.summary().down()).isZero();
+        assertThat(count("SELECT COUNT(*) FROM comment_reaction WHERE comment_id = $1", commentId)).isZero();
+    }
+
+    @Test
+    void toggleCountsDeltasThatAreNotFlushedYet() {
+        UUID subjectId = newSubject();
+        long commentId = comment(subjectId, newActor(), CommentStatus.PUBLISHED).id();
+        ReactionToggleRequest activate = ReactionToggleRequest.builder().active(true).build();
+
+        reactionService.toggleReaction(commentId, ReactionType.UP, activate, newActor()).block();
+        reactionService.toggleReaction(commentId, ReactionType.EMOJI,
+                ReactionToggleRequest.builder().active(true).emojiCode("tada").build(), newActor()).block();
+        ReactionSummaryResponse second = reactionService.toggleReaction(commentId, ReactionType.UP, activate, newActor()).block();
+
+        assertThat(count("SELECT up_count::bigint FROM comment WHERE id = $1", commentId)).isZero();
+        assertThat(second.summary().up()).isEqualTo(2);
+        assertThat(second.summary().emoji()).extracting(ReactionSummaryResponse.EmojiSummary::count).containsExactly(1);
+        assertThat(second.myReaction().up()).isTrue();
+    }
+
+    @Test
+    void flushPublishesTheFoldedCounters() {
+        UUID subjectId = newSubject();
+        long commentId = comment(subjectId, newActor(), CommentStatus.PUBLISHED).id();
+        ReactionToggleRequest activate = ReactionToggleRequest.builder().active(true).build();
+        for (int i = 0; i < 3; i++) {
+            reactionService.toggleReaction(commentId, ReactionType.UP, activate, newActor()).block();
+        }
+
+        // row events only know their own delta
+        assertThat(count("SELECT COUNT(*) FROM comment_event WHERE comment_id = $1 AND event_type = 'reaction.changed' AND payload ? 'counters'",
+                commentId)).isZero();
+
+        counterAggregator.flush();
+
+        assertThat(count("""
+                SELECT (payload -> 'counters' ->> 'up')::bigint
+                FROM comment_event
+                WHERE comment_id = $1 AND event_type = 'reaction.counters'
+                ORDER BY id DESC
+                LIMIT 1
+                """, commentId)).isEqualTo(3);
+    }
+}
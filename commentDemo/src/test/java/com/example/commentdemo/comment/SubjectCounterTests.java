@@ -0,0 +1,72 @@
+package com.example.commentdemo.comment;
+
+import com.example.commentdemo.comment.api.dto.CommentCreateRequest;
+import com.example.commentdemo.comment.api.dto.SubjectResponse;
+import com.example.commentdemo.comment.counter.SubjectCounterCompactor;
+import com.example.commentdemo.comment.model.CommentStatus;
+import com.example.commentdemo.comment.security.ActorContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubjectCounterTests extends PostgresBackedTest {
+
+    private static final int COMMENTS = 40;
+
+    @Autowired
+    private SubjectCounterCompactor compactor;
+
+    @Test
+    void concurrentWritesSumAcrossSlotsAndSurviveCompaction() {
+        UUID subjectId = newSubject();
+        ActorContext author = newActor();
+
+        // every fourth comment is held for review and counts towards comment_count only
+        Flux.range(0, COMMENTS)
+                .flatMap(i -> commentService.create(subjectId, CommentCreateRequest.builder()
+                        .bodyMd("comment " + i)
+                        .status(i % 4 == 0 ? CommentStatus.PENDING : CommentStatus.PUBLISHED)
+                        .build(), author, null), 8)
+                .blockLast();
+
+        SubjectResponse striped = subjectService.findById(subjectId).block();
+        assertThat(striped.commentCount()).isEqualTo(COMMENTS);
+        assertThat(striped.visibleCount()).isEqualTo(COMMENTS - COMMENTS / 4);
+        assertThat(count("SELECT COUNT(*) FROM comment_subject_counter WHERE subject_id = $1", subjectId)).isPositive();
+        long version = writeVersion(subjectId);
+
+        compactor.compact();
+
+        SubjectResponse compacted = subjectService.findById(subjectId).block();
+        assertThat(compacted.commentCount()).isEqualTo(COMMENTS);
+        assertThat(compacted.visibleCount()).isEqualTo(COMMENTS - COMMENTS / 4);
+        assertThat(compacted.lastCommentedAt()).isEqualTo(striped.lastCommentedAt());
+        assertThat(writeVersion(subjectId)).isEqualTo(version);
+        assertThat(count("SELECT COUNT(*) FROM comment_subject_counter WHERE subject_id = $1", subjectId)).isZero();
+        assertThat(count("SELECT comment_count::bigint FROM comment_subject WHERE subject_id = $1", subjectId)).isEqualTo(COMMENTS);
+    }
+
+    @Test
+    void toxicityScoreBumpsTheWriteVersion() {
+        UUID subjectId = newSubject();
+        long commentId = comment(subjectId, newActor(), CommentStatus.PUBLISHED).id();
+        long version = writeVersion(subjectId);
+
+        // a score below the hold threshold leaves the status alone but still changes the rendered list
+        databaseClient.sql("UPDATE comment SET toxicity_score = 0.1 WHERE id = :id")
+                .bind("id", commentId)
+                .then()
+                .block();
+
+        assertThat(writeVersion(subjectId)).isGreaterThan(version);
+        assertThat(subjectService.findById(subjectId).block().visibleCount()).isEqualTo(1);
+    }
+
+    private long writeVersion(UUID subjectId) {
+        return count("SELECT write_version FROM comment_subject_totals WHERE subject_id = $1", subjectId);
+    }
+}
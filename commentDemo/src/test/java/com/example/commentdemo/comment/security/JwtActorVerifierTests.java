@@ -0,0 +1,142 @@
+package com.example.commentdemo.comment.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class JwtActorVerifierTests {
+
+    private static final String ISSUER = "https://auth.example.com";
+    private static final String AUDIENCE = "comments";
+
+    @TempDir
+    Path dir;
+
+    private RSAKey signingKey;
+    private Path jwks;
+    private JwksKeyStore keyStore;
+    private JwtActorVerifier verifier;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        signingKey = rsaKey("key-1");
+        jwks = dir.resolve("jwks.json");
+        writeJwks(signingKey);
+
+        keyStore = new JwksKeyStore(new DefaultResourceLoader());
+        ReflectionTestUtils.setField(keyStore, "jwksUri", jwks.toUri().toString());
+        ReflectionTestUtils.setField(keyStore, "timeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(keyStore, "minRefreshInterval", Duration.ZERO);
+        keyStore.loadInitial();
+
+        verifier = new JwtActorVerifier(keyStore, new SimpleMeterRegistry(), ISSUER, AUDIENCE,
+                List.of("RS256", "ES256"), Duration.ofSeconds(30), "actor_urn", "roles", 100, Duration.ofHours(1));
+    }
+
+    @Test
+    void validTokenMapsToActor() throws JOSEException {
+        String token = sign(signingKey, claims().claim("roles", "comment:moderator comment:admin").build());
+
+        ActorContext actor = verifier.verify(token);
+
+        assertThat(actor.actorId()).isEqualTo(42L);
+        assertThat(actor.actorUrn()).isEqualTo("user:42");
+        assertThat(actor.roles()).containsExactlyInAnyOrder("comment:moderator", "comment:admin");
+    }
+
+    @Test
+    void expiredTokenIsRejected() throws JOSEException {
+        // past the 30 second clock skew
+        Date expired = Date.from(Instant.now().minusSeconds(120));
+
+        assertUnauthorized(sign(signingKey, claims().expirationTime(expired).build()));
+    }
+
+    @Test
+    void wrongAudienceOrIssuerIsRejected() throws JOSEException {
+        assertUnauthorized(sign(signingKey, claims().audience("billing").build()));
+        assertUnauthorized(sign(signingKey, claims().issuer("https://evil.example.com").build()));
+    }
+
+    @Test
+    void unsignedAndSymmetricTokensAreRejected() throws JOSEException {
+        assertUnauthorized(new PlainJWT(claims().build()).serialize());
+
+        // HS256 keyed with the public key, the classic algorithm confusion
+        SignedJWT hmac = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.HS256).keyID(signingKey.getKeyID()).build(),
+                claims().build());
+        hmac.sign(new MACSigner(signingKey.toPublicJWK().toJSONString().getBytes(StandardCharsets.UTF_8)));
+        assertUnauthorized(hmac.serialize());
+    }
+
+    @Test
+    void unknownKeyIdTriggersRefresh() throws Exception {
+        RSAKey rotated = rsaKey("key-2");
+        String token = sign(rotated, claims().build());
+        writeJwks(signingKey, rotated);
+
+        assertUnauthorized(token);
+
+        await().atMost(Duration.ofSeconds(10))
+                .until(() -> keyStore.current().getKeyByKeyId("key-2") != null);
+        assertThat(verifier.verify(token).actorId()).isEqualTo(42L);
+    }
+
+    private void assertUnauthorized(String token) {
+        assertThatThrownBy(() -> verifier.verify(token))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        ex -> assertThat(ex.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED));
+    }
+
+    private static JWTClaimsSet.Builder claims() {
+        return new JWTClaimsSet.Builder()
+                .subject("42")
+                .issuer(ISSUER)
+                .audience(AUDIENCE)
+                .expirationTime(Date.from(Instant.now().plusSeconds(300)))
+                .claim("actor_urn", "user:42");
+    }
+
+    private static String sign(RSAKey key, JWTClaimsSet claims) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static RSAKey rsaKey(String kid) throws JOSEException {
+        return new RSAKeyGenerator(2048).keyID(kid).generate();
+    }
+
+    private void writeJwks(RSAKey... keys) throws IOException {
+        Files.writeString(jwks, new JWKSet(List.of(keys)).toPublicJWKSet().toString());
+    }
+}
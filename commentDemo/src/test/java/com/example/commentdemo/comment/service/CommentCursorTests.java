@@ -0,0 +1,75 @@
+package com.example.commentdemo.comment.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommentCursorTests {
+
+    private static final OffsetDateTime CREATED_AT = OffsetDateTime.of(2024, 5, 1, 12, 30, 15, 123_456_000, ZoneOffset.UTC);
+
+    @Test
+    void scoreCursorRoundTripsWithMicrosecondPrecision() {
+        String cursor = DefaultCommentService.encodeCursor(DefaultCommentService.ViewMode.BEST.cursorKey(), 0.8125, CREATED_AT, 42L);
+
+        DefaultCommentService.PageCursor decoded = DefaultCommentService.decodeCursor(cursor, DefaultCommentService.ViewMode.BEST.cursorKey());
+
+        assertThat(decoded).isEqualTo(new DefaultCommentService.PageCursor("best", 0.8125, CREATED_AT, 42L));
+    }
+
+    @Test
+    void timeCursorRoundTripsWithoutScore() {
+        String cursor = DefaultCommentService.encodeCursor(DefaultCommentService.TIME_CURSOR_KEY, null, CREATED_AT, 7L);
+
+        DefaultCommentService.PageCursor decoded = DefaultCommentService.decodeCursor(cursor, DefaultCommentService.ViewMode.NEW.cursorKey());
+
+        assertThat(decoded.score()).isNull();
+        assertThat(decoded.createdAt()).isEqualTo(CREATED_AT);
+        assertThat(decoded.id()).isEqualTo(7L);
+    }
+
+    @Test
+    void legacyMillisecondCursorIsStillAccepted() {
+        String legacy = encode(CREATED_AT.toInstant().toEpochMilli() + ":9");
+
+        DefaultCommentService.PageCursor decoded = DefaultCommentService.decodeCursor(legacy, DefaultCommentService.TIME_CURSOR_KEY);
+
+        assertThat(decoded.createdAt()).isEqualTo(CREATED_AT.withNano(123_000_000));
+        assertThat(decoded.id()).isEqualTo(9L);
+    }
+
+    @Test
+    void cursorOfAnotherOrderingIsRejected() {
+        String hot = DefaultCommentService.encodeCursor(DefaultCommentService.ViewMode.HOT.cursorKey(), 1.5, CREATED_AT, 42L);
+        String time = DefaultCommentService.encodeCursor(DefaultCommentService.TIME_CURSOR_KEY, null, CREATED_AT, 42L);
+
+        assertBadRequest(hot, DefaultCommentService.ViewMode.BEST.cursorKey());
+        assertBadRequest(time, DefaultCommentService.ViewMode.BEST.cursorKey());
+        assertBadRequest(hot, DefaultCommentService.TIME_CURSOR_KEY);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertBadRequest("not base64!", DefaultCommentService.TIME_CURSOR_KEY);
+        assertBadRequest(encode("best:NaN:1:2"), "best");
+        assertBadRequest(encode("a:b:c"), DefaultCommentService.TIME_CURSOR_KEY);
+    }
+
+    private static void assertBadRequest(String cursor, String expectedKey) {
+        assertThatThrownBy(() -> DefaultCommentService.decodeCursor(cursor, expectedKey))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        ex -> assertThat(ex.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    private static String encode(String payload) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}